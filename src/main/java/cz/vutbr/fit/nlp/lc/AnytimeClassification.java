@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+    Runs the steps of a {@link LuceneClassification} in the background until
+    a deadline, a budget of the postings read or the last feature, whichever
+    comes first, streaming the k best documents of each step to a listener
+    and keeping the ones of the last step.
+
+    {@code
+    AnytimeClassification anytime = new AnytimeClassification(classification)
+        .setDeadline(100, TimeUnit.MILLISECONDS)
+        .setSnapshotListener(20, listener)
+        .setTop(20);
+    anytime.start(executor).join();
+    List<ScoredDocument> top = anytime.getTop();
+    }
+
+    The deadline is checked between the steps, so it may be exceeded by
+    the time of one step. The postings budget is never exceeded, a step
+    which would read more postings than remain is not started. Cancel the
+    future to stop after the current step, the iteration is then lost, the
+    {@link #getTop} of the last step is the result.
+
+    With a {@link Checkpointer} the iterations are checkpointed during the
+    steps and once more when they stop, {@link #start(Executor, LuceneClassification.Iteration)}
+    continues from a resumed one.
+
+    One instance runs once.
+
+    @author Marek Schmidt
+*/
+public class AnytimeClassification {
+
+    /**
+        Why the steps stopped.
+    */
+    public static enum StopReason {
+        /** All the features were stepped, or the maximal number of steps. */
+        COMPLETED,
+        /** The deadline passed. */
+        DEADLINE,
+        /** The next step would read more postings than allowed. */
+        POSTINGS_BUDGET,
+        /** The future was cancelled. */
+        CANCELLED
+    }
+
+    /**
+        Receives the k best documents after each step, in the thread
+        running the steps. The list is collected at the step and stays
+        valid, while the iteration is changed by the next step unless the
+        scores are kept by a {@link PersistentScoreAccumulator}.
+    */
+    public static interface SnapshotListener {
+        void snapshot(LuceneClassification.Iteration iteration, List<ScoredDocument> top);
+    }
+
+    private LuceneClassification classification;
+    private long deadlineNanos = -1;
+    private long postingsBudget = -1;
+    private int maxSteps = -1;
+    private int k;
+    private int listenerK;
+    private SnapshotListener listener;
+    private Checkpointer checkpointer;
+
+    private volatile StopReason stopReason;
+    private volatile List<ScoredDocument> top;
+    private volatile long postingsRead;
+
+    public AnytimeClassification(LuceneClassification classification) {
+        this.classification = classification;
+    }
+
+    /**
+        Stops the steps after the time since {@link #start} passed, none by default.
+    */
+    public AnytimeClassification setDeadline(long time, TimeUnit unit) {
+        this.deadlineNanos = unit.toNanos(time);
+        return this;
+    }
+
+    /**
+        Stops before the step that would read more postings in total, none by default.
+    */
+    public AnytimeClassification setPostingsBudget(long postingsBudget) {
+        this.postingsBudget = postingsBudget;
+        return this;
+    }
+
+    /**
+        Stops after the number of steps, all the features by default. The
+        steps of a resumed iteration are counted too.
+    */
+    public AnytimeClassification setMaxSteps(int maxSteps) {
+        this.maxSteps = maxSteps;
+        return this;
+    }
+
+    /**
+        Reports the k best documents after each step to the listener, or
+        only the iteration with an empty list if k is 0. Collecting them
+        scans all the scores, it is done only for a listener with k above 0.
+    */
+    public AnytimeClassification setSnapshotListener(int k, SnapshotListener listener) {
+        this.listenerK = k;
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+        Collects the k best documents of the last step once the steps stop,
+        for whatever reason, see {@link #getTop}. None by default.
+    */
+    public AnytimeClassification setTop(int k) {
+        this.k = k;
+        return this;
+    }
+
+    /**
+        Offers every iteration to the checkpointer, and checkpoints the last
+        one when the steps stop. Close the checkpointer when the future is done.
+    */
+    public AnytimeClassification setCheckpointer(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
+        return this;
+    }
+
+    /**
+        @return why the steps stopped, null while running.
+    */
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    /**
+        @return the k best documents of the last iteration, null while
+        running, if there is no iteration or no k was set.
+    */
+    public List<ScoredDocument> getTop() {
+        return top;
+    }
+
+    /**
+        @return the number of the postings read so far.
+    */
+    public long getPostingsRead() {
+        return postingsRead;
+    }
+
+    /**
+        Starts the steps in the executor.
+        @return the future of the last iteration, null if no step was made.
+    */
+    public CompletableFuture<LuceneClassification.Iteration> start(Executor executor) {
+        return start(executor, null);
+    }
+
+    /**
+        Continues the steps after the iteration, e.g. resumed from a checkpoint.
+        @return the future of the last iteration, null if no step was made from null.
+    */
+    public CompletableFuture<LuceneClassification.Iteration> start(Executor executor, final LuceneClassification.Iteration from) {
+        final long start = System.nanoTime();
+        final CompletableFuture<LuceneClassification.Iteration> future = new CompletableFuture<LuceneClassification.Iteration>();
+
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    future.complete(steps(future, start, from));
+                }
+                catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            }
+        });
+
+        return future;
+    }
+
+    private LuceneClassification.Iteration steps(CompletableFuture<LuceneClassification.Iteration> future, long start, LuceneClassification.Iteration from) throws java.io.IOException {
+        LuceneClassification.Iteration iter = from;
+        int steps = from == null ? 0 : from.getIteration() + 1;
+
+        for (;;) {
+            if (future.isCancelled()) {
+                stopReason = StopReason.CANCELLED;
+                break;
+            }
+            if (!classification.hasNext(iter) || (maxSteps >= 0 && steps >= maxSteps)) {
+                stopReason = StopReason.COMPLETED;
+                break;
+            }
+            if (deadlineNanos >= 0 && System.nanoTime() - start >= deadlineNanos) {
+                stopReason = StopReason.DEADLINE;
+                break;
+            }
+            int docFreq = classification.nextDocFreq(iter);
+            if (postingsBudget >= 0 && postingsRead + docFreq > postingsBudget) {
+                stopReason = StopReason.POSTINGS_BUDGET;
+                break;
+            }
+            postingsRead += docFreq;
+
+            iter = classification.step(iter);
+            steps++;
+
+            if (listener != null) {
+                listener.snapshot(iter, listenerK > 0 ? iter.top(listenerK) : Collections.<ScoredDocument>emptyList());
+            }
+            if (checkpointer != null) {
+                checkpointer.offer(iter);
+            }
+        }
+
+        if (k > 0 && iter != null) {
+            top = iter.top(k);
+        }
+        if (checkpointer != null && iter != null && iter != from) {
+            checkpointer.checkpoint(iter);
+        }
+
+        return iter;
+    }
+}
@@ -0,0 +1,613 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexReader;
+
+/**
+    Active learning that labels a batch of documents per round instead of
+    one, so that the rounds, each a training and a scoring of the pool, are
+    fewer by the size of the batch.
+
+    The documents of the pool and of the evaluation are tokenized once to
+    the ids of a {@link TermTable}, a round scores them by the weights of
+    the ids, in parallel if an executor is given. The pool stays in the
+    order of the previous round and is sorted again by the new scores, which
+    is close to linear as the order changes little between the rounds. The
+    batch is taken from the top of the pool, skipping the documents too
+    similar to one already in the batch (the Jaccard similarity of their
+    sets of terms), so that a batch does not label the same document many
+    times over. The counts of the labelled documents are kept between the
+    rounds, only the new labels are counted.
+
+    The positives are the class 0 of the trained classifier, the negatives
+    the class 1, as in {@link LuceneClassification#learnBinary}.
+
+    {@code
+    BatchActiveLearning learning = new BatchActiveLearning(reader, "lemmas", pool, oracle)
+        .setBatchSize(10).setMaxSimilarity(0.8).setExecutor(executor, 4)
+        .setEvaluation(test, testPositives);
+    learning.label(positive, true);
+    learning.label(negative, false);
+    List<BatchActiveLearning.Round> curve = learning.run(-1);
+    }
+
+    @author Marek Schmidt
+*/
+public class BatchActiveLearning {
+
+    /**
+        Tells the label of a document of the pool.
+    */
+    public interface Oracle {
+        boolean isPositive(int docid) throws IOException;
+    }
+
+    /**
+        How the documents of the pool are ordered to be labelled.
+    */
+    public enum Strategy {
+        /** The highest score first. */
+        RELEVANCE,
+        /**
+            The closest to the decision boundary first, the score plus the
+            log prior ratio, which the scores leave out, closest to zero.
+        */
+        UNCERTAINTY
+    }
+
+    /**
+        One round, the quality of the classifier trained from the labels so
+        far and the compute spent on it.
+    */
+    public static class Round {
+        int round;
+        int positives;
+        int negatives;
+        int selected;
+        int skipped;
+        int scored;
+        long trainNanos;
+        long scoreNanos;
+        long selectNanos;
+        long totalNanos;
+        double precision;
+        double recall;
+        double f1;
+
+        public int getRound() {
+            return round;
+        }
+
+        /** The positive labels the classifier was trained from. */
+        public int getPositives() {
+            return positives;
+        }
+
+        /** The negative labels the classifier was trained from. */
+        public int getNegatives() {
+            return negatives;
+        }
+
+        /** The documents labelled in the round, for the next one. */
+        public int getSelected() {
+            return selected;
+        }
+
+        /** The documents skipped as too similar to one of the batch. */
+        public int getSkipped() {
+            return skipped;
+        }
+
+        /** The documents of the pool and of the evaluation scored. */
+        public int getScored() {
+            return scored;
+        }
+
+        public long getTrainNanos() {
+            return trainNanos;
+        }
+
+        public long getScoreNanos() {
+            return scoreNanos;
+        }
+
+        public long getSelectNanos() {
+            return selectNanos;
+        }
+
+        /** The time of all the rounds so far, with the tokenizing before the first one. */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /** The precision of the evaluation at the break-even point. */
+        public double getPrecision() {
+            return precision;
+        }
+
+        /** The recall of the evaluation at the break-even point. */
+        public double getRecall() {
+            return recall;
+        }
+
+        public double getF1() {
+            return f1;
+        }
+
+        public String toString() {
+            return "" + round + "\t" + (positives + negatives) + "\t" + positives + "\t" + negatives + "\t" + precision + "\t" + recall + "\t" + f1 + "\t" + totalNanos / 1000000.0 + "\t" + scored + "\t" + skipped;
+        }
+    }
+
+    private IndexReader reader;
+    private String featureField;
+    private FieldSelector selector;
+    private Oracle oracle;
+    private TrainingOptions options = new TrainingOptions();
+    private Strategy strategy = Strategy.RELEVANCE;
+    private int batchSize = 1;
+    private double maxSimilarity = 1.0;
+    private int selectedFeatures = -1;
+    private ExecutorService executor;
+    private int threads = 1;
+
+    // the documents of the pool followed by the ones of the evaluation
+    private int[] docids;
+    private int poolSize;
+    private Set<Integer> evaluationPositives = new HashSet<Integer>();
+
+    private TermTable vocabulary;
+    private int[][] tokens;
+    private double[] scores;
+    // the indexes of the documents of the pool not labelled yet, in the order of the last round
+    private Integer[] order;
+    private int orderSize;
+
+    private TermCounts counts = new TermCounts();
+    private Set<Integer> labelled = new HashSet<Integer>();
+    private BinaryNaiveBayesClassifier classifier;
+    private List<Round> rounds = new ArrayList<Round>();
+    private long totalNanos;
+
+    /**
+        @param pool The documents to choose the labels from.
+    */
+    public BatchActiveLearning(IndexReader reader, String featureField, Collection<Integer> pool, Oracle oracle) {
+        this.reader = reader;
+        this.featureField = featureField;
+        this.selector = new MapFieldSelector(new String[] { featureField });
+        this.oracle = oracle;
+        this.docids = new int[pool.size()];
+        for (int docid : pool) {
+            docids[poolSize++] = docid;
+        }
+        counts.addClass(0);
+        counts.addClass(1);
+    }
+
+    /**
+        The documents the classifier of each round is evaluated on, ranked
+        by the score as by a search.
+        @param positives The ones of them that belong to the class.
+    */
+    public BatchActiveLearning setEvaluation(Collection<Integer> documents, Collection<Integer> positives) {
+        docids = Arrays.copyOf(docids, poolSize + documents.size());
+        int i = poolSize;
+        for (int docid : documents) {
+            docids[i++] = docid;
+        }
+        evaluationPositives = new HashSet<Integer>(positives);
+        tokens = null;
+        return this;
+    }
+
+    /** The documents labelled per round, 1. */
+    public BatchActiveLearning setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+        return this;
+    }
+
+    /**
+        The documents with the Jaccard similarity of their terms to one
+        already in the batch at least this are left for the next rounds,
+        1.0 keeps only the duplicates out.
+    */
+    public BatchActiveLearning setMaxSimilarity(double maxSimilarity) {
+        this.maxSimilarity = maxSimilarity;
+        return this;
+    }
+
+    public BatchActiveLearning setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+        return this;
+    }
+
+    /** The number of the best features to score by, -1 for all. */
+    public BatchActiveLearning setSelectedFeatures(int selectedFeatures) {
+        this.selectedFeatures = selectedFeatures;
+        return this;
+    }
+
+    public BatchActiveLearning setOptions(TrainingOptions options) {
+        this.options = options;
+        return this;
+    }
+
+    /**
+        Scores the documents split to the threads of the executor, in the
+        calling thread if null.
+    */
+    public BatchActiveLearning setExecutor(ExecutorService executor, int threads) {
+        this.executor = executor;
+        this.threads = Math.max(1, threads);
+        return this;
+    }
+
+    /**
+        Labels the document, e.g. the first examples before the first round.
+    */
+    public void label(int docid, boolean positive) throws IOException {
+        if (!labelled.add(docid)) {
+            return;
+        }
+        String text = TermCounts.text(reader, docid, featureField, selector);
+        if (positive) {
+            counts.add(0, text);
+        }
+        else {
+            counts.addToTotal(1, text);
+        }
+    }
+
+    public int getLabelled() {
+        return labelled.size();
+    }
+
+    /** The classifier trained by the last round. */
+    public BinaryNaiveBayesClassifier getClassifier() {
+        return classifier;
+    }
+
+    public List<Round> getRounds() {
+        return rounds;
+    }
+
+    /**
+        Runs the rounds until the pool is labelled or nothing is selected.
+        @param maxRounds -1 for no limit.
+        @return all the rounds.
+    */
+    public List<Round> run(int maxRounds) throws IOException {
+        for (int i = 0; maxRounds < 0 || i < maxRounds; ++i) {
+            if (round().selected == 0) {
+                break;
+            }
+        }
+        return rounds;
+    }
+
+    /**
+        Trains the classifier from the labels so far, evaluates it and
+        labels the next batch from the pool.
+    */
+    public Round round() throws IOException {
+        long start = System.nanoTime();
+        if (tokens == null) {
+            tokenize();
+        }
+
+        Round round = new Round();
+        round.round = rounds.size();
+        round.positives = counts.getClassSize(0);
+        round.negatives = counts.getClassSize(1);
+
+        classifier = LuceneClassification.learnBinary(counts, 0, options);
+        long trained = System.nanoTime();
+        round.trainNanos = trained - start;
+
+        round.scored = score(weights(classifier));
+        long scored = System.nanoTime();
+        round.scoreNanos = scored - trained;
+
+        evaluate(round);
+        select(round);
+        long end = System.nanoTime();
+        round.selectNanos = end - scored;
+
+        totalNanos += end - start;
+        round.totalNanos = totalNanos;
+        rounds.add(round);
+        return round;
+    }
+
+    private void tokenize() throws IOException {
+        vocabulary = new TermTable(1024);
+        SpanTokenizer tokenizer = new SpanTokenizer();
+        int[] buffer = new int[256];
+
+        tokens = new int[docids.length][];
+        for (int i = 0; i < docids.length; ++i) {
+            String text = TermCounts.text(reader, docids[i], featureField, selector);
+            int n = 0;
+            tokenizer.reset(text);
+            while (tokenizer.next()) {
+                if (n == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, n * 2);
+                }
+                buffer[n++] = vocabulary.add(text, tokenizer.start(), tokenizer.end(), tokenizer.hash());
+            }
+            tokens[i] = Arrays.copyOf(buffer, n);
+        }
+        scores = new double[docids.length];
+
+        order = new Integer[poolSize];
+        orderSize = 0;
+        for (int i = 0; i < poolSize; ++i) {
+            if (!labelled.contains(docids[i])) {
+                order[orderSize++] = i;
+            }
+        }
+    }
+
+    /**
+        @return the loglikelihood of the class by the ids of the terms, as
+        {@link LuceneClassification#classify(NaiveBayesClassifier, java.util.Collection, int, int)}.
+    */
+    private double[] weights(NaiveBayesClassifier nbc) {
+        double[] weights = new double[vocabulary.size()];
+        Map<String, Double> loglikelihoods = nbc.loglikelihoods.get(0);
+        if (selectedFeatures < 0) {
+            for (int id = 0; id < weights.length; ++id) {
+                Double ll = loglikelihoods.get(vocabulary.term(id));
+                if (ll != null) {
+                    weights[id] = ll;
+                }
+            }
+        }
+        else {
+            List<String> features = nbc.features.get(0);
+            for (int i = 0; i < selectedFeatures && i < features.size(); ++i) {
+                int id = vocabulary.get(features.get(i));
+                Double ll = loglikelihoods.get(features.get(i));
+                if (id >= 0 && ll != null) {
+                    weights[id] = ll;
+                }
+            }
+        }
+        return weights;
+    }
+
+    /**
+        Scores the pool not labelled yet and the evaluation.
+        @return the number of the documents scored.
+    */
+    private int score(final double[] weights) throws IOException {
+        final int[] indexes = new int[orderSize + docids.length - poolSize];
+        for (int i = 0; i < orderSize; ++i) {
+            indexes[i] = order[i];
+        }
+        for (int i = poolSize; i < docids.length; ++i) {
+            indexes[orderSize + i - poolSize] = i;
+        }
+
+        int parts = executor == null ? 1 : Math.min(threads, Math.max(1, indexes.length / 256));
+        if (parts == 1) {
+            score(weights, indexes, 0, indexes.length);
+            return indexes.length;
+        }
+
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int p = 0; p < parts; ++p) {
+            final int from = (int)((long)indexes.length * p / parts);
+            final int to = (int)((long)indexes.length * (p + 1) / parts);
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() {
+                    score(weights, indexes, from, to);
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while scoring");
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        return indexes.length;
+    }
+
+    private void score(double[] weights, int[] indexes, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            int[] document = tokens[indexes[i]];
+            double p = 0.0;
+            for (int id : document) {
+                p += weights[id];
+            }
+            scores[indexes[i]] = p;
+        }
+    }
+
+    /**
+        The precision and the recall of the evaluation at the first rank
+        the recall reaches the precision.
+    */
+    private void evaluate(Round round) {
+        int n = docids.length - poolSize;
+        if (n == 0 || evaluationPositives.isEmpty()) {
+            return;
+        }
+        Integer[] ranking = new Integer[n];
+        for (int i = 0; i < n; ++i) {
+            ranking[i] = poolSize + i;
+        }
+        Arrays.sort(ranking, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Double.compare(scores[b], scores[a]);
+            }
+        });
+
+        int tp = 0;
+        double p = 0.0;
+        double r = 0.0;
+        for (int i = 0; i < n; ++i) {
+            if (evaluationPositives.contains(docids[ranking[i]])) {
+                ++tp;
+            }
+            p = (double)tp / (i + 1);
+            r = (double)tp / evaluationPositives.size();
+            if (r != 0.0 && r >= p) {
+                break;
+            }
+        }
+        round.precision = p;
+        round.recall = r;
+        round.f1 = p + r == 0.0 ? 0.0 : 2 * p * r / (p + r);
+    }
+
+    /**
+        Sorts the pool again and labels the batch from its top.
+    */
+    private void select(Round round) throws IOException {
+        final double logPrior = classifier.getLogPrior();
+        Arrays.sort(order, 0, orderSize, strategy == Strategy.UNCERTAINTY
+            ? new Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    return Double.compare(Math.abs(scores[a] + logPrior), Math.abs(scores[b] + logPrior));
+                }
+            }
+            : new Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    return Double.compare(scores[b], scores[a]);
+                }
+            });
+
+        List<int[]> batch = new ArrayList<int[]>();
+        boolean[] taken = new boolean[orderSize];
+        for (int i = 0; i < orderSize && batch.size() < batchSize; ++i) {
+            int[] profile = profile(tokens[order[i]]);
+            boolean similar = false;
+            for (int[] other : batch) {
+                if (similarity(profile, other) >= maxSimilarity) {
+                    similar = true;
+                    break;
+                }
+            }
+            if (similar) {
+                ++round.skipped;
+                continue;
+            }
+            batch.add(profile);
+            taken[i] = true;
+        }
+
+        // label the batch and keep the rest in order for the next round
+        int n = 0;
+        for (int i = 0; i < orderSize; ++i) {
+            if (taken[i]) {
+                int docid = docids[order[i]];
+                label(docid, oracle.isPositive(docid));
+            }
+            else if (!labelled.contains(docids[order[i]])) {
+                order[n++] = order[i];
+            }
+        }
+        round.selected = batch.size();
+        orderSize = n;
+    }
+
+    /**
+        @return the distinct ids of the document, sorted.
+    */
+    private static int[] profile(int[] document) {
+        int[] ids = document.clone();
+        Arrays.sort(ids);
+        int n = 0;
+        for (int i = 0; i < ids.length; ++i) {
+            if (n == 0 || ids[n - 1] != ids[i]) {
+                ids[n++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, n);
+    }
+
+    /**
+        @return the Jaccard similarity of the sorted sets of ids.
+    */
+    static double similarity(int[] a, int[] b) {
+        if (a.length == 0 && b.length == 0) {
+            return 1.0;
+        }
+        int common = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                ++i;
+            }
+            else if (a[i] > b[j]) {
+                ++j;
+            }
+            else {
+                ++common;
+                ++i;
+                ++j;
+            }
+        }
+        return (double)common / (a.length + b.length - common);
+    }
+}
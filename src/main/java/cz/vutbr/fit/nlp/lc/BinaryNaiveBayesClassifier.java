@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+/**
+    A naive bayes classifier of one class against all the others, trained
+    by {@link LuceneClassification#learnBinary}. It has the prior, the
+    weights and the features of the class only, the log likelihood ratios of
+    the complement are the same with the opposite sign.
+
+    Pass it with the class to {@link LuceneClassification} as any other
+    classifier.
+
+    @author Marek Schmidt
+*/
+public class BinaryNaiveBayesClassifier extends NaiveBayesClassifier {
+
+    private static final long serialVersionUID = 3146571427095281544L;
+
+    private int klass;
+
+    public BinaryNaiveBayesClassifier(int klass) {
+        this.klass = klass;
+    }
+
+    /**
+        @return the class trained.
+    */
+    public int getKlass() {
+        return klass;
+    }
+
+    /**
+        @return the log prior ratio of the class.
+    */
+    public double getLogPrior() {
+        return logpriors.get(klass);
+    }
+
+    /**
+        @return the log likelihood ratio of the term for the class, 0 for a term not trained.
+    */
+    public double getLogLikelihood(String term) {
+        Double ll = loglikelihoods.get(klass).get(term);
+        return ll == null ? 0.0 : ll;
+    }
+}
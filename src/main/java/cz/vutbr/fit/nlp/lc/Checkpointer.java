@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+    Writes the iterations of a long classification to a checkpoint file at
+    an interval, so that a restarted process resumes the steps instead of
+    starting over.
+
+    {@code
+    Checkpointer checkpointer = new Checkpointer(classification, file, executor);
+    LuceneClassification.Iteration iter = checkpointer.resume();
+    while (classification.hasNext(iter)) {
+        iter = classification.step(iter);
+        checkpointer.offer(iter);
+    }
+    checkpointer.close();
+    }
+
+    The file is written in the executor, while the steps go on. The scores of
+    a {@link PersistentScoreAccumulator} are a snapshot, so they are written
+    there too, the other accumulators are changed by the next step and are
+    copied to the memory first. The file is replaced only by a complete
+    checkpoint, a process dying while writing leaves the previous one.
+
+    @author Marek Schmidt
+*/
+public class Checkpointer {
+
+    private LuceneClassification classification;
+    private File file;
+    private Executor executor;
+    private long intervalNanos = TimeUnit.MINUTES.toNanos(1);
+
+    private long lastCheckpoint;
+    private CompletableFuture<Void> pending;
+    private int checkpoints;
+    private volatile int lastIteration = -1;
+
+    /**
+        @param executor Writes the checkpoints, not the single thread running
+        the steps, a checkpoint waits for the previous one to be written.
+    */
+    public Checkpointer(LuceneClassification classification, File file, Executor executor) {
+        this.classification = classification;
+        this.file = file;
+        this.executor = executor;
+        this.lastCheckpoint = System.nanoTime();
+    }
+
+    /**
+        Sets the minimal time between two checkpoints, one minute by default.
+    */
+    public Checkpointer setInterval(long time, TimeUnit unit) {
+        this.intervalNanos = unit.toNanos(time);
+        return this;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+        @return the number of the checkpoints started.
+    */
+    public int getCheckpoints() {
+        return checkpoints;
+    }
+
+    /**
+        @return the iteration of the last checkpoint written or resumed, -1 if none.
+    */
+    public int getLastIteration() {
+        return lastIteration;
+    }
+
+    /**
+        Reads the last checkpoint.
+        @return the iteration to continue the steps from, null if there is no checkpoint.
+        @throws IOException if the checkpoint is not readable, or was written
+        for another model or version of the index, see
+        {@link LuceneClassification#readCheckpoint}.
+    */
+    public LuceneClassification.Iteration resume() throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            LuceneClassification.Iteration ret = classification.readCheckpoint(in);
+            lastIteration = ret.getIteration();
+            lastCheckpoint = System.nanoTime();
+            return ret;
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+        Checkpoints the iteration if the interval passed since the last
+        checkpoint and the last one is written.
+        @throws IOException if writing the last checkpoint failed.
+    */
+    public void offer(LuceneClassification.Iteration iteration) throws IOException {
+        if (System.nanoTime() - lastCheckpoint < intervalNanos) {
+            return;
+        }
+        if (pending != null && !pending.isDone()) {
+            return;
+        }
+        checkpoint(iteration);
+    }
+
+    /**
+        Checkpoints the iteration now, after the last checkpoint is written.
+        @throws IOException if writing the last checkpoint failed.
+    */
+    public void checkpoint(final LuceneClassification.Iteration iteration) throws IOException {
+        flush();
+
+        final byte[] copy;
+        if (iteration.getScores() instanceof PersistentScoreAccumulator) {
+            copy = null;
+        }
+        else {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            classification.writeCheckpoint(iteration, out);
+            out.flush();
+            copy = bytes.toByteArray();
+        }
+
+        lastCheckpoint = System.nanoTime();
+        checkpoints++;
+        final CompletableFuture<Void> future = new CompletableFuture<Void>();
+        pending = future;
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    write(iteration, copy);
+                    lastIteration = iteration.getIteration();
+                    future.complete(null);
+                }
+                catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            }
+        });
+    }
+
+    private void write(LuceneClassification.Iteration iteration, byte[] copy) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream fos = new FileOutputStream(tmp);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            if (copy != null) {
+                out.write(copy);
+            }
+            else {
+                classification.writeCheckpoint(iteration, out);
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        finally {
+            fos.close();
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+        Waits until the last checkpoint is written.
+        @throws IOException if writing it failed.
+    */
+    public void flush() throws IOException {
+        if (pending == null) {
+            return;
+        }
+
+        CompletableFuture<Void> last = pending;
+        pending = null;
+        try {
+            last.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for the checkpoint", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Writing the checkpoint failed", cause);
+        }
+    }
+
+    /**
+        Waits for the last checkpoint, the executor is not shut down.
+    */
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+        Removes the checkpoint, when the steps are finished and the result
+        is not needed again.
+    */
+    public void delete() throws IOException {
+        flush();
+        file.delete();
+    }
+}
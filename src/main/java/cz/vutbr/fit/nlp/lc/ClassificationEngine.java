@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+
+/**
+    The immutable part of a {@link LuceneClassification}, the trained class
+    and the index, safe to share by any number of threads. Each request
+    steps in its own {@link ClassificationSession}.
+
+    {@code
+    ClassificationEngine engine = new ClassificationEngine(reader, nbc, "lemmas", 0, 8);
+    ...
+    ClassificationSession session = engine.openSession();
+    try {
+        session.steps(50);
+        List<ScoredDocument> top = session.top(20);
+    }
+    finally {
+        session.close();
+    }
+    }
+
+    Closed sessions are kept in a bounded pool and reset for the next
+    request, so their accumulators, heaps and postings buffers are
+    allocated once. When the pool is empty a new session is created, when
+    it is full a closed session is dropped.
+
+    @author Marek Schmidt
+*/
+public class ClassificationEngine {
+
+    private final IndexReader reader;
+    private final NaiveBayesClassifier classifier;
+    private final String featureField;
+    private final int klass;
+
+    private final List<String> features;
+    private final Term[] terms;
+    private final double[] weights;
+
+    private final BlockingQueue<ClassificationSession> pool;
+    private final AtomicInteger created = new AtomicInteger();
+
+    /**
+        @param poolSize The number of the closed sessions kept, about the number of the threads.
+    */
+    public ClassificationEngine(IndexReader reader, NaiveBayesClassifier classifier, String featureField, int klass, int poolSize) {
+        this.reader = reader;
+        this.classifier = classifier;
+        this.featureField = featureField;
+        this.klass = klass;
+
+        List<String> f = classifier.features.get(klass);
+        Map<String, Double> loglikelihoods = classifier.loglikelihoods.get(klass);
+        features = Collections.unmodifiableList(new ArrayList<String>(f));
+        terms = new Term[features.size()];
+        weights = new double[features.size()];
+        for (int i = 0; i < terms.length; ++i) {
+            terms[i] = new Term(featureField, features.get(i));
+            weights[i] = loglikelihoods.get(features.get(i));
+        }
+
+        pool = new ArrayBlockingQueue<ClassificationSession>(Math.max(1, poolSize));
+    }
+
+    public IndexReader getReader() {
+        return reader;
+    }
+
+    public NaiveBayesClassifier getClassifier() {
+        return classifier;
+    }
+
+    public String getFeatureField() {
+        return featureField;
+    }
+
+    public int getKlass() {
+        return klass;
+    }
+
+    /**
+        @return the features, the best first.
+    */
+    public List<String> getFeatures() {
+        return features;
+    }
+
+    int getFeatureCount() {
+        return terms.length;
+    }
+
+    Term getTerm(int i) {
+        return terms[i];
+    }
+
+    double getWeight(int i) {
+        return weights[i];
+    }
+
+    /**
+        @return a session from the pool, or a new one if the pool is empty.
+    */
+    public ClassificationSession openSession() throws IOException {
+        ClassificationSession session = pool.poll();
+        if (session == null) {
+            session = new ClassificationSession(this);
+            created.incrementAndGet();
+        }
+        session.open();
+        return session;
+    }
+
+    /**
+        Returns the session, reset, to the pool.
+    */
+    void release(ClassificationSession session) {
+        if (!pool.offer(session)) {
+            session.dispose();
+        }
+    }
+
+    /**
+        @return the number of the sessions created so far, stays constant under a steady load.
+    */
+    public int getCreatedSessions() {
+        return created.get();
+    }
+
+    /**
+        @return the number of the closed sessions in the pool.
+    */
+    public int getPooledSessions() {
+        return pool.size();
+    }
+
+    /**
+        Frees the pooled sessions. The index is not closed.
+    */
+    public void close() {
+        ClassificationSession session;
+        while ((session = pool.poll()) != null) {
+            session.dispose();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+    Aggregates the classification metrics, so they can be watched over JMX
+    while the classification runs:
+
+    {@code
+    ClassificationMetrics metrics = new ClassificationMetrics();
+    metrics.register("search");
+    classification.addListener(metrics);
+    }
+
+    @author Marek Schmidt
+*/
+public class ClassificationMetrics implements ClassificationListener, ClassificationMetricsMBean {
+
+    private final AtomicLong steps = new AtomicLong();
+    private final AtomicLong postingsRead = new AtomicLong();
+    private final AtomicLong newDocuments = new AtomicLong();
+    private final AtomicLong stepNanos = new AtomicLong();
+    private final AtomicLong learns = new AtomicLong();
+    private final AtomicLong countingNanos = new AtomicLong();
+    private final AtomicLong rankingNanos = new AtomicLong();
+
+    private volatile StepStatistics last;
+
+    private ObjectName name;
+
+    public void stepFinished(StepStatistics statistics) {
+        steps.incrementAndGet();
+        postingsRead.addAndGet(statistics.getPostingsRead());
+        newDocuments.addAndGet(statistics.getNewDocuments());
+        stepNanos.addAndGet(statistics.getElapsedNanos());
+        last = statistics;
+    }
+
+    public void learnFinished(LearnStatistics statistics) {
+        learns.incrementAndGet();
+        countingNanos.addAndGet(statistics.getCountingNanos());
+        rankingNanos.addAndGet(statistics.getRankingNanos());
+    }
+
+    /**
+        Registers the metrics to the platform MBean server as
+        {@code cz.vutbr.fit.nlp.lc:type=ClassificationMetrics,name=<name>}.
+    */
+    public void register(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        this.name = new ObjectName("cz.vutbr.fit.nlp.lc:type=ClassificationMetrics,name=" + ObjectName.quote(name));
+        server.registerMBean(this, this.name);
+    }
+
+    public void unregister() throws JMException {
+        if (name != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            name = null;
+        }
+    }
+
+    public long getSteps() {
+        return steps.get();
+    }
+
+    public long getPostingsRead() {
+        return postingsRead.get();
+    }
+
+    public long getNewDocuments() {
+        return newDocuments.get();
+    }
+
+    public long getStepNanos() {
+        return stepNanos.get();
+    }
+
+    public double getAverageStepMicros() {
+        long n = steps.get();
+        return n == 0 ? 0.0 : stepNanos.get() / 1000.0 / n;
+    }
+
+    public String getLastTerm() {
+        StepStatistics s = last;
+        return s == null ? null : s.getTerm();
+    }
+
+    public int getLastDocFreq() {
+        StepStatistics s = last;
+        return s == null ? 0 : s.getDocFreq();
+    }
+
+    public int getLastAccumulatorSize() {
+        StepStatistics s = last;
+        return s == null ? 0 : s.getAccumulatorSize();
+    }
+
+    public long getLearns() {
+        return learns.get();
+    }
+
+    public long getCountingNanos() {
+        return countingNanos.get();
+    }
+
+    public long getRankingNanos() {
+        return rankingNanos.get();
+    }
+
+    public void reset() {
+        steps.set(0);
+        postingsRead.set(0);
+        newDocuments.set(0);
+        stepNanos.set(0);
+        learns.set(0);
+        countingNanos.set(0);
+        rankingNanos.set(0);
+        last = null;
+    }
+}
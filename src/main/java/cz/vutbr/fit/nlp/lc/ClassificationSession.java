@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.index.TermDocs;
+
+/**
+    The state of one request of a {@link ClassificationEngine}: the features
+    stepped and the scores of the documents. Not thread safe, used by one
+    thread at a time, see {@link ClassificationEngine#openSession}.
+
+    The scores are kept in an open addressing hash table of docids, which
+    keeps its capacity when the session is reset. The postings are read
+    in blocks to a buffer by one reused {@link TermDocs}.
+
+    @author Marek Schmidt
+*/
+public class ClassificationSession {
+
+    private static final int EMPTY = -1;
+
+    private ClassificationEngine engine;
+    private TermDocs termDocs;
+    private boolean open;
+
+    // the features stepped
+    private int steps;
+
+    // the scores, keys of EMPTY are free slots
+    private int[] keys;
+    private int shift;
+    private double[] values;
+    // the slots used, in the order of the first score
+    private int[] used;
+    private int size;
+
+    private int[] docs = new int[128];
+    private int[] freqs = new int[128];
+
+    // the heap of the top documents, the worst on the top
+    private int[] heapDocs = new int[0];
+    private double[] heapScores = new double[0];
+
+    ClassificationSession(ClassificationEngine engine) throws IOException {
+        this.engine = engine;
+        this.termDocs = engine.getReader().termDocs();
+        allocate(1024);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        shift = 32 - Integer.numberOfTrailingZeros(capacity);
+        values = new double[capacity];
+        used = new int[capacity / 2];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    void open() {
+        open = true;
+    }
+
+    private void checkOpen() {
+        if (!open) {
+            throw new IllegalStateException("The session is closed");
+        }
+    }
+
+    private int slot(int doc) {
+        int mask = keys.length - 1;
+        int i = (doc * 0x9E3779B9) >>> shift;
+        while (keys[i] != EMPTY && keys[i] != doc) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void add(int doc, double value) {
+        int i = slot(doc);
+        if (keys[i] == EMPTY) {
+            if (size == used.length) {
+                grow();
+                i = slot(doc);
+            }
+            keys[i] = doc;
+            values[i] = value;
+            used[size++] = i;
+        }
+        else {
+            values[i] += value;
+        }
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        double[] oldValues = values;
+        int[] oldUsed = used;
+        int oldSize = size;
+
+        allocate(keys.length * 2);
+        for (int j = 0; j < oldSize; ++j) {
+            int i = slot(oldKeys[oldUsed[j]]);
+            keys[i] = oldKeys[oldUsed[j]];
+            values[i] = oldValues[oldUsed[j]];
+            used[size++] = i;
+        }
+    }
+
+    public boolean hasNext() {
+        return steps < engine.getFeatureCount();
+    }
+
+    /**
+        Adds the weight of the next feature to the documents containing it.
+        @return false if there are no more features.
+    */
+    public boolean step() throws IOException {
+        checkOpen();
+        if (!hasNext()) return false;
+
+        double weight = engine.getWeight(steps);
+        termDocs.seek(engine.getTerm(steps));
+        int n;
+        while ((n = termDocs.read(docs, freqs)) > 0) {
+            for (int i = 0; i < n; ++i) {
+                add(docs[i], weight);
+            }
+        }
+
+        steps++;
+        return true;
+    }
+
+    /**
+        Makes at most n steps.
+        @return the number of the steps made.
+    */
+    public int steps(int n) throws IOException {
+        int made = 0;
+        while (made < n && step()) {
+            made++;
+        }
+        return made;
+    }
+
+    /**
+        @return the number of the features stepped.
+    */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+        @return the number of the documents scored.
+    */
+    public int size() {
+        return size;
+    }
+
+    /**
+        @return the score of the document, NaN if it has not been scored.
+    */
+    public double getLogScore(int doc) {
+        int i = slot(doc);
+        return keys[i] == EMPTY ? Double.NaN : values[i];
+    }
+
+    // the lower score is worse, of the same scores the higher docid
+    private boolean worse(int i, int j) {
+        return heapScores[i] < heapScores[j] || (heapScores[i] == heapScores[j] && heapDocs[i] > heapDocs[j]);
+    }
+
+    private void swap(int i, int j) {
+        int d = heapDocs[i];
+        heapDocs[i] = heapDocs[j];
+        heapDocs[j] = d;
+        double s = heapScores[i];
+        heapScores[i] = heapScores[j];
+        heapScores[j] = s;
+    }
+
+    private void siftDown(int i, int n) {
+        for (;;) {
+            int child = 2 * i + 1;
+            if (child >= n) break;
+            if (child + 1 < n && worse(child + 1, child)) {
+                child++;
+            }
+            if (!worse(child, i)) break;
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    /**
+        Writes the k best documents and their scores to the arrays, the best
+        first, the lower docid first of the same scores, without allocating
+        anything once the session has served a k as large.
+        @return the number of the documents written, at most k.
+    */
+    public int top(int k, int[] topDocs, double[] topScores) {
+        checkOpen();
+        if (heapDocs.length < k) {
+            heapDocs = new int[k];
+            heapScores = new double[k];
+        }
+
+        int n = 0;
+        for (int j = 0; j < size && k > 0; ++j) {
+            int slot = used[j];
+            if (n < k) {
+                // sift up
+                int i = n++;
+                heapDocs[i] = keys[slot];
+                heapScores[i] = values[slot];
+                while (i > 0 && worse(i, (i - 1) / 2)) {
+                    swap(i, (i - 1) / 2);
+                    i = (i - 1) / 2;
+                }
+            }
+            else if (values[slot] > heapScores[0] || (values[slot] == heapScores[0] && keys[slot] < heapDocs[0])) {
+                heapDocs[0] = keys[slot];
+                heapScores[0] = values[slot];
+                siftDown(0, n);
+            }
+        }
+
+        // the worst to the end
+        for (int m = n; m > 0; --m) {
+            topDocs[m - 1] = heapDocs[0];
+            topScores[m - 1] = heapScores[0];
+            swap(0, m - 1);
+            siftDown(0, m - 1);
+        }
+        return n;
+    }
+
+    /**
+        @return the k best scored documents, the best first.
+    */
+    public List<ScoredDocument> top(int k) {
+        int[] topDocs = new int[k];
+        double[] topScores = new double[k];
+        int n = top(k, topDocs, topScores);
+
+        List<ScoredDocument> ret = new ArrayList<ScoredDocument>(n);
+        for (int i = 0; i < n; ++i) {
+            ret.add(new ScoredDocument(topDocs[i], topScores[i]));
+        }
+        return ret;
+    }
+
+    /**
+        Resets the session and returns it to the pool of the engine. The
+        session must not be used after.
+    */
+    public void close() {
+        if (!open) return;
+        open = false;
+
+        for (int j = 0; j < size; ++j) {
+            keys[used[j]] = EMPTY;
+        }
+        size = 0;
+        steps = 0;
+
+        engine.release(this);
+    }
+
+    void dispose() {
+        try {
+            termDocs.close();
+        }
+        catch (IOException e) {
+            // nothing to do
+        }
+    }
+}
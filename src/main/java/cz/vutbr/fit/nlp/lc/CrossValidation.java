@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexReader;
+
+/**
+    k-fold cross validation of the training options and the number of
+    features to step.
+
+    Every labelled document is read and counted once, into the counts of
+    its fold, and the total counts are their sum. The training counts of a
+    fold are the total minus the held out fold, subtracted once per fold
+    and shared by all the configurations, so evaluating a configuration
+    costs the ranking of the features, not reading the documents or
+    copying the counts again.
+
+    {@code
+    CrossValidation cv = new CrossValidation(reader, class2ids, "lemmas", 5, new Random(1));
+    List<CrossValidation.Evaluation> evaluations = cv.evaluate(0, configurations, new int[] {10, 50, 100}, executor);
+    }
+
+    A document is classified to the class if its score using the given
+    number of the best features is positive, as in
+    {@link LuceneClassification#classify(NaiveBayesClassifier, java.util.Collection, int, int)}.
+
+    @author Marek Schmidt
+*/
+public class CrossValidation {
+
+    /**
+        The evaluation of one configuration and depth, summed over the folds.
+    */
+    public static class Evaluation {
+        TrainingOptions options;
+        int depth;
+        int tp;
+        int fp;
+        int fn;
+        int tn;
+
+        public TrainingOptions getOptions() {
+            return options;
+        }
+
+        /** The number of features used, -1 for all. */
+        public int getDepth() {
+            return depth;
+        }
+
+        public double getPrecision() {
+            return tp + fp == 0 ? 0.0 : (0.0 + tp) / (tp + fp);
+        }
+
+        public double getRecall() {
+            return tp + fn == 0 ? 0.0 : (0.0 + tp) / (tp + fn);
+        }
+
+        public double getF1() {
+            double p = getPrecision();
+            double r = getRecall();
+            return p + r == 0.0 ? 0.0 : 2 * p * r / (p + r);
+        }
+
+        public double getAccuracy() {
+            int n = tp + fp + fn + tn;
+            return n == 0 ? 0.0 : (0.0 + tp + tn) / n;
+        }
+
+        public String toString() {
+            return "" + options + " " + depth + " " + getPrecision() + " " + getRecall() + " " + getF1() + " " + getAccuracy();
+        }
+    }
+
+    private static class Example {
+        int klass;
+        // the ids of the tokens in the vocabulary
+        int[] tokens;
+    }
+
+    private static class Contribution implements Comparable<Contribution> {
+        int rank;
+        double ll;
+
+        Contribution(int rank, double ll) {
+            this.rank = rank;
+            this.ll = ll;
+        }
+
+        public int compareTo(Contribution other) {
+            return rank < other.rank ? -1 : (rank == other.rank ? 0 : 1);
+        }
+    }
+
+    private int folds;
+    private TermCounts total;
+    private TermCounts[] foldCounts;
+    private TermCounts[] trainingCounts;
+    private List<List<Example>> foldExamples;
+    // the terms of all the examples, read only once counted
+    private TermTable vocabulary = new TermTable(1024);
+
+    /**
+        Reads and counts the labelled documents, assigning them to the folds
+        at random, stratified by the class.
+    */
+    public CrossValidation(IndexReader reader, Map<Integer, Set<Integer>> class2ids, String featureField, int folds, Random random) throws IOException {
+        if (folds < 2) {
+            throw new IllegalArgumentException("At least 2 folds needed");
+        }
+
+        this.folds = folds;
+        foldCounts = new TermCounts[folds];
+        trainingCounts = new TermCounts[folds];
+        foldExamples = new ArrayList<List<Example>>(folds);
+        for (int f = 0; f < folds; ++f) {
+            foldCounts[f] = new TermCounts();
+            foldExamples.add(new ArrayList<Example>());
+        }
+
+        total = new TermCounts();
+        FieldSelector selector = new MapFieldSelector(new String[] { featureField });
+        SpanTokenizer tokenizer = new SpanTokenizer();
+        int next = 0;
+        for (Integer klass : class2ids.keySet()) {
+            List<Integer> docids = new ArrayList<Integer>(class2ids.get(klass));
+            Collections.sort(docids);
+            Collections.shuffle(docids, random);
+
+            total.addClass(klass);
+            for (Integer docid : docids) {
+                int f = next++ % folds;
+                Example example = new Example();
+                example.klass = klass;
+                String text = TermCounts.text(reader, docid, featureField, selector);
+                example.tokens = tokenize(text, tokenizer);
+
+                foldCounts[f].add(klass, text);
+                foldExamples.get(f).add(example);
+            }
+        }
+
+        for (int f = 0; f < folds; ++f) {
+            for (Integer klass : class2ids.keySet()) {
+                foldCounts[f].addClass(klass);
+            }
+            total = total.plus(foldCounts[f]);
+        }
+    }
+
+    private int[] tokenize(String text, SpanTokenizer tokenizer) {
+        int[] tokens = new int[16];
+        int size = 0;
+        tokenizer.reset(text);
+        while (tokenizer.next()) {
+            if (size == tokens.length) {
+                tokens = Arrays.copyOf(tokens, size * 2);
+            }
+            tokens[size++] = vocabulary.add(text, tokenizer.start(), tokenizer.end(), tokenizer.hash());
+        }
+        return Arrays.copyOf(tokens, size);
+    }
+
+    public int getFolds() {
+        return folds;
+    }
+
+    /**
+        @return the counts of all the labelled documents.
+    */
+    public TermCounts getCounts() {
+        return total;
+    }
+
+    /**
+        @return the counts of the documents not in the fold, the training set
+        of the fold. The counts are subtracted on the first call and shared by
+        all the configurations evaluated, they must not be modified.
+    */
+    public TermCounts getTrainingCounts(int fold) {
+        synchronized (foldCounts[fold]) {
+            if (trainingCounts[fold] == null) {
+                trainingCounts[fold] = total.minus(foldCounts[fold]);
+            }
+            return trainingCounts[fold];
+        }
+    }
+
+    /**
+        Evaluates the class on one fold for all the depths.
+        @return the confusion matrices, tp, fp, fn, tn for each depth.
+    */
+    int[][] evaluateFold(int klass, TrainingOptions options, int[] depths, int fold) {
+        NaiveBayesClassifier nbc = LuceneClassification.learn(getTrainingCounts(fold), options);
+
+        List<String> features = nbc.features.get(klass);
+        Map<String, Double> loglikelihoods = nbc.loglikelihoods.get(klass);
+        // the rank and the weight of the features by the id of the term, -1 if not a feature
+        int[] ranks = new int[vocabulary.size()];
+        double[] lls = new double[vocabulary.size()];
+        Arrays.fill(ranks, -1);
+        int rank = 0;
+        for (String feature : features) {
+            int id = vocabulary.get(feature);
+            if (id >= 0) {
+                ranks[id] = rank;
+                lls[id] = loglikelihoods.get(feature);
+            }
+            rank++;
+        }
+
+        int[][] confusion = new int[depths.length][4];
+        for (Example example : foldExamples.get(fold)) {
+            // the contributions of the tokens ordered by the rank of the feature
+            List<Contribution> contributions = new ArrayList<Contribution>();
+            for (int token : example.tokens) {
+                if (ranks[token] >= 0) {
+                    contributions.add(new Contribution(ranks[token], lls[token]));
+                }
+            }
+            Collections.sort(contributions);
+
+            for (int d = 0; d < depths.length; ++d) {
+                int depth = depths[d] < 0 ? features.size() : depths[d];
+                double score = 0.0;
+                for (Contribution contribution : contributions) {
+                    if (contribution.rank >= depth) break;
+                    score += contribution.ll;
+                }
+
+                boolean predicted = score > 0.0;
+                boolean actual = example.klass == klass;
+                confusion[d][predicted ? (actual ? 0 : 1) : (actual ? 2 : 3)]++;
+            }
+        }
+
+        return confusion;
+    }
+
+    /**
+        Evaluates the configurations for the class, each on all the depths.
+
+        @param depths The numbers of features to use, -1 for all.
+        @param executor Runs the folds in parallel, or null to run them in the calling thread.
+        @return the evaluations of each configuration and depth.
+    */
+    public List<Evaluation> evaluate(final int klass, List<TrainingOptions> configurations, final int[] depths, ExecutorService executor) throws InterruptedException, ExecutionException {
+        List<Future<int[][]>> futures = new ArrayList<Future<int[][]>>();
+        List<int[][]> results = new ArrayList<int[][]>();
+
+        for (final TrainingOptions options : configurations) {
+            for (int f = 0; f < folds; ++f) {
+                final int fold = f;
+                if (executor == null) {
+                    results.add(evaluateFold(klass, options, depths, fold));
+                }
+                else {
+                    futures.add(executor.submit(new Callable<int[][]>() {
+                        public int[][] call() {
+                            return evaluateFold(klass, options, depths, fold);
+                        }
+                    }));
+                }
+            }
+        }
+
+        for (Future<int[][]> future : futures) {
+            results.add(future.get());
+        }
+
+        List<Evaluation> ret = new ArrayList<Evaluation>();
+        int i = 0;
+        for (TrainingOptions options : configurations) {
+            Evaluation[] evaluations = new Evaluation[depths.length];
+            for (int d = 0; d < depths.length; ++d) {
+                evaluations[d] = new Evaluation();
+                evaluations[d].options = options;
+                evaluations[d].depth = depths[d];
+            }
+
+            for (int f = 0; f < folds; ++f) {
+                int[][] confusion = results.get(i++);
+                for (int d = 0; d < depths.length; ++d) {
+                    evaluations[d].tp += confusion[d][0];
+                    evaluations[d].fp += confusion[d][1];
+                    evaluations[d].fn += confusion[d][2];
+                    evaluations[d].tn += confusion[d][3];
+                }
+            }
+
+            ret.addAll(Arrays.asList(evaluations));
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+    Writes the classification metrics as comma separated values, one line
+    per step or training:
+
+    {@code event,klass,iteration,term,docFreq,postingsRead,accumulatorSize,newDocuments,elapsedNanos,documents,terms,countingNanos,rankingNanos,prunedDocuments,pruneBound}
+
+    The lines are buffered, call {@link #flush} or {@link #close} to get them
+    written out.
+
+    @author Marek Schmidt
+*/
+public class CsvClassificationListener implements ClassificationListener {
+
+    private Writer out;
+    private IOException error;
+
+    public CsvClassificationListener(Writer out) throws IOException {
+        this.out = out;
+        out.write("event,klass,iteration,term,docFreq,postingsRead,accumulatorSize,newDocuments,elapsedNanos,documents,terms,countingNanos,rankingNanos,prunedDocuments,pruneBound\n");
+    }
+
+    public CsvClassificationListener(File file) throws IOException {
+        this(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8")));
+    }
+
+    private static String escape(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) {
+            return s;
+        }
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+
+    private synchronized void write(String line) {
+        if (error != null) return;
+        try {
+            out.write(line);
+        }
+        catch (IOException e) {
+            // the listener must not break the classification, we report it on flush
+            error = e;
+        }
+    }
+
+    public void stepFinished(StepStatistics s) {
+        write("step," + s.getKlass() + "," + s.getIteration() + "," + escape(s.getTerm()) + "," + s.getDocFreq() + "," + s.getPostingsRead() + "," + s.getAccumulatorSize() + "," + s.getNewDocuments() + "," + s.getElapsedNanos() + ",,,,," + s.getPrunedDocuments() + "," + s.getPruneBound() + "\n");
+    }
+
+    public void learnFinished(LearnStatistics s) {
+        write("learn,,,,,,,," + (s.getCountingNanos() + s.getRankingNanos()) + "," + s.getDocuments() + "," + s.getTerms() + "," + s.getCountingNanos() + "," + s.getRankingNanos() + ",,\n");
+    }
+
+    public synchronized void flush() throws IOException {
+        if (error != null) throw error;
+        out.flush();
+    }
+
+    public synchronized void close() throws IOException {
+        flush();
+        out.close();
+    }
+}
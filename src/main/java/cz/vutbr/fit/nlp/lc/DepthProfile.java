@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+
+/**
+    The cost and the quality of the ranking after each step of a
+    classification, to choose how many features to step.
+
+    The cost is the number of the postings read, the time of the steps and
+    the memory of the scores. The quality is the recall of the labelled
+    positives in the top k documents, and the overlap of the top k
+    documents with the reference ranking of
+    {@link LuceneClassification#classify(NaiveBayesClassifier, IndexReader, int, String, int)}
+    using all the features. That one counts the repeated words of a
+    document, so even all the features stepped need not rank the same.
+
+    {@code
+    List<Integer> reference = DepthProfile.reference(reader, nbc, "lemmas", 0, candidates, 100);
+    List<DepthProfile.Point> curve = DepthProfile.profile(classification, 200, 100, candidates, positives, reference, 3);
+    DepthProfile.Point best = DepthProfile.recommend(curve, 50.0, -1, 0.01);
+    }
+
+    @author Marek Schmidt
+*/
+public class DepthProfile {
+
+    /**
+        The cost and the quality after a number of steps.
+    */
+    public static class Point {
+        int depth;
+        long postings;
+        long elapsedNanos;
+        int accumulatorSize;
+        long memory;
+        double recall;
+        double overlap;
+
+        /** The number of features stepped. */
+        public int getDepth() {
+            return depth;
+        }
+
+        /** The postings read by all the steps so far. */
+        public long getPostings() {
+            return postings;
+        }
+
+        /** The time of all the steps so far, the fastest of the repeats. */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public int getAccumulatorSize() {
+            return accumulatorSize;
+        }
+
+        /** The estimated bytes of the scores, see {@link ScoreAccumulator#getMemoryUsage}. */
+        public long getMemory() {
+            return memory;
+        }
+
+        /** The share of the labelled positives in the top k documents. */
+        public double getRecall() {
+            return recall;
+        }
+
+        /** The share of the top k documents also in the top k of the reference ranking. */
+        public double getOverlap() {
+            return overlap;
+        }
+
+        public String toString() {
+            return "" + depth + "\t" + postings + "\t" + elapsedNanos / 1000000.0 + "\t" + accumulatorSize + "\t" + memory + "\t" + recall + "\t" + overlap;
+        }
+    }
+
+    /**
+        Ranks the candidates by the classification of their stored features
+        with all the features of the model.
+        @param candidates The documents to rank, null for all.
+        @return the k best documents, the best first.
+    */
+    public static List<Integer> reference(IndexReader reader, NaiveBayesClassifier nbc, String featureField, int klass, Set<Integer> candidates, int k) throws IOException {
+        TopDocumentCollector collector = new TopDocumentCollector(k);
+        if (candidates == null) {
+            for (int doc = 0; doc < reader.maxDoc(); ++doc) {
+                if (!reader.isDeleted(doc)) {
+                    collector.collect(doc, LuceneClassification.classify(nbc, reader, doc, featureField, klass));
+                }
+            }
+        }
+        else {
+            for (int doc : candidates) {
+                collector.collect(doc, LuceneClassification.classify(nbc, reader, doc, featureField, klass));
+            }
+        }
+
+        List<Integer> ret = new ArrayList<Integer>(k);
+        for (ScoredDocument document : collector.results()) {
+            ret.add(document.getDoc());
+        }
+        return ret;
+    }
+
+    /**
+        Steps the classification up to the depth, repeated to take the fastest
+        time of each step.
+        @param candidates The documents ranked, null for all.
+        @param positives The labelled positives among the candidates.
+        @param reference The k best documents of the reference ranking.
+    */
+    public static List<Point> profile(LuceneClassification classification, int maxDepth, int k, Set<Integer> candidates, Set<Integer> positives, List<Integer> reference, int repeat) throws IOException {
+        final long[] postingsRead = new long[1];
+        ClassificationListener listener = new ClassificationListener() {
+            public void stepFinished(StepStatistics statistics) {
+                postingsRead[0] += statistics.getPostingsRead();
+            }
+
+            public void learnFinished(LearnStatistics statistics) {
+            }
+        };
+
+        Set<Integer> referenceSet = new HashSet<Integer>(reference);
+        List<Point> ret = new ArrayList<Point>();
+
+        classification.addListener(listener);
+        try {
+            for (int r = 0; r < Math.max(1, repeat); ++r) {
+                LuceneClassification.Iteration iter = null;
+                long elapsed = 0;
+                postingsRead[0] = 0;
+
+                for (int depth = 1; depth <= maxDepth && classification.hasNext(iter); ++depth) {
+                    long start = System.nanoTime();
+                    iter = classification.step(iter);
+                    elapsed += System.nanoTime() - start;
+
+                    if (r > 0) {
+                        Point point = ret.get(depth - 1);
+                        point.elapsedNanos = Math.min(point.elapsedNanos, elapsed);
+                        continue;
+                    }
+
+                    Point point = new Point();
+                    point.depth = depth;
+                    point.postings = postingsRead[0];
+                    point.elapsedNanos = elapsed;
+                    point.accumulatorSize = iter.getScores().size();
+                    point.memory = iter.getScores().getMemoryUsage();
+
+                    TopDocumentCollector collector = new TopDocumentCollector(k);
+                    ScoreAccumulator.Cursor cursor = iter.getScores().cursor();
+                    while (cursor.next()) {
+                        if (candidates == null || candidates.contains(cursor.doc())) {
+                            collector.collect(cursor.doc(), cursor.score());
+                        }
+                    }
+
+                    int found = 0;
+                    int common = 0;
+                    for (ScoredDocument document : collector.results()) {
+                        if (positives.contains(document.getDoc())) {
+                            found++;
+                        }
+                        if (referenceSet.contains(document.getDoc())) {
+                            common++;
+                        }
+                    }
+                    point.recall = positives.isEmpty() ? 0.0 : (0.0 + found) / positives.size();
+                    point.overlap = reference.isEmpty() ? 0.0 : (0.0 + common) / reference.size();
+                    ret.add(point);
+                }
+
+                if (iter != null) {
+                    iter.release();
+                }
+            }
+        }
+        finally {
+            classification.removeListener(listener);
+        }
+
+        return ret;
+    }
+
+    /**
+        Averages the curves of the classes, depth by depth, up to the shortest one.
+    */
+    public static List<Point> average(List<List<Point>> curves) {
+        List<Point> ret = new ArrayList<Point>();
+        if (curves.isEmpty()) {
+            return ret;
+        }
+
+        int length = Integer.MAX_VALUE;
+        for (List<Point> curve : curves) {
+            length = Math.min(length, curve.size());
+        }
+
+        int n = curves.size();
+        for (int i = 0; i < length; ++i) {
+            Point point = new Point();
+            point.depth = i + 1;
+            for (List<Point> curve : curves) {
+                Point p = curve.get(i);
+                point.postings += p.postings;
+                point.elapsedNanos += p.elapsedNanos;
+                point.accumulatorSize += p.accumulatorSize;
+                point.memory += p.memory;
+                point.recall += p.recall;
+                point.overlap += p.overlap;
+            }
+            point.postings /= n;
+            point.elapsedNanos /= n;
+            point.accumulatorSize /= n;
+            point.memory /= n;
+            point.recall /= n;
+            point.overlap /= n;
+            ret.add(point);
+        }
+        return ret;
+    }
+
+    /**
+        Recommends the smallest depth within the budget whose overlap with
+        the reference is at most the tolerance below the best overlap
+        within the budget.
+        @param maxMillis The latency budget, negative for none.
+        @param maxBytes The memory budget, negative for none.
+        @return the recommended point, null if not even the first step fits the budget.
+    */
+    public static Point recommend(List<Point> curve, double maxMillis, long maxBytes, double tolerance) {
+        List<Point> affordable = new ArrayList<Point>();
+        for (Point point : curve) {
+            if (maxMillis >= 0 && point.elapsedNanos / 1000000.0 > maxMillis) break;
+            if (maxBytes >= 0 && point.memory > maxBytes) break;
+            affordable.add(point);
+        }
+
+        double best = Double.NEGATIVE_INFINITY;
+        for (Point point : affordable) {
+            best = Math.max(best, point.overlap);
+        }
+
+        for (Point point : affordable) {
+            if (point.overlap >= best - tolerance) {
+                return point;
+            }
+        }
+        return null;
+    }
+}
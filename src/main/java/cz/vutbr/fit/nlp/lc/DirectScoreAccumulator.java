@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+    Keeps the scores outside of the Java heap, as a float per document and a
+    bitmap of the scored documents, either in direct buffers or in a memory
+    mapped temporary file. The memory is allocated in pages of
+    {@value #PAGE_SIZE} documents, only the pages where some document got
+    scored are allocated, so the heap stays small and there is nothing for
+    the garbage collector to do however many documents get scored.
+
+    The scores are stored as floats, which is plenty for the log-likelihood
+    sums, but they may differ from the {@link MapScoreAccumulator} ones in
+    the last digits.
+
+    Call {@link #release} (or {@link LuceneClassification.Iteration#release})
+    when done, so the memory is freed right away and the file deleted.
+
+    @author Marek Schmidt
+*/
+public class DirectScoreAccumulator extends ScoreAccumulator {
+
+    static final int PAGE_BITS = 20;
+    public static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    // bytes of one page, the scores followed by the bitmap
+    private static final int PAGE_BYTES = PAGE_SIZE * 4 + PAGE_SIZE / 8;
+
+    /**
+        Accumulators in direct buffers.
+    */
+    public static Factory direct() {
+        return new Factory() {
+            public ScoreAccumulator create(int maxDoc) {
+                return new DirectScoreAccumulator(maxDoc, null);
+            }
+        };
+    }
+
+    /**
+        Accumulators in memory mapped files in the given directory, or the
+        default temporary directory if null. The file is deleted by
+        {@link #release}, which must be called.
+    */
+    public static Factory mapped(final File directory) {
+        return new Factory() {
+            public ScoreAccumulator create(int maxDoc) throws IOException {
+                File file = File.createTempFile("scores", ".acc", directory);
+                return new DirectScoreAccumulator(maxDoc, file);
+            }
+        };
+    }
+
+    private FloatBuffer[] scores;
+    private LongBuffer[] bitmaps;
+    private ByteBuffer[] buffers;
+    private int size;
+
+    private File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+
+    private DirectScoreAccumulator(int maxDoc, File file) {
+        int pages = (maxDoc + PAGE_SIZE - 1) >>> PAGE_BITS;
+        scores = new FloatBuffer[pages];
+        bitmaps = new LongBuffer[pages];
+        buffers = new ByteBuffer[pages];
+        this.file = file;
+    }
+
+    private void allocate(int page) {
+        ByteBuffer buffer;
+        if (file == null) {
+            buffer = ByteBuffer.allocateDirect(PAGE_BYTES);
+        }
+        else {
+            try {
+                if (channel == null) {
+                    raf = new RandomAccessFile(file, "rw");
+                    channel = raf.getChannel();
+                }
+                // the file is sparse, the pages not mapped take no space
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, (long) page * PAGE_BYTES, PAGE_BYTES);
+            }
+            catch (IOException e) {
+                throw new RuntimeException("Cannot map the score file " + file, e);
+            }
+        }
+
+        buffer.order(ByteOrder.nativeOrder());
+        buffers[page] = buffer;
+
+        buffer.position(0).limit(PAGE_SIZE * 4);
+        scores[page] = buffer.slice().order(ByteOrder.nativeOrder()).asFloatBuffer();
+        buffer.position(PAGE_SIZE * 4).limit(PAGE_BYTES);
+        bitmaps[page] = buffer.slice().order(ByteOrder.nativeOrder()).asLongBuffer();
+        buffer.clear();
+    }
+
+    public long getMemoryUsage() {
+        long pages = 0;
+        for (ByteBuffer buffer : buffers) {
+            if (buffer != null) {
+                pages++;
+            }
+        }
+        return pages * PAGE_BYTES;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int doc) {
+        LongBuffer bitmap = bitmaps[doc >>> PAGE_BITS];
+        if (bitmap == null) return false;
+        int i = doc & PAGE_MASK;
+        return (bitmap.get(i >>> 6) & (1L << i)) != 0;
+    }
+
+    public double score(int doc) {
+        if (!contains(doc)) return Double.NaN;
+        return scores[doc >>> PAGE_BITS].get(doc & PAGE_MASK);
+    }
+
+    public boolean add(int doc, double value) {
+        int page = doc >>> PAGE_BITS;
+        if (bitmaps[page] == null) {
+            allocate(page);
+        }
+
+        LongBuffer bitmap = bitmaps[page];
+        FloatBuffer score = scores[page];
+        int i = doc & PAGE_MASK;
+        long word = bitmap.get(i >>> 6);
+        long bit = 1L << i;
+
+        if ((word & bit) == 0) {
+            bitmap.put(i >>> 6, word | bit);
+            score.put(i, (float) value);
+            size++;
+            return true;
+        }
+
+        score.put(i, score.get(i) + (float) value);
+        return false;
+    }
+
+    public void remove(int doc) {
+        int page = doc >>> PAGE_BITS;
+        LongBuffer bitmap = bitmaps[page];
+        if (bitmap == null) return;
+        int i = doc & PAGE_MASK;
+        long word = bitmap.get(i >>> 6);
+        long bit = 1L << i;
+        if ((word & bit) != 0) {
+            bitmap.put(i >>> 6, word & ~bit);
+            size--;
+        }
+    }
+
+    public Cursor cursor() {
+        return new Cursor() {
+            private int page = 0;
+            private int wordIndex = -1;
+            private long word = 0;
+            private int doc = -1;
+
+            public boolean next() {
+                while (word == 0) {
+                    wordIndex++;
+                    if (wordIndex >= PAGE_SIZE / 64) {
+                        wordIndex = 0;
+                        page++;
+                    }
+                    while (page < bitmaps.length && bitmaps[page] == null) {
+                        page++;
+                        wordIndex = 0;
+                    }
+                    if (page >= bitmaps.length) {
+                        return false;
+                    }
+                    word = bitmaps[page].get(wordIndex);
+                }
+
+                int bit = Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                doc = (page << PAGE_BITS) + (wordIndex << 6) + bit;
+                return true;
+            }
+
+            public int doc() {
+                return doc;
+            }
+
+            public double score() {
+                return scores[doc >>> PAGE_BITS].get(doc & PAGE_MASK);
+            }
+
+            public void remove() {
+                DirectScoreAccumulator.this.remove(doc);
+            }
+        };
+    }
+
+    public void release() {
+        for (ByteBuffer buffer : buffers) {
+            if (buffer != null) {
+                free(buffer);
+            }
+        }
+        scores = new FloatBuffer[0];
+        bitmaps = new LongBuffer[0];
+        buffers = new ByteBuffer[0];
+        size = 0;
+
+        if (channel != null) {
+            try {
+                channel.close();
+                raf.close();
+            }
+            catch (IOException e) {
+                // nothing to do, the file is deleted below anyway
+            }
+            channel = null;
+        }
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    /**
+        Unmaps or frees the buffer right away, if the JVM lets us. Otherwise
+        it is freed when garbage collected.
+    */
+    private static void free(ByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        }
+        catch (Exception e) {
+            // not available before Java 9, leave it to the garbage collector
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+
+/**
+    How an index on the disk is opened, see the {@code --directory} option of the tools.
+
+    @author Marek Schmidt
+*/
+public enum DirectoryType {
+    /** The default of the platform, see {@link FSDirectory#open}. */
+    FS,
+    /** Memory mapped files, the pages are cached by the operating system. */
+    MMAP,
+    /** Positional reads, many threads read a file without locking. */
+    NIO,
+    /**
+        A copy of the whole index on the heap, read once when opened. The
+        copy does not see the later changes of the index.
+    */
+    RAM;
+
+    public Directory open(File path) throws IOException {
+        switch (this) {
+        case MMAP:
+            return new MMapDirectory(path);
+        case NIO:
+            return new NIOFSDirectory(path);
+        case RAM:
+            Directory dir = FSDirectory.open(path);
+            try {
+                return new RAMDirectory(dir);
+            }
+            finally {
+                dir.close();
+            }
+        default:
+            return FSDirectory.open(path);
+        }
+    }
+
+    /**
+        @param name The name of the type, in any case, e.g. {@code mmap}.
+    */
+    public static DirectoryType parse(String name) {
+        try {
+            return valueOf(name.toUpperCase());
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown directory " + name + ", one of fs, mmap, nio, ram");
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.Map;
+
+/**
+    The counts of the candidate features of one class in primitive arrays,
+    one column per value, ready to be scored and ranked in batch.
+
+    The add one smoothing of a term not seen out of the class also adds one
+    document to the class for this term, and to the total for this term and
+    all the terms after it, as the training always did. The nc and total
+    columns hold these values for each term.
+
+    @author Marek Schmidt
+*/
+final class FeatureColumns {
+
+    String[] terms;
+    /** The buckets of the columns of the hashed counts, see {@link HashedClassifier}, the terms are null then. */
+    int[] buckets;
+    double[] pos;
+    double[] neg;
+    double[] nc;
+    double[] total;
+    int size;
+    /** The number of the smoothed terms, the documents added to the total. */
+    int smoothed;
+
+    /**
+        @param total The number of the documents, including the ones added
+        by the smoothing of the classes before.
+    */
+    static FeatureColumns of(TermCounts counts, int klass, int total) {
+        Map<String, Integer> classCounts = counts.getClassCounts(klass);
+        int n = classCounts.size();
+
+        FeatureColumns ret = new FeatureColumns();
+        ret.terms = new String[n];
+        ret.pos = new double[n];
+        ret.neg = new double[n];
+        ret.nc = new double[n];
+        ret.total = new double[n];
+
+        int classSize = counts.getClassSize(klass);
+        int i = 0;
+        for (Map.Entry<String, Integer> pose : classCounts.entrySet()) {
+            String term = pose.getKey();
+
+            if (term.length() < 3) {
+                continue;
+            }
+
+            int posValue = pose.getValue();
+            double negValue = counts.getTotalCount(term) - posValue;
+            double Nc = classSize;
+
+            if (negValue == 0) {
+                // add one smooth
+                negValue = 1.0;
+                total += 1;
+                Nc += 1;
+                ret.smoothed++;
+            }
+
+            ret.terms[i] = term;
+            ret.pos[i] = posValue;
+            ret.neg[i] = negValue;
+            ret.nc[i] = Nc;
+            ret.total[i] = total;
+            ++i;
+        }
+        ret.size = i;
+
+        return ret;
+    }
+
+    /**
+        The columns of the counts of the hashed terms, one per bucket counted
+        in the class, smoothed the same way in the order of the buckets.
+        @param classCounts The counts in the class by the bucket.
+        @param totalCounts The counts in all the classes by the bucket.
+    */
+    static FeatureColumns of(int[] classCounts, int[] totalCounts, int classSize, int total) {
+        int n = 0;
+        for (int count : classCounts) {
+            if (count > 0) {
+                n++;
+            }
+        }
+
+        FeatureColumns ret = new FeatureColumns();
+        ret.buckets = new int[n];
+        ret.pos = new double[n];
+        ret.neg = new double[n];
+        ret.nc = new double[n];
+        ret.total = new double[n];
+
+        int i = 0;
+        for (int bucket = 0; bucket < classCounts.length; ++bucket) {
+            int posValue = classCounts[bucket];
+            if (posValue == 0) {
+                continue;
+            }
+            double negValue = totalCounts[bucket] - posValue;
+            double Nc = classSize;
+
+            if (negValue == 0) {
+                // add one smooth
+                negValue = 1.0;
+                total += 1;
+                Nc += 1;
+                ret.smoothed++;
+            }
+
+            ret.buckets[i] = bucket;
+            ret.pos[i] = posValue;
+            ret.neg[i] = negValue;
+            ret.nc[i] = Nc;
+            ret.total[i] = total;
+            ++i;
+        }
+        ret.size = i;
+
+        return ret;
+    }
+
+    /**
+        @return the log likelihood ratios of the terms.
+    */
+    double[] loglikelihoods() {
+        double[] ret = new double[size];
+        for (int i = 0; i < size; ++i) {
+            ret[i] = Math.log(pos[i]) - Math.log(nc[i]) - Math.log(neg[i]) + Math.log(0.0 + total[i] - nc[i]);
+        }
+        return ret;
+    }
+
+    /**
+        @return the scores of the terms, in batch if the scorer is a {@link ColumnarFeatureScorer}.
+    */
+    double[] scores(FeatureScorer scorer) {
+        double[] ret = new double[size];
+        if (scorer instanceof ColumnarFeatureScorer) {
+            ((ColumnarFeatureScorer) scorer).score(pos, neg, nc, total, ret, size);
+        }
+        else {
+            for (int i = 0; i < size; ++i) {
+                ret[i] = scorer.score(pos[i], neg[i], nc[i], total[i]);
+            }
+        }
+        return ret;
+    }
+
+    /**
+        Term a ranks before b, by the higher score, the ties by the order of the terms.
+    */
+    private static boolean before(double[] scores, int a, int b) {
+        int c = Double.compare(scores[a], scores[b]);
+        return c > 0 || (c == 0 && a < b);
+    }
+
+    /**
+        Moves the heap[i] down the heap of the given size, which keeps the
+        term ranking last on its top.
+    */
+    private static void siftDown(int[] heap, int size, int i, double[] scores) {
+        int x = heap[i];
+        for (;;) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && before(scores, heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (!before(scores, x, heap[child])) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = x;
+    }
+
+    /**
+        Ranks the terms by the score, keeping only the n best ones in a heap
+        so the rest is never sorted.
+
+        @param n The number of the terms to select, -1 for all.
+        @return the indices of the selected terms, best first.
+    */
+    static int[] best(double[] scores, int size, int n) {
+        int k = n < 0 || n > size ? size : n;
+        int[] heap = new int[k];
+
+        int heapSize = 0;
+        for (int i = 0; i < size; ++i) {
+            if (heapSize < k) {
+                // sift up
+                int j = heapSize++;
+                while (j > 0 && before(scores, heap[(j - 1) / 2], i)) {
+                    heap[j] = heap[(j - 1) / 2];
+                    j = (j - 1) / 2;
+                }
+                heap[j] = i;
+            }
+            else if (k > 0 && before(scores, i, heap[0])) {
+                heap[0] = i;
+                siftDown(heap, k, 0, scores);
+            }
+        }
+
+        // take the worst one from the top to the end
+        while (heapSize > 1) {
+            int worst = heap[0];
+            heap[0] = heap[--heapSize];
+            heap[heapSize] = worst;
+            siftDown(heap, heapSize, 0, scores);
+        }
+
+        return heap;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+/**
+    The feature selection methods.
+
+    @author Marek Schmidt
+*/
+public final class FeatureScorers {
+
+    private FeatureScorers() {
+    }
+
+    /**
+        x log x, zero for zero.
+    */
+    private static double xlogx(double x) {
+        return x <= 0.0 ? 0.0 : x * Math.log(x);
+    }
+
+    /**
+        Information gain, the default.
+    */
+    public static final FeatureScorer INFORMATION_GAIN = new ColumnarFeatureScorer() {
+        public double score(double posValue, double negValue, double Nc, double total) {
+            double Pc = (0.0 + Nc) / (0.0 + total);
+            double Pnc = 1.0 - Pc;
+            return - Pc * Math.log(Pc) - Pnc * Math.log(Pnc) + gain(posValue, negValue, Nc, total);
+        }
+
+        /**
+            The part of the information gain which depends on the term.
+        */
+        private double gain(double posValue, double negValue, double Nc, double total) {
+            double Pt = (0.0 + posValue + negValue) / (0.0 + total);
+            double Pnt = 1.0 - Pt;
+            double Pc_t = (0.0 + posValue) / (0.0 + posValue + negValue);
+            double Pc_nt = (0.0 + Nc - posValue) / (0.0 + total - (posValue + negValue));
+            double Pnc_t = (0.0 + negValue) / (0.0 + posValue + negValue);
+            double Pnc_nt = (0.0 + total - (Nc + negValue)) / (0.0 + total - (posValue + negValue));
+
+            return Pt * (Pc_t * Math.log(Pc_t) + Pnc_t * Math.log(Pnc_t)) + Pnt * (Pc_nt * Math.log(Pc_nt) + Pnc_nt * Math.log(Pnc_nt));
+        }
+
+        public void score(double[] pos, double[] neg, double[] nc, double[] total, double[] out, int n) {
+            // the entropy of the class changes only with the smoothing
+            double hy = 0.0;
+            double lastNc = Double.NaN;
+            double lastTotal = Double.NaN;
+            for (int i = 0; i < n; ++i) {
+                if (nc[i] != lastNc || total[i] != lastTotal) {
+                    lastNc = nc[i];
+                    lastTotal = total[i];
+                    double Pc = (0.0 + lastNc) / (0.0 + lastTotal);
+                    double Pnc = 1.0 - Pc;
+                    hy = - Pc * Math.log(Pc) - Pnc * Math.log(Pnc);
+                }
+                out[i] = hy + gain(pos[i], neg[i], nc[i], total[i]);
+            }
+        }
+
+        public String toString() {
+            return "ig";
+        }
+    };
+
+    /**
+        Mutual information of the term and the class, H(Y) + H(X) - H(Y, X).
+    */
+    public static final FeatureScorer MUTUAL_INFORMATION = new ColumnarFeatureScorer() {
+        public double score(double posValue, double negValue, double Nc, double T) {
+            double logT = Math.log(T);
+            double hy = logT - (xlogx(Nc) + xlogx(T - Nc)) / T;
+            return information(posValue, negValue, Nc, T, logT, hy);
+        }
+
+        private double information(double posValue, double negValue, double Nc, double T, double logT, double hy) {
+            double Nnc = T - Nc;
+
+            double Nt = posValue + negValue;
+            double Nnt = T - Nt;
+
+            double Ntc = posValue;
+            double Ntnc = negValue;
+            double Nntc = Nc - Ntc;
+            double Nntnc = Nnc - Ntnc;
+
+            double hx = logT - (xlogx(Nt) + xlogx(Nnt)) / T;
+            double hyx = logT - (xlogx(Ntc) + xlogx(Ntnc) + xlogx(Nntc) + xlogx(Nntnc)) / T;
+
+            return hy + hx - hyx;
+        }
+
+        public void score(double[] pos, double[] neg, double[] nc, double[] total, double[] out, int n) {
+            // the entropy of the class changes only with the smoothing
+            double logT = 0.0;
+            double hy = 0.0;
+            double lastNc = Double.NaN;
+            double lastTotal = Double.NaN;
+            for (int i = 0; i < n; ++i) {
+                if (nc[i] != lastNc || total[i] != lastTotal) {
+                    lastNc = nc[i];
+                    lastTotal = total[i];
+                    logT = Math.log(lastTotal);
+                    hy = logT - (xlogx(lastNc) + xlogx(lastTotal - lastNc)) / lastTotal;
+                }
+                out[i] = information(pos[i], neg[i], nc[i], total[i], logT, hy);
+            }
+        }
+
+        public String toString() {
+            return "mi";
+        }
+    };
+
+    /**
+        k log p + (n - k) log (1 - p)
+    */
+    private static double l(double k, double n, double p) {
+        double ret = 0.0;
+        if (k > 0) {
+            ret += k * Math.log(p);
+        }
+        if (n - k > 0) {
+            ret += (n - k) * Math.log(1.0 - p);
+        }
+        return ret;
+    }
+
+    /**
+        The likelihood ratio statistic (-2 log lambda) of the term occurring
+        with the same probability in the class and out of it.
+    */
+    public static final FeatureScorer LIKELIHOOD_RATIO = new ColumnarFeatureScorer() {
+        public double score(double posValue, double negValue, double Nc, double total) {
+            double n = posValue;
+            double n_ = negValue;
+            double N = Math.max(Nc, n);
+            double N_ = Math.max(total - Nc, n_);
+
+            double p = (n + n_) / (N + N_);
+            double logLambda = l(n_, N_, p) + l(n, N, p) - l(n, N, n / N) - l(n_, N_, n_ / N_);
+            return -2.0 * logLambda;
+        }
+
+        public void score(double[] pos, double[] neg, double[] nc, double[] total, double[] out, int n) {
+            for (int i = 0; i < n; ++i) {
+                out[i] = score(pos[i], neg[i], nc[i], total[i]);
+            }
+        }
+
+        public String toString() {
+            return "lr";
+        }
+    };
+
+    /**
+        The number of occurrences in the labelled documents, the term
+        frequency. A term repeated in a document counts each time, so it is
+        not the document frequency.
+    */
+    public static final FeatureScorer TERM_FREQUENCY = new ColumnarFeatureScorer() {
+        public double score(double posValue, double negValue, double Nc, double total) {
+            return posValue + negValue;
+        }
+
+        public void score(double[] pos, double[] neg, double[] nc, double[] total, double[] out, int n) {
+            for (int i = 0; i < n; ++i) {
+                out[i] = pos[i] + neg[i];
+            }
+        }
+
+        public String toString() {
+            return "tf";
+        }
+    };
+
+    /**
+        @return the scorer by its short name, ig, mi, lr or tf.
+    */
+    public static FeatureScorer forName(String name) {
+        if ("ig".equals(name)) return INFORMATION_GAIN;
+        if ("mi".equals(name)) return MUTUAL_INFORMATION;
+        if ("lr".equals(name)) return LIKELIHOOD_RATIO;
+        if ("tf".equals(name)) return TERM_FREQUENCY;
+        throw new IllegalArgumentException("Unknown feature scorer " + name);
+    }
+}
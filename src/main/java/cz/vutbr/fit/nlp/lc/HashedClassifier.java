@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexReader;
+
+/**
+    The weights of one class in an array of 2^bits buckets indexed by the
+    hash of the term, with no terms kept at all. The size of the model is
+    fixed by the bits, whatever the size of the vocabulary, and the weight
+    of a token is looked up in place, see {@link SpanTokenizer}.
+
+    {@code
+    HashedClassifier hc = HashedClassifier.learn(reader, class2ids, "lemmas", 0, 20, new TrainingOptions());
+    double score = hc.classify(text);
+    }
+
+    A model learned by {@link #learn} counts the terms to the buckets, the
+    terms of one bucket are one feature for the training. A model hashed from
+    a trained one by {@link #hash} adds the weight of each feature to its
+    bucket with the sign of the hash, and the classification takes it with
+    the same sign, so the weights of the colliding features cancel out on
+    average instead of adding up.
+
+    The hash is the one of {@link String#hashCode}, which is specified, mixed
+    by the finalizer of MurmurHash3, so it is the same in any JVM. The low
+    bits are the bucket, the highest bit the sign.
+
+    The model has no terms, so it cannot step the postings of an index as
+    {@link LuceneClassification} does, it classifies the texts of the
+    documents.
+
+    @author Marek Schmidt
+*/
+public class HashedClassifier implements Serializable {
+
+    private static final long serialVersionUID = -3270418524695916123L;
+
+    private int klass;
+    private double logprior;
+    private int bits;
+    private boolean signed;
+    private float[] weights;
+    // the features that fell to a bucket of another feature
+    private int collisions;
+
+    private HashedClassifier(int klass, int bits, boolean signed) {
+        if (bits < 1 || bits > 30) {
+            throw new IllegalArgumentException("The bits must be between 1 and 30: " + bits);
+        }
+        this.klass = klass;
+        this.bits = bits;
+        this.signed = signed;
+        this.weights = new float[1 << bits];
+    }
+
+    /**
+        @return the mixed hash of the term of the given String hash.
+    */
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+        Hashes the weights of the features of the class of a trained classifier.
+    */
+    public static HashedClassifier hash(NaiveBayesClassifier nbc, int klass, int bits) {
+        HashedClassifier ret = new HashedClassifier(klass, bits, true);
+        ret.logprior = nbc.logpriors.get(klass);
+
+        Map<String, Double> loglikelihoods = nbc.loglikelihoods.get(klass);
+        boolean[] used = new boolean[ret.weights.length];
+        int mask = ret.weights.length - 1;
+        for (String feature : nbc.features.get(klass)) {
+            Double ll = loglikelihoods.get(feature);
+            if (ll == null) {
+                continue;
+            }
+            int h = mix(feature.hashCode());
+            int bucket = h & mask;
+            if (used[bucket]) {
+                ret.collisions++;
+            }
+            used[bucket] = true;
+            ret.weights[bucket] += h < 0 ? -ll : ll;
+        }
+        return ret;
+    }
+
+    /**
+        Trains the class against all the others as
+        {@link LuceneClassification#learnBinary(IndexReader, Map, String, int, TrainingOptions)},
+        with the counts of the terms summed by their buckets. The counts
+        take two int arrays of the size of the model, no terms are kept.
+        The negatives are always counted exactly.
+        @throws IllegalArgumentException if there are no documents of the
+        class or no other ones, the prior would be infinite.
+    */
+    public static HashedClassifier learn(IndexReader reader, Map<Integer, Set<Integer>> class2ids, String featureField, int klass, int bits, TrainingOptions options) throws IOException {
+        HashedClassifier ret = new HashedClassifier(klass, bits, false);
+        int mask = ret.weights.length - 1;
+        int[] classCounts = new int[ret.weights.length];
+        int[] totalCounts = new int[ret.weights.length];
+
+        FieldSelector selector = new MapFieldSelector(new String[] { featureField });
+        SpanTokenizer tokenizer = new SpanTokenizer();
+        int classSize = 0;
+        int total = 0;
+        for (Map.Entry<Integer, Set<Integer>> entry : class2ids.entrySet()) {
+            boolean positive = entry.getKey() == klass;
+            for (int docid : entry.getValue()) {
+                String text = TermCounts.text(reader, docid, featureField, selector);
+                tokenizer.reset(text);
+                while (tokenizer.next()) {
+                    // the short terms are never the features
+                    if (tokenizer.end() - tokenizer.start() < 3) {
+                        continue;
+                    }
+                    int bucket = mix(tokenizer.hash()) & mask;
+                    if (positive) {
+                        classCounts[bucket]++;
+                    }
+                    totalCounts[bucket]++;
+                }
+                if (positive) {
+                    classSize++;
+                }
+                total++;
+            }
+        }
+
+        if (classSize == 0 || classSize == total) {
+            throw new IllegalArgumentException("Both the documents of the class " + klass + " and other ones needed, got " + classSize + " of " + total);
+        }
+        ret.logprior = Math.log(classSize) - Math.log(total - classSize);
+
+        FeatureColumns columns = FeatureColumns.of(classCounts, totalCounts, classSize, total);
+        double[] loglikelihoods = columns.loglikelihoods();
+        double[] scores = columns.scores(options.getFeatureScorer());
+        // only the selected buckets keep their weights
+        for (int i : FeatureColumns.best(scores, columns.size, options.getMaxFeatures())) {
+            ret.weights[columns.buckets[i]] = (float) loglikelihoods[i];
+        }
+        return ret;
+    }
+
+    public int getKlass() {
+        return klass;
+    }
+
+    public double getLogPrior() {
+        return logprior;
+    }
+
+    /**
+        @return the number of the bits of the hash used, the model has 2^bits weights.
+    */
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+        @return whether the weights are signed by the hash, see {@link #hash}.
+    */
+    public boolean isSigned() {
+        return signed;
+    }
+
+    /**
+        @return the number of the features hashed to a bucket of another
+        feature by {@link #hash}, 0 for a learned model.
+    */
+    public int getCollisions() {
+        return collisions;
+    }
+
+    /**
+        @return the number of the buckets with a weight.
+    */
+    public int getUsedBuckets() {
+        int n = 0;
+        for (float weight : weights) {
+            if (weight != 0.0f) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private double weight(int hash) {
+        int h = mix(hash);
+        float weight = weights[h & (weights.length - 1)];
+        return signed && h < 0 ? -weight : weight;
+    }
+
+    /**
+        Sums the weights of the tokens of the text of space separated
+        features, as {@link LuceneClassification#classify(NaiveBayesClassifier, CharSequence, int, int)}.
+        None of the classify methods add the prior, the document belongs to
+        the class if the sum plus {@link #getLogPrior} is positive.
+        @return the sum of the weights of the features of the document.
+    */
+    public double classify(CharSequence text) {
+        SpanTokenizer tokenizer = new SpanTokenizer().reset(text);
+        double p = 0.0;
+        while (tokenizer.next()) {
+            p += weight(tokenizer.hash());
+        }
+        return p;
+    }
+
+    public double classify(Collection<String> tokens) {
+        double p = 0.0;
+        for (String token : tokens) {
+            p += weight(token.hashCode());
+        }
+        return p;
+    }
+
+    public double classify(IndexReader reader, int docid, String featureField) throws IOException {
+        return classify(TermCounts.text(reader, docid, featureField, new MapFieldSelector(new String[] { featureField })));
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.SegmentReader;
+
+/**
+    Classification of a growing index. The scores are kept per index
+    segment, and when the reader is reopened only the segments that were
+    not there before get scored, the scores of the other ones are reused.
+    Deleted documents are skipped in the results.
+
+    {@code
+    IncrementalClassification classification = new IncrementalClassification(nbc, "lemmas", 0, 50);
+    classification.update(reader);
+    ...
+    reader = reader.reopen();
+    classification.update(reader);
+    List<ScoredDocument> top = classification.top(20);
+    }
+
+    Merged segments are new segments, so a merge costs scoring the merged
+    documents again.
+
+    @author Marek Schmidt
+*/
+public class IncrementalClassification {
+
+    private static class Segment {
+        String name;
+        IndexReader reader;
+        int docBase;
+        LuceneClassification.Iteration iteration;
+    }
+
+    private NaiveBayesClassifier classifier;
+    private String featureField;
+    private int klass;
+    private int depth;
+    private ScoreAccumulator.Factory accumulatorFactory = MapScoreAccumulator.FACTORY;
+
+    private List<Segment> segments = new ArrayList<Segment>();
+
+    private int addedSegments;
+    private int droppedSegments;
+
+    /**
+        @param depth The number of features to step in each segment.
+    */
+    public IncrementalClassification(NaiveBayesClassifier classifier, String featureField, int klass, int depth) {
+        this.classifier = classifier;
+        this.featureField = featureField;
+        this.klass = klass;
+        this.depth = depth;
+    }
+
+    public void setAccumulatorFactory(ScoreAccumulator.Factory accumulatorFactory) {
+        this.accumulatorFactory = accumulatorFactory;
+    }
+
+    private static String segmentName(IndexReader reader) {
+        if (reader instanceof SegmentReader) {
+            return ((SegmentReader) reader).getSegmentName();
+        }
+        // not a segment, we can't tell whether it changed
+        return null;
+    }
+
+    private static void gatherSegments(IndexReader reader, List<IndexReader> segments) {
+        IndexReader[] subReaders = reader.getSequentialSubReaders();
+        if (subReaders == null) {
+            segments.add(reader);
+        }
+        else {
+            for (IndexReader subReader : subReaders) {
+                gatherSegments(subReader, segments);
+            }
+        }
+    }
+
+    /**
+        Catches up with the (reopened) reader, scoring the segments that are
+        new and dropping the scores of the segments no longer there.
+
+        @return the number of segments that had to be scored.
+    */
+    public int update(IndexReader reader) throws IOException {
+        Map<String, Segment> known = new HashMap<String, Segment>();
+        for (Segment segment : segments) {
+            if (segment.name != null) {
+                known.put(segment.name, segment);
+            }
+        }
+
+        List<IndexReader> subReaders = new ArrayList<IndexReader>();
+        gatherSegments(reader, subReaders);
+
+        List<Segment> updated = new ArrayList<Segment>(subReaders.size());
+        int docBase = 0;
+        addedSegments = 0;
+
+        for (IndexReader subReader : subReaders) {
+            String name = segmentName(subReader);
+            Segment segment = name == null ? null : known.remove(name);
+
+            if (segment == null) {
+                segment = new Segment();
+                segment.name = name;
+
+                LuceneClassification classification = new LuceneClassification(subReader, classifier, featureField, klass);
+                classification.setAccumulatorFactory(accumulatorFactory);
+                segment.iteration = classification.steps(null, depth);
+                addedSegments++;
+            }
+
+            // the same segment may come with new deletions
+            segment.reader = subReader;
+            segment.docBase = docBase;
+            docBase += subReader.maxDoc();
+
+            updated.add(segment);
+        }
+
+        droppedSegments = segments.size() - (updated.size() - addedSegments);
+        for (Segment segment : segments) {
+            if (segment.iteration != null && !updated.contains(segment)) {
+                segment.iteration.release();
+            }
+        }
+
+        segments = updated;
+        return addedSegments;
+    }
+
+    /**
+        @return the number of segments scored by the last update.
+    */
+    public int getAddedSegments() {
+        return addedSegments;
+    }
+
+    /**
+        @return the number of segments dropped by the last update, merged or deleted.
+    */
+    public int getDroppedSegments() {
+        return droppedSegments;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+        @return the k best documents not deleted, with the docids of the reader of the last update.
+    */
+    public List<ScoredDocument> top(int k) {
+        TopDocumentCollector collector = new TopDocumentCollector(k);
+        for (Segment segment : segments) {
+            if (segment.iteration == null) continue;
+
+            boolean deletions = segment.reader.hasDeletions();
+            ScoreAccumulator.Cursor cursor = segment.iteration.getScores().cursor();
+            while (cursor.next()) {
+                if (deletions && segment.reader.isDeleted(cursor.doc())) {
+                    continue;
+                }
+                collector.collect(segment.docBase + cursor.doc(), cursor.score());
+            }
+        }
+        return collector.results();
+    }
+
+    /**
+        @return the score of the document, NaN if it is not scored or deleted.
+    */
+    public double score(int doc) {
+        for (Segment segment : segments) {
+            if (doc >= segment.docBase && doc < segment.docBase + segment.reader.maxDoc()) {
+                int local = doc - segment.docBase;
+                if (segment.iteration == null || segment.reader.isDeleted(local)) {
+                    return Double.NaN;
+                }
+                return segment.iteration.getLogScore(local);
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+        Frees the scores.
+    */
+    public void release() {
+        for (Segment segment : segments) {
+            if (segment.iteration != null) {
+                segment.iteration.release();
+            }
+        }
+        segments = new ArrayList<Segment>();
+    }
+}
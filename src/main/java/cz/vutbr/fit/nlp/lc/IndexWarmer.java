@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+
+/**
+    Reads the parts of an index the classification needs before the first
+    step does, so that the first requests after a reader opens do not pay
+    for the cold reads: the term index, the postings of the terms of a model
+    or of the most frequent terms, and optionally the stored fields of the
+    documents in them.
+
+    {@code
+    IndexWarmer warmer = new IndexWarmer("lemmas").addFeatures(nbc, 0, 50);
+    warmer.warm(reader);
+    }
+
+    See also {@link ReaderManager#ReaderManager(org.apache.lucene.store.Directory, long, IndexWarmer)}
+    to warm every reopened reader before it is used.
+
+    @author Marek Schmidt
+*/
+public class IndexWarmer {
+
+    private String field;
+    private Set<String> terms = new LinkedHashSet<String>();
+    private int frequentTerms;
+    private int storedDocuments;
+
+    private long postingsRead;
+    private int documentsLoaded;
+    private long elapsedNanos;
+
+    public IndexWarmer(String field) {
+        this.field = field;
+    }
+
+    /**
+        Warms the postings of the terms.
+    */
+    public IndexWarmer addTerms(Iterable<String> terms) {
+        for (String term : terms) {
+            this.terms.add(term);
+        }
+        return this;
+    }
+
+    /**
+        Warms the postings of the n best features of the class of the model,
+        the ones the first n steps read.
+    */
+    public IndexWarmer addFeatures(NaiveBayesClassifier nbc, int klass, int n) {
+        List<String> features = nbc.features.get(klass);
+        int i = 0;
+        for (String feature : features) {
+            if (i++ >= n) break;
+            terms.add(feature);
+        }
+        return this;
+    }
+
+    /**
+        Warms the postings of the n terms of the field in the most documents,
+        when the models are not known yet.
+    */
+    public IndexWarmer setFrequentTerms(int n) {
+        this.frequentTerms = n;
+        return this;
+    }
+
+    /**
+        Loads the stored fields of up to n documents in the warmed postings, none by default.
+    */
+    public IndexWarmer setStoredDocuments(int n) {
+        this.storedDocuments = n;
+        return this;
+    }
+
+    /**
+        @return the postings read by the last {@link #warm}.
+    */
+    public long getPostingsRead() {
+        return postingsRead;
+    }
+
+    /**
+        @return the documents loaded by the last {@link #warm}.
+    */
+    public int getDocumentsLoaded() {
+        return documentsLoaded;
+    }
+
+    /**
+        @return the time of the last {@link #warm} in nanoseconds.
+    */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+        Reads the term index and the postings, may be called for more readers
+        at once, but the statistics are then of any of them.
+    */
+    public void warm(IndexReader reader) throws IOException {
+        long start = System.nanoTime();
+        long postings = 0;
+        int documents = 0;
+
+        // the first lookup loads the term index of every segment
+        reader.docFreq(new Term(field, ""));
+
+        List<String> warmed = new ArrayList<String>(terms);
+        if (frequentTerms > 0) {
+            warmed.addAll(frequentTerms(reader));
+        }
+
+        int[] docs = new int[128];
+        int[] freqs = new int[128];
+        TermDocs tds = reader.termDocs();
+        try {
+            for (String text : warmed) {
+                tds.seek(new Term(field, text));
+                int n;
+                while ((n = tds.read(docs, freqs)) > 0) {
+                    postings += n;
+                    for (int i = 0; i < n && documents < storedDocuments; ++i) {
+                        if (!reader.isDeleted(docs[i])) {
+                            reader.document(docs[i]);
+                            documents++;
+                        }
+                    }
+                }
+            }
+        }
+        finally {
+            tds.close();
+        }
+
+        postingsRead = postings;
+        documentsLoaded = documents;
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    private static class FrequentTerm implements Comparable<FrequentTerm> {
+        String text;
+        int docFreq;
+
+        FrequentTerm(String text, int docFreq) {
+            this.text = text;
+            this.docFreq = docFreq;
+        }
+
+        public int compareTo(FrequentTerm other) {
+            return docFreq < other.docFreq ? -1 : (docFreq > other.docFreq ? 1 : 0);
+        }
+    }
+
+    private List<String> frequentTerms(IndexReader reader) throws IOException {
+        // the least frequent of the best terms on the top
+        PriorityQueue<FrequentTerm> heap = new PriorityQueue<FrequentTerm>(frequentTerms + 1);
+
+        TermEnum te = reader.terms(new Term(field, ""));
+        try {
+            do {
+                Term term = te.term();
+                if (term == null || !field.equals(term.field())) break;
+
+                if (heap.size() < frequentTerms || te.docFreq() > heap.peek().docFreq) {
+                    heap.add(new FrequentTerm(term.text(), te.docFreq()));
+                    if (heap.size() > frequentTerms) {
+                        heap.poll();
+                    }
+                }
+            } while (te.next());
+        }
+        finally {
+            te.close();
+        }
+
+        List<String> ret = new ArrayList<String>(heap.size());
+        for (FrequentTerm term : heap) {
+            ret.add(term.text);
+        }
+        return ret;
+    }
+}
@@ -32,10 +32,13 @@
 
 package cz.vutbr.fit.nlp.lc;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.Serializable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -44,6 +47,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Set;
 import java.util.Map.Entry;
 
@@ -55,12 +59,17 @@ import org.apache.lucene.analysis.Token;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Filter;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.OpenBitSet;
 
 /**
     The core class of the lucene classification library.
@@ -71,20 +80,97 @@ import org.apache.lucene.store.FSDirectory;
 */
 public class LuceneClassification {
 
+    /**
+        The bound used to prune the scored documents, see {@link #setAccumulatorBudget}.
+    */
+    public static enum PruneBound {
+        /** Nothing pruned. */
+        NONE,
+        /** Only the documents that provably cannot reach the top-K were pruned. */
+        SAFE,
+        /** The safe bound was not enough to fit the budget, only the best documents by the current score were kept. */
+        BEAM
+    }
+
+    /**
+        The state of the classification after a step. Only with the
+        {@link PersistentScoreAccumulator} it is an immutable snapshot,
+        with the other accumulators, the default {@link MapScoreAccumulator}
+        included, the next {@link LuceneClassification#step} changes the
+        scores of the iteration it starts from in place, so an earlier
+        iteration then sees the later scores, and stepping twice from it
+        does not branch.
+    */
     public static class Iteration {
-        private Map<Integer, Double> id2logscore;
+        private ScoreAccumulator scores;
         private int iteration;
 
+        // documents pruned so far, null if none, they are never scored again
+        private BitSet pruned;
+        // the pruned documents are shared with the previous iteration, copied before the first change
+        private boolean prunedShared;
+        private int prunedDocuments;
+        private int totalPrunedDocuments;
+        private PruneBound pruneBound = PruneBound.NONE;
+        // lower bound of the final top-K score, the new documents that can't reach it are not scored at all
+        private double threshold = Double.NEGATIVE_INFINITY;
+
         public int getIteration() {
             return iteration;
         }
 
+        /**
+            The number of documents pruned from the scores in this step.
+        */
+        public int getPrunedDocuments() {
+            return prunedDocuments;
+        }
+
+        /**
+            The number of documents pruned in all the steps so far.
+        */
+        public int getTotalPrunedDocuments() {
+            return totalPrunedDocuments;
+        }
+
+        /**
+            The bound used to prune the documents in this step.
+        */
+        public PruneBound getPruneBound() {
+            return pruneBound;
+        }
+
+        /**
+            @return the score of the document, NaN if it has not been scored.
+        */
         public double getLogScore(int id) {
-            return id2logscore.get(id);
+            return scores.score(id);
         }
 
         public Map<Integer, Double> getId2LogScore() {
-            return id2logscore;
+            return scores.asMap();
+        }
+
+        public ScoreAccumulator getScores() {
+            return scores;
+        }
+
+        /**
+            @return the k best scored documents, the best first.
+        */
+        public List<ScoredDocument> top(int k) {
+            TopDocumentCollector collector = new TopDocumentCollector(k);
+            collector.collect(scores);
+            return collector.results();
+        }
+
+        /**
+            Frees the scores, needed for the accumulators not on the heap.
+            Note the scores of the mutable accumulators are shared with the
+            previous iterations, see {@link ScoreAccumulator#successor}.
+        */
+        public void release() {
+            scores.release();
         }
     }
 
@@ -95,6 +181,28 @@ public class LuceneClassification {
     private List<String> features;
     private double logprior;
     private int klass;
+    private List<ClassificationListener> listeners = new ArrayList<ClassificationListener>();
+
+    private ScoreAccumulator.Factory accumulatorFactory = MapScoreAccumulator.FACTORY;
+
+    private int accumulatorBudget = -1;
+    private int topK;
+    // the best and the worst possible score gain from the features i, i + 1, ...
+    private double[] maxRemainingGain;
+    private double[] minRemainingGain;
+
+    // the documents that may be scored, all if null, see setFilter
+    private Filter filter;
+    private DocIdSet filterSet;
+    private boolean filterResolved;
+    // the set as bits when it is dense enough to check every posting against it
+    private OpenBitSet filterBits;
+    // the documents never scored, see setExcluded
+    private BitSet excluded;
+
+    // identifies the model of the checkpoints, computed when needed
+    private long fingerprint;
+    private boolean fingerprinted;
     
     public LuceneClassification(IndexReader reader, NaiveBayesClassifier classifier, String featureField, int klass) {
          this.reader = reader;
@@ -105,8 +213,169 @@ public class LuceneClassification {
          loglikelihoods = classifier.loglikelihoods.get(klass);
          logprior = classifier.logpriors.get(klass);
          features = classifier.features.get(klass);
+         if (!(features instanceof RandomAccess)) {
+             // the classifiers trained before were stored as linked lists
+             features = new ArrayList<String>(features);
+         }
+    }
+
+    /**
+        Sets how the scores are kept, by default in a {@link MapScoreAccumulator}
+        changed in place by every step. Only {@link PersistentScoreAccumulator}
+        makes the iterations immutable snapshots, see {@link Iteration}, use
+        it when the earlier iterations must keep their own scores, e.g. for a
+        {@link Checkpointer} writing them while the steps go on. Use
+        {@link DirectScoreAccumulator} to keep them out of the heap.
+    */
+    public void setAccumulatorFactory(ScoreAccumulator.Factory accumulatorFactory) {
+        this.accumulatorFactory = accumulatorFactory;
+    }
+
+    /**
+        Bounds the memory used by the scores. Whenever more than maxDocuments
+        documents are scored after a step, the documents whose current score
+        plus the best possible gain from the remaining features cannot reach
+        the worst possible score of the current top-K are pruned, and never
+        scored again. If that is not enough, only the maxDocuments best
+        documents by the current score are kept, which may lose some of the
+        true top-K documents. See {@link Iteration#getPruneBound}.
+
+        @param maxDocuments The maximum number of scored documents, -1 for no limit.
+        @param topK The number of best documents that must be kept.
+    */
+    public void setAccumulatorBudget(int maxDocuments, int topK) {
+        if (maxDocuments >= 0 && topK < 1) {
+            throw new IllegalArgumentException("The top-K must be positive");
+        }
+        if (maxDocuments >= 0 && maxDocuments < topK) {
+            throw new IllegalArgumentException("The budget " + maxDocuments + " is smaller than top-K " + topK);
+        }
+
+        this.accumulatorBudget = maxDocuments;
+        this.topK = topK;
+
+        if (maxRemainingGain == null) {
+            int n = features.size();
+            maxRemainingGain = new double[n + 1];
+            minRemainingGain = new double[n + 1];
+            for (int i = n - 1; i >= 0; --i) {
+                double ll = loglikelihoods.get(features.get(i));
+                maxRemainingGain[i] = maxRemainingGain[i + 1] + Math.max(0.0, ll);
+                minRemainingGain[i] = minRemainingGain[i + 1] + Math.min(0.0, ll);
+            }
+        }
     }
     
+    /**
+        Scores only the documents of the filter, the postings of the other
+        ones are skipped before they touch the scores. A sparse filter is
+        intersected with the postings by {@link TermDocs#skipTo}, so the
+        work and the scores shrink with it. An {@link OpenBitSet} with at
+        least a 16th of the documents is checked posting by posting instead.
+
+        A checkpoint does not record the filter, resume it with the same one.
+        @param filter null for all the documents.
+    */
+    public void setFilter(Filter filter) {
+        this.filter = filter;
+        this.filterSet = null;
+        this.filterResolved = false;
+    }
+
+    /**
+        Scores only the documents of the set, see {@link #setFilter}.
+        @param set null for all the documents.
+    */
+    public void setFilter(DocIdSet set) {
+        this.filter = null;
+        this.filterSet = set;
+        this.filterResolved = false;
+    }
+
+    /**
+        Never scores the documents, e.g. the training examples. They are
+        checked posting by posting.
+        @param docids null for none.
+    */
+    public void setExcluded(Collection<Integer> docids) {
+        if (docids == null || docids.isEmpty()) {
+            excluded = null;
+            return;
+        }
+        excluded = new BitSet(reader.maxDoc());
+        for (int docid : docids) {
+            excluded.set(docid);
+        }
+    }
+
+    /**
+        Gets the set of the filter of the reader once, and chooses how it is
+        intersected with the postings.
+    */
+    private void resolveFilter() throws IOException {
+        if (filterResolved) {
+            return;
+        }
+        if (filter != null) {
+            filterSet = filter.getDocIdSet(reader);
+            if (filterSet == null) {
+                // no documents at all
+                filterSet = DocIdSet.EMPTY_DOCIDSET;
+            }
+        }
+        filterBits = null;
+        if (filterSet instanceof OpenBitSet) {
+            OpenBitSet bits = (OpenBitSet) filterSet;
+            if (bits.cardinality() * 16 >= reader.maxDoc()) {
+                filterBits = bits;
+            }
+        }
+        filterResolved = true;
+    }
+
+    /**
+        The postings of a term in the documents of a set, leapfrogging
+        between the two by {@link TermDocs#skipTo} and
+        {@link DocIdSetIterator#advance}.
+    */
+    private static final class FilteredPostings {
+        private TermDocs termDocs;
+        private DocIdSetIterator allowed;
+        private int doc = -1;
+        private boolean exhausted;
+
+        FilteredPostings(TermDocs termDocs, DocIdSetIterator allowed) {
+            this.termDocs = termDocs;
+            this.allowed = allowed;
+            this.exhausted = allowed == null;
+        }
+
+        boolean next() throws IOException {
+            if (exhausted) {
+                return false;
+            }
+            int target = allowed.nextDoc();
+            while (target != DocIdSetIterator.NO_MORE_DOCS) {
+                if (doc < target) {
+                    if (!termDocs.skipTo(target)) {
+                        break;
+                    }
+                    doc = termDocs.doc();
+                }
+                if (doc == target) {
+                    return true;
+                }
+                target = allowed.advance(doc);
+            }
+            exhausted = true;
+            return false;
+        }
+
+        int doc() {
+            return doc;
+        }
+    }
+
     public boolean hasNext(Iteration prev) {
         return prev == null ? features.size() > 0 : features.size() > prev.iteration + 1;
     }
@@ -115,6 +384,26 @@ public class LuceneClassification {
         return features;
     }
 
+    /**
+        @return the number of the postings the next step reads, 0 if there is no next step.
+    */
+    public int nextDocFreq(Iteration prev) throws IOException {
+        if (!hasNext(prev)) return 0;
+        int index = prev == null ? 0 : prev.iteration + 1;
+        return reader.docFreq(new Term(featureField, features.get(index)));
+    }
+
+    /**
+        Registers a listener to be notified with the cost of each step.
+    */
+    public void addListener(ClassificationListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ClassificationListener listener) {
+        listeners.remove(listener);
+    }
+
     public Iteration steps(Iteration prev, int n) throws IOException {
         while (hasNext(prev) && n > 0) {
             prev = step(prev);
@@ -127,36 +416,63 @@ public class LuceneClassification {
     public Iteration step(Iteration prev) throws IOException {
         
         if (!hasNext(prev)) return prev;
+
+        boolean instrumented = !listeners.isEmpty();
+        long start = instrumented ? System.nanoTime() : 0;
         
         int currentTermIndex = prev == null ? 0 : prev.iteration + 1;
         String currentTerm = features.get(currentTermIndex);
         
-        Map<Integer, Double> prevId2logscore = prev == null ? new HashMap<Integer, Double>() : prev.id2logscore;
-        Map<Integer, Double> id2logscore = prevId2logscore;
+        ScoreAccumulator scores = prev == null ? accumulatorFactory.create(reader.maxDoc()) : prev.scores.successor();
         
-        Term term = new Term(this.featureField, features.get(currentTermIndex));
+        Term term = new Term(this.featureField, currentTerm);
         
+        int postingsRead = 0;
+        int newDocuments = 0;
+
+        BitSet pruned = prev == null ? null : prev.pruned;
+        // a snapshot of the scores needs its own pruned documents too
+        boolean prunedShared = pruned != null && scores != prev.scores;
+        double threshold = prev == null ? Double.NEGATIVE_INFINITY : prev.threshold;
+        double logLikelihood = loglikelihoods.get(currentTerm);
+        // the best final score a document not scored yet may get
+        double newDocumentBound = accumulatorBudget < 0 ? Double.POSITIVE_INFINITY : logLikelihood + maxRemainingGain[currentTermIndex + 1];
+
+        resolveFilter();
         TermDocs tds = reader.termDocs(term);
-        while(tds.next()) {
-            int docid = tds.doc();
-            
-            Double prevValueObj = prevId2logscore.get(docid);
-            double prevValue;
-            if (prevValueObj == null) {
-                // Usually it doesn't make much sense to care about priors here...
+        FilteredPostings filtered = filterSet != null && filterBits == null ? new FilteredPostings(tds, filterSet.iterator()) : null;
+        while(filtered != null ? filtered.next() : tds.next()) {
+            int docid = filtered != null ? filtered.doc() : tds.doc();
+            postingsRead++;
 
-                //prevValue = logprior;
-                prevValue = 0.0;
+            if (filterBits != null && !filterBits.get(docid)) {
+                continue;
             }
-            else {
-                prevValue = prevValueObj;
+
+            if (excluded != null && excluded.get(docid)) {
+                continue;
             }
 
+            if (pruned != null && pruned.get(docid)) {
+                continue;
+            }
             
-            double logLikelihood = 0.0;
-            logLikelihood = loglikelihoods.get(currentTerm);
-            id2logscore.put(docid, prevValue + logLikelihood);
+            if (newDocumentBound < threshold && !scores.contains(docid)) {
+                if (prunedShared) {
+                    pruned = (BitSet) pruned.clone();
+                    prunedShared = false;
+                }
+                pruned.set(docid);
+                continue;
+            }
+
+            // Usually it doesn't make much sense to care about priors here,
+            // the new documents start at zero.
+            if (scores.add(docid, logLikelihood)) {
+                newDocuments++;
+            }
         }
+        tds.close();
         
         Iteration next = new Iteration();
         if (prev == null) {
@@ -165,11 +481,313 @@ public class LuceneClassification {
         else {
             next.iteration = prev.iteration + 1;
         }
-        next.id2logscore = id2logscore;
+        next.scores = scores;
+        next.pruned = pruned;
+        next.prunedShared = prunedShared;
+        next.threshold = threshold;
+        next.totalPrunedDocuments = prev == null ? 0 : prev.totalPrunedDocuments;
+
+        if (accumulatorBudget >= 0 && scores.size() > accumulatorBudget) {
+            prune(next, currentTermIndex + 1);
+        }
+
+        if (instrumented) {
+            StepStatistics statistics = new StepStatistics();
+            statistics.elapsedNanos = System.nanoTime() - start;
+            statistics.klass = klass;
+            statistics.iteration = next.iteration;
+            statistics.term = currentTerm;
+            statistics.docFreq = reader.docFreq(term);
+            statistics.postingsRead = postingsRead;
+            statistics.accumulatorSize = scores.size();
+            statistics.newDocuments = newDocuments;
+            statistics.prunedDocuments = next.prunedDocuments;
+            statistics.pruneBound = next.pruneBound;
+            for (ClassificationListener listener : listeners) {
+                listener.stepFinished(statistics);
+            }
+        }
         
         return next;
     }
 
+    /**
+        Prunes the scores of the iteration to fit the budget.
+        @param remaining The index of the first feature not stepped yet.
+    */
+    private void prune(Iteration iteration, int remaining) {
+        ScoreAccumulator accumulator = iteration.scores;
+        int size = accumulator.size();
+
+        double[] scores = new double[size];
+        int i = 0;
+        ScoreAccumulator.Cursor cursor = accumulator.cursor();
+        while (cursor.next()) {
+            scores[i++] = cursor.score();
+        }
+
+        // Every one of the current K best documents ends up with at least its
+        // score plus the worst gain, so that's what a document must be able
+        // to reach to make it into the final top-K.
+        double kth = select(scores, size, topK);
+        double threshold = Math.max(iteration.threshold, kth + minRemainingGain[remaining]);
+        double maxGain = maxRemainingGain[remaining];
+
+        PruneBound bound = PruneBound.SAFE;
+        double cut = threshold - maxGain;
+
+        int survivors = 0;
+        for (double score : scores) {
+            if (score >= cut) {
+                survivors++;
+            }
+        }
+
+        // the number of documents scoring exactly the cut that may be kept
+        int ties = Integer.MAX_VALUE;
+
+        if (survivors > accumulatorBudget) {
+            bound = PruneBound.BEAM;
+            cut = Math.max(cut, select(scores, size, accumulatorBudget));
+
+            int above = 0;
+            for (double score : scores) {
+                if (score > cut) {
+                    above++;
+                }
+            }
+            ties = accumulatorBudget - above;
+        }
+
+        if (iteration.pruned == null) {
+            iteration.pruned = new BitSet(reader.maxDoc());
+        }
+        else if (iteration.prunedShared) {
+            iteration.pruned = (BitSet) iteration.pruned.clone();
+            iteration.prunedShared = false;
+        }
+
+        int prunedDocuments = 0;
+        cursor = accumulator.cursor();
+        while (cursor.next()) {
+            double score = cursor.score();
+            if (score > cut || (score == cut && ties-- > 0)) {
+                continue;
+            }
+
+            iteration.pruned.set(cursor.doc());
+            cursor.remove();
+            prunedDocuments++;
+        }
+
+        iteration.threshold = threshold;
+        iteration.prunedDocuments = prunedDocuments;
+        iteration.totalPrunedDocuments += prunedDocuments;
+        iteration.pruneBound = bound;
+    }
+
+    private static final int CHECKPOINT_MAGIC = 0x4c43434b;
+    private static final int CHECKPOINT_VERSION = 1;
+
+    /**
+        @return a hash of the features and their loglikelihoods the steps use,
+        the checkpoints of a different model are not resumed.
+    */
+    long getFingerprint() {
+        if (!fingerprinted) {
+            long h = 1125899906842597L;
+            h = 31 * h + featureField.hashCode();
+            h = 31 * h + klass;
+            for (String feature : features) {
+                h = 31 * h + feature.hashCode();
+                h = 31 * h + Double.doubleToLongBits(loglikelihoods.get(feature));
+            }
+            fingerprint = h;
+            fingerprinted = true;
+        }
+        return fingerprint;
+    }
+
+    private static long readerVersion(IndexReader reader) {
+        try {
+            return reader.getVersion();
+        }
+        catch (UnsupportedOperationException e) {
+            // e.g. a MultiReader, only the document counts are checked
+            return -1;
+        }
+    }
+
+    /**
+        Writes the state of the iteration, with the identity of the model and
+        of the reader, so that the steps may be resumed by {@link #readCheckpoint}.
+        The documents are delta coded, the scores written exactly.
+        See {@link Checkpointer} to write the checkpoints during the steps.
+    */
+    public void writeCheckpoint(Iteration iteration, DataOutput out) throws IOException {
+        out.writeInt(CHECKPOINT_MAGIC);
+        out.writeInt(CHECKPOINT_VERSION);
+
+        out.writeLong(getFingerprint());
+        out.writeInt(features.size());
+        out.writeInt(accumulatorBudget);
+        out.writeInt(topK);
+        out.writeLong(readerVersion(reader));
+        out.writeInt(reader.maxDoc());
+        out.writeInt(reader.numDocs());
+
+        out.writeInt(iteration.iteration);
+        out.writeDouble(iteration.threshold);
+        out.writeInt(iteration.totalPrunedDocuments);
+
+        ScoreAccumulator scores = iteration.scores;
+        int[] docs = new int[scores.size()];
+        int n = 0;
+        ScoreAccumulator.Cursor cursor = scores.cursor();
+        while (cursor.next()) {
+            docs[n++] = cursor.doc();
+        }
+        Arrays.sort(docs, 0, n);
+
+        writeVInt(out, n);
+        int last = 0;
+        for (int i = 0; i < n; ++i) {
+            writeVInt(out, docs[i] - last);
+            last = docs[i];
+            out.writeDouble(scores.score(docs[i]));
+        }
+
+        BitSet pruned = iteration.pruned;
+        writeVInt(out, pruned == null ? 0 : pruned.cardinality());
+        if (pruned != null) {
+            last = 0;
+            for (int doc = pruned.nextSetBit(0); doc >= 0; doc = pruned.nextSetBit(doc + 1)) {
+                writeVInt(out, doc - last);
+                last = doc;
+            }
+        }
+    }
+
+    /**
+        Reads an iteration written by {@link #writeCheckpoint}, the next step
+        continues with the feature after the last one stepped before.
+        @throws IOException if the checkpoint was written for another model,
+        reader or accumulator budget, or is not a checkpoint.
+    */
+    public Iteration readCheckpoint(DataInput in) throws IOException {
+        if (in.readInt() != CHECKPOINT_MAGIC) {
+            throw new IOException("Not a classification checkpoint");
+        }
+        int version = in.readInt();
+        if (version != CHECKPOINT_VERSION) {
+            throw new IOException("Unknown checkpoint version " + version);
+        }
+
+        if (in.readLong() != getFingerprint() || in.readInt() != features.size()) {
+            throw new IOException("The checkpoint was written for another model");
+        }
+        if (in.readInt() != accumulatorBudget || in.readInt() != topK) {
+            throw new IOException("The checkpoint was written with another accumulator budget");
+        }
+        long readerVersion = in.readLong();
+        int maxDoc = in.readInt();
+        int numDocs = in.readInt();
+        if (readerVersion != readerVersion(reader) || maxDoc != reader.maxDoc() || numDocs != reader.numDocs()) {
+            throw new IOException("The checkpoint was written for another version of the index");
+        }
+
+        Iteration ret = new Iteration();
+        ret.iteration = in.readInt();
+        if (ret.iteration < 0 || ret.iteration >= features.size()) {
+            throw new IOException("Invalid checkpoint iteration " + ret.iteration);
+        }
+        ret.threshold = in.readDouble();
+        ret.totalPrunedDocuments = in.readInt();
+
+        ScoreAccumulator scores = accumulatorFactory.create(maxDoc);
+        int n = readVInt(in);
+        int doc = 0;
+        for (int i = 0; i < n; ++i) {
+            doc += readVInt(in);
+            scores.add(doc, in.readDouble());
+        }
+        ret.scores = scores;
+
+        n = readVInt(in);
+        if (n > 0) {
+            ret.pruned = new BitSet(maxDoc);
+            doc = 0;
+            for (int i = 0; i < n; ++i) {
+                doc += readVInt(in);
+                ret.pruned.set(doc);
+            }
+        }
+
+        return ret;
+    }
+
+    static void writeVInt(DataOutput out, int i) throws IOException {
+        while ((i & ~0x7f) != 0) {
+            out.writeByte((i & 0x7f) | 0x80);
+            i >>>= 7;
+        }
+        out.writeByte(i);
+    }
+
+    static int readVInt(DataInput in) throws IOException {
+        byte b = in.readByte();
+        int i = b & 0x7f;
+        for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            b = in.readByte();
+            i |= (b & 0x7f) << shift;
+        }
+        return i;
+    }
+
+    /**
+        Finds the k-th largest of the first n values, reorders the array.
+    */
+    static double select(double[] a, int n, int k) {
+        if (k >= n) {
+            double min = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < n; ++i) {
+                min = Math.min(min, a[i]);
+            }
+            return min;
+        }
+
+        // quickselect for the (k-1)-th position in descending order
+        int target = k - 1;
+        int lo = 0;
+        int hi = n - 1;
+        while (lo < hi) {
+            double pivot = a[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (a[i] > pivot) i++;
+                while (a[j] < pivot) j--;
+                if (i <= j) {
+                    double t = a[i];
+                    a[i] = a[j];
+                    a[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if (target <= j) {
+                hi = j;
+            }
+            else if (target >= i) {
+                lo = i;
+            }
+            else {
+                break;
+            }
+        }
+        return a[target];
+    }
+
     /**
         Classify the ordinary way (document to score). The positive value means the document does belong to the class. 
         @param nbc The trained classifier
@@ -196,7 +814,7 @@ public class LuceneClassification {
             List<String> nbcfeatures = nbc.features.get(klass);
 
             Set<String> sfeatures = new HashSet<String>();
-            for (int i = 0; i < selectedfeatures; ++i) {
+            for (int i = 0; i < selectedfeatures && i < nbcfeatures.size(); ++i) {
                 sfeatures.add (nbcfeatures.get(i));
             }
 
@@ -217,235 +835,202 @@ public class LuceneClassification {
         return classify(nbc, features, klass, -1);
     }
     
+    /**
+        Classify the text of space separated features, the same as
+        {@link #classify(NaiveBayesClassifier, Collection, int, int)} with the
+        split text. The features of a {@link NaiveBayesClassifier#freeze frozen}
+        classifier are looked up in place, the text of any other one is split.
+    */
+    public static double classify(NaiveBayesClassifier nbc, CharSequence text, int klass, int selectedfeatures) {
+        NaiveBayesClassifier.TermLookup lookup = nbc.lookup(klass);
+        SpanTokenizer tokenizer = new SpanTokenizer().reset(text);
+        if (lookup == null) {
+            List<String> tokens = new ArrayList<String>();
+            while (tokenizer.next()) {
+                tokens.add(text.subSequence(tokenizer.start(), tokenizer.end()).toString());
+            }
+            return classify(nbc, tokens, klass, selectedfeatures);
+        }
+
+        double p = 0.0;
+        while (tokenizer.next()) {
+            int id = lookup.table.get(text, tokenizer.start(), tokenizer.end(), tokenizer.hash());
+            if (id >= 0 && (selectedfeatures < 0 || lookup.ranks[id] < selectedfeatures)) {
+                p += lookup.loglikelihoods[id];
+            }
+            // ignore features not encountered during training
+        }
+        return p;
+    }
+
     public static double classify(NaiveBayesClassifier nbc, IndexReader reader, int docid, String featureField, int klass, int selectedfeatures) throws IOException {
-        Document doc = reader.document(docid);
+        Document doc = reader.document(docid, new MapFieldSelector(new String[] { featureField }));
         Field field = doc.getField(featureField);
         String stringvalue = field.stringValue();
-        String[] tokens = stringvalue.split(" ");
-        return classify(nbc, Arrays.asList(tokens), klass, selectedfeatures);
+        return classify(nbc, stringvalue, klass, selectedfeatures);
     }
 
-    public static double classify(NaiveBayesClassifier nbc, IndexReader reader, int docid, String featureField, int klass) {
-        return classify(nbc, reader, docid, featureField, -1);
+    public static double classify(NaiveBayesClassifier nbc, IndexReader reader, int docid, String featureField, int klass) throws IOException {
+        return classify(nbc, reader, docid, featureField, klass, -1);
     }
 
-    /**
-        a function for likelihood ratio computation, doesn't mean anything by itself...
-    */ 
-    private static double l(double n, double N, double pc, double pj) {                                                                                                                                                                   
-        return n * (Math.log(pc) - Math.log(pj)) + (N - n) * (Math.log(1.0 - pc / pj));   
+    public static NaiveBayesClassifier learn(IndexReader reader, Map<Integer, Set<Integer>> class2ids, String featureField) throws IOException {
+        return learn(reader, class2ids, featureField, new TrainingOptions());
     }
 
     /**
-        a function to make the entropy calculation formula for mutual information more managable... 
+        Trains the classifier from the labelled documents.
+        @param listener Notified with the cost of the training, may be null.
     */
-    private static double F(double x, double T) {
-        return x * Math.log(x) / T;
+    public static NaiveBayesClassifier learn(IndexReader reader, Map<Integer, Set<Integer>> class2ids, String featureField, ClassificationListener listener) throws IOException {
+        return learn(reader, class2ids, featureField, new TrainingOptions().setListener(listener));
     }
 
-    public static NaiveBayesClassifier learn(IndexReader reader, Map<Integer, Set<Integer>> class2ids, String featureField) throws IOException {
-        NaiveBayesClassifier ret = new NaiveBayesClassifier();
-        
-        int total = 0;
-
-        // for each class, we store number of positive and negative occurences of a term.
-        // Positive means the term occured in the document positively labelled by the class label...
+    /**
+        Trains the classifier from the labelled documents.
+    */
+    public static NaiveBayesClassifier learn(IndexReader reader, Map<Integer, Set<Integer>> class2ids, String featureField, TrainingOptions options) throws IOException {
+        ClassificationListener listener = options.getListener();
+        long start = listener != null ? System.nanoTime() : 0;
 
-        Map<Integer, Map<String, Integer>> pos = new HashMap<Integer, Map<String, Integer>> ();
-        Map<Integer, Map<String, Integer>> neg = new HashMap<Integer, Map<String, Integer>> ();
- 
-        for (Integer klass : class2ids.keySet()) {
-            pos.put(klass, new HashMap<String,Integer> ());
-            neg.put(klass, new HashMap<String,Integer> ());
-        }
-        
-        for (Integer klass : class2ids.keySet()) {
-            total += class2ids.get(klass).size();
-            
-            for (Integer docid : class2ids.get(klass)) {
-
-                Document doc = reader.document(docid);
-                Field field = doc.getField(featureField);
-                String stringvalue = field.stringValue();
-                String[] tokens = stringvalue.split(" ");
-                for(String text : tokens) {    
-                      for (Integer klass2 : class2ids.keySet()) {
-                        if (klass.equals(klass2)) {
-                            if (pos.get(klass2).containsKey(text)) {
-                                int value = pos.get(klass2).get(text);
-                                pos.get(klass2).put(text, 1 + value);
-                            }
-                            else {
-                                pos.get(klass2).put(text, 1);
-                            }
-                        }
-                        else {
-                            if (neg.get(klass2).containsKey(text)) {
-                                int value = neg.get(klass2).get(text);
-                                neg.get(klass2).put(text, value + 1);
-                            }
-                            else {
-                                neg.get(klass2).put(text, 1);
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        
-        ret.logpriors = new HashMap<Integer, Double> ();
-        ret.loglikelihoods = new HashMap<Integer, Map<String, Double>>();
-        ret.features = new HashMap<Integer, List<String>> ();
-        for (Integer klass : class2ids.keySet()) {
-            
-            ret.logpriors.put(klass, Math.log(class2ids.get(klass).size()) - Math.log(total - class2ids.get(klass).size()));
-            
-            Map<String, Double> klassloglikelihoods = new HashMap<String, Double>(); 
-            final Map<String, Double> miscores = new HashMap<String, Double>();
-            Map<String, Double> fscores = new HashMap<String, Double>();
+        TermCounts counts = TermCounts.count(reader, class2ids, featureField, options);
 
-            for (Map.Entry<String, Integer> pose : pos.get(klass).entrySet()) {
-                String term = pose.getKey();
+        long counted = listener != null ? System.nanoTime() : 0;
 
-                if (term.length() < 3) {
-                    continue;
-                }
+        LearnStatistics statistics = new LearnStatistics();
+        NaiveBayesClassifier ret = build(counts, options, statistics);
 
-                double posValue = pose.getValue();
-                double negValue;
-                double Nc = class2ids.get(klass).size();
+        if (listener != null) {
+            statistics.countingNanos = counted - start;
+            statistics.rankingNanos = System.nanoTime() - counted;
+            listener.learnFinished(statistics);
+        }
 
-                if (neg.get(klass).containsKey(pose.getKey())) {
-                    negValue = neg.get(klass).get(pose.getKey());
-                }
-                else {
-                    // add one smooth
-                    negValue = 1.0;
-                    total += 1;
-                    Nc += 1;
-                }
+        return ret;
+    }
 
-                // The following code is garbage, because that's where I play with different feature selection schemes
-                // The methods you can find here: Information gain, mutual information, likelihood ratio, and some variants...
- 
-                //double loglikelihood = Math.log(posValue) - Math.log(negValue);//Math.log(posValue + negValue);
-                double loglikelihood = Math.log(posValue) - Math.log(Nc) - Math.log(negValue) + Math.log(0.0 + total - Nc);
-                                
-/*                double miA = posValue;
-                double miB = negValue;
-                double miC = class2ids.get(klass).size() - posValue;
-                double miN = total;
-                double mi = miA * miN / ((miA + miC) * (miA + miB));*/
+    /**
+        Trains the classifier from the terms counted in advance.
+    */
+    public static NaiveBayesClassifier learn(TermCounts counts, TrainingOptions options) {
+        ClassificationListener listener = options.getListener();
+        long start = listener != null ? System.nanoTime() : 0;
 
-//                double featurescore = posValue + negValue;
+        LearnStatistics statistics = new LearnStatistics();
+        NaiveBayesClassifier ret = build(counts, options, statistics);
 
-                double Pc = (0.0 + Nc) / (0.0 + total);
-                double Pnc = 1.0 - Pc;
-                double Pt = (0.0 + posValue + negValue) / (0.0 + total);
-                double Pnt = 1.0 - Pt;
-                double Pc_t = (0.0 + posValue) / (0.0 + posValue + negValue);
-                double Pc_nt = (0.0 + Nc - posValue) / (0.0 + total - (posValue + negValue));
-                double Pnc_t = (0.0 + negValue) / (0.0 + posValue + negValue);
-                double Pnc_nt = (0.0 + total - (Nc + negValue)) / (0.0 + total - (posValue + negValue));
+        if (listener != null) {
+            statistics.rankingNanos = System.nanoTime() - start;
+            listener.learnFinished(statistics);
+        }
 
-                double Ptc = (0.0 + posValue) / (0.0 + total);
-                double Ptnc = (0.0 + negValue) / (0.0 + total);
-                double Pntc = (0.0 + Nc - posValue) / (0.0 + total);
-                double Pntnc = (0.0 + total - (Nc + negValue)) / (0.0 + total);
+        return ret;
+    }
 
-                double ig = - Pc * Math.log(Pc) - Pnc * Math.log(Pnc) + Pt * (Pc_t * Math.log(Pc_t) + Pnc_t * Math.log(Pnc_t)) + Pnt * (Pc_nt * Math.log(Pc_nt) + Pnc_nt * Math.log(Pnc_nt));
-                double score = ig;
+    /**
+        Trains only the weights and the features of the class against all
+        the other ones, which are not counted on their own. Use when only
+        the class is to be classified, as is the case with a set of the
+        positive and a set of the negative examples.
 
-                // estimate Pt from the whoe collection:
-                //Pt = (0.0 + reader.docFreq(new Term(featureField, term))) / (0.0 + reader.numDocs());
-//                System.err.println("Pt = " + Pt + " docFreq: " + reader.docFreq(new Term(featureField, term))+ " numDocs: " + reader.numDocs());
+        The model is the same as the class of the model trained by
+        {@link #learn(IndexReader, Map, String, TrainingOptions)} if the
+        class is the first one trained, e.g. 0 of 0 and 1.
+    */
+    public static BinaryNaiveBayesClassifier learnBinary(IndexReader reader, Map<Integer, Set<Integer>> class2ids, String featureField, int klass, TrainingOptions options) throws IOException {
+        ClassificationListener listener = options.getListener();
+        long start = listener != null ? System.nanoTime() : 0;
 
-                /*if (loglikelihood <= 0) {
-                    continue;
-                }*/
+        TermCounts counts = TermCounts.countBinary(reader, class2ids, featureField, klass, options);
 
-                // same as ig
-                /*double mi = Ptc   * Math.log( Ptc   / (Pc  * Pt)) + 
-                            Ptnc  * Math.log( Ptnc  / (Pnc * Pt)) + 
-                            Pntc  * Math.log( Pntc  / (Pc  * Pnt))+
-                            Pntnc * Math.log( Pntnc / (Pnc * Pnt));*/
+        long counted = listener != null ? System.nanoTime() : 0;
 
-                //double mi = Ptc * Math.log(Ptc / (Pc * Pt)) + Ptnc  * Math.log( Ptnc  / (Pnc * Pt));
+        LearnStatistics statistics = new LearnStatistics();
+        BinaryNaiveBayesClassifier ret = new BinaryNaiveBayesClassifier(klass);
+        statistics.terms = buildClass(ret, counts, klass, counts.getTotalSize(), options).size;
+        ret.freeze();
+        statistics.classes = 1;
+        statistics.documents = counts.getTotalSize();
 
-                //double mi = Pc * Math.log( Ptc / (Pc  * Pt)) + Pnc * Math.log( Ptnc  / (Pnc * Pt));
-//                double mi = Math.max(Pc * Math.log( Ptc / (Pc  * Pt)), Pnc * Math.log( Ptnc  / (Pnc * Pt)));
+        if (listener != null) {
+            statistics.countingNanos = counted - start;
+            statistics.rankingNanos = System.nanoTime() - counted;
+            listener.learnFinished(statistics);
+        }
 
-                // MI1
-                //double mi = Math.log(Ptc) - (Math.log(Pc) + Math.log(Pt));
+        return ret;
+    }
 
-                // MI2
-                //double mi = Ptc * (Math.log(Ptc) - (Math.log(Pc) + Math.log(Pt))) + Ptnc * (Math.log(Ptnc) - (Math.log(Pnc) + Math.log(Pt)));
+    /**
+        Trains only the weights and the features of the class against all
+        the other ones from the terms counted in advance.
+    */
+    public static BinaryNaiveBayesClassifier learnBinary(TermCounts counts, int klass, TrainingOptions options) {
+        ClassificationListener listener = options.getListener();
+        long start = listener != null ? System.nanoTime() : 0;
 
+        LearnStatistics statistics = new LearnStatistics();
+        BinaryNaiveBayesClassifier ret = new BinaryNaiveBayesClassifier(klass);
+        statistics.terms = buildClass(ret, counts, klass, counts.getTotalSize(), options).size;
+        ret.freeze();
+        statistics.classes = 1;
+        statistics.documents = counts.getTotalSize();
 
-                /*double T = total;
-                double Nc = class2ids.get(klass).size();
-                double Nnc = T - Nc;
+        if (listener != null) {
+            statistics.rankingNanos = System.nanoTime() - start;
+            listener.learnFinished(statistics);
+        }
 
-                double Nt = posValue + negValue;
-                double Nnt = T - Nt;
+        return ret;
+    }
 
-                double Ntc = posValue;
-                double Ntnc = negValue;
-                double Nntc = Nc - Ntc;
-                double Nntnc = Nnc - Ntnc;*/
+    private static NaiveBayesClassifier build(TermCounts counts, TrainingOptions options, LearnStatistics statistics) {
+        NaiveBayesClassifier ret = new NaiveBayesClassifier();
 
-                // MI3 (should be the "true" mutual information)
-                /*double score = (Math.log(T) - (F(Nc, T) + F(Nnc, T)))  // H(Y)
-                     + (Math.log(T) - (F(Nt, T) + F(Nnt, T))) // H(Xt)
-                     + (Math.log(T) - (F(Ntc, T) + F(Ntnc, T) + F(Nntc, T) + F(Nntnc, T))); // H(Y, Xt) */
+        int total = counts.getTotalSize();
+        int terms = 0;
 
-                // DF
-                // double score = (Math.log(reader.docFreq(new Term(featureField, term))) - reader.numDocs());
+        for (Integer klass : counts.getClasses()) {
+            FeatureColumns columns = buildClass(ret, counts, klass, total, options);
+            total += columns.smoothed;
+            terms += columns.size;
+        }
 
-                // LL
-                //double score = loglikelihood;
+        statistics.classes = counts.getClasses().size();
+        statistics.documents = counts.getTotalSize();
+        statistics.terms = terms;
+        
+        return ret.freeze();
+    }
 
-                // LR1 / 2 / 3   (variants for likelihood ratio)
-                //double n = posValue;
-                //double n_ = negVaue;
-                //double n_ = 0.0 + reader.docFreq(new Term(featureField, term));
-                //double n_ = posValue + negValue;
+    /**
+        Puts the prior, the weights and the features of the class to the classifier.
+        @param total The number of the documents, including the ones added
+        by the smoothing of the classes trained before.
+        @return the scored terms.
+    */
+    private static FeatureColumns buildClass(NaiveBayesClassifier ret, TermCounts counts, int klass, int total, TrainingOptions options) {
+        ret.logpriors.put(klass, Math.log(counts.getClassSize(klass)) - Math.log(total - counts.getClassSize(klass)));
 
-                //double N = class2ids.get(klass).size();
-                //double N_ = total - class2ids.get(klass).size();
-                //double N_ = reader.numDocs();
-                //double N_ = total;
-                //double score = l(n_, N_, n + n_, N + N_) + l(n, N, n + n_, N + N_) - l(n, N, n, N) - l(n_, N_, n_, N_);
+        FeatureColumns columns = FeatureColumns.of(counts, klass, total);
 
-                fscores.put(pose.getKey(), score);
+        double[] loglikelihoods = columns.loglikelihoods();
+        // information gain by default, see FeatureScorers for the other feature selection methods
+        double[] scores = columns.scores(options.getFeatureScorer());
+        int[] selected = FeatureColumns.best(scores, columns.size, options.getMaxFeatures());
 
-                klassloglikelihoods.put(pose.getKey(), loglikelihood);
+        // only the selected features keep their weights
+        Map<String, Double> klassloglikelihoods = new HashMap<String, Double>(selected.length * 4 / 3 + 1); 
+        List<String> features = new ArrayList<String> (selected.length);
+        for (int i : selected) {
+            features.add(columns.terms[i]);
+            klassloglikelihoods.put(columns.terms[i], loglikelihoods[i]);
+        }
 
-                // System.err.println( "klass:" + klass + ", " + term + " likelihood: " + loglikelihood + ", ig: " + score );
-            }
-            
-            ret.loglikelihoods.put(klass, klassloglikelihoods);
-            
-            List<Map.Entry<String, Double>> list = new ArrayList<Map.Entry<String, Double>>(fscores.entrySet());
+        ret.loglikelihoods.put(klass, klassloglikelihoods);
+        ret.features.put(klass, features);
 
-            Collections.sort(list, new Comparator<Map.Entry<String, Double>>() {
-                @Override
-                public int compare(Entry<String, Double> o1,
-                        Entry<String, Double> o2) {
-                    return - Double.compare(o1.getValue(), o2.getValue());
-                }
-            });
-            
-            List<String> features = new LinkedList<String> ();
-            for (Map.Entry<String, Double> entry : list) {
-                System.err.println( "adding klass:" + klass + ": " + entry.getKey());
-                features.add(entry.getKey());
-            }
-            
-            ret.features.put(klass, features);
-        }
-        
-        return ret;
+        return columns;
     }
 
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+    Keeps the scores in a hash map, the default accumulator. It only takes
+    the memory of the scored documents, but quite a lot of it per document.
+
+    @author Marek Schmidt
+*/
+public class MapScoreAccumulator extends ScoreAccumulator {
+
+    public static final Factory FACTORY = new Factory() {
+        public ScoreAccumulator create(int maxDoc) {
+            return new MapScoreAccumulator();
+        }
+    };
+
+    private Map<Integer, Double> id2logscore = new HashMap<Integer, Double>();
+
+    public int size() {
+        return id2logscore.size();
+    }
+
+    public boolean contains(int doc) {
+        return id2logscore.containsKey(doc);
+    }
+
+    public double score(int doc) {
+        Double score = id2logscore.get(doc);
+        return score == null ? Double.NaN : score;
+    }
+
+    public boolean add(int doc, double value) {
+        Double prev = id2logscore.put(doc, value);
+        if (prev == null) {
+            return true;
+        }
+        id2logscore.put(doc, prev + value);
+        return false;
+    }
+
+    public void remove(int doc) {
+        id2logscore.remove(doc);
+    }
+
+    public long getMemoryUsage() {
+        // the entry, the boxed key and value and the slot of the table
+        return id2logscore.size() * 72L;
+    }
+
+    public Cursor cursor() {
+        final Iterator<Map.Entry<Integer, Double>> it = id2logscore.entrySet().iterator();
+        return new Cursor() {
+            private Map.Entry<Integer, Double> entry;
+
+            public boolean next() {
+                if (!it.hasNext()) return false;
+                entry = it.next();
+                return true;
+            }
+
+            public int doc() {
+                return entry.getKey();
+            }
+
+            public double score() {
+                return entry.getValue();
+            }
+
+            public void remove() {
+                it.remove();
+            }
+        };
+    }
+
+    /**
+        The map itself, so iterating it costs nothing extra.
+    */
+    public Map<Integer, Double> asMap() {
+        return id2logscore;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+    Classifies a document to many classes at once. The weights of the
+    classes are inverted to a posting list per term, of the classes having
+    the term as a feature and its weights, so classifying a document walks
+    only the postings of its tokens, whatever the number of the classes.
+
+    {@code
+    MultiLabelClassifier classifier = new MultiLabelClassifier();
+    classifier.add(nbc, 100);
+    List<ScoredClass> classes = classifier.classify(tokens, 5);
+    }
+
+    The score of a document in a class is the one of
+    {@link LuceneClassification#classify(NaiveBayesClassifier, Collection, int, int)},
+    positive if the document belongs to the class. The classes none of
+    whose features is in the document score zero and are not returned.
+
+    Add a classifier of all the classes or the one-vs-rest binary
+    classifiers one by one, adding a class twice sums its weights.
+
+    The classifier is safe to use from many threads once all the classes
+    are added.
+
+    @author Marek Schmidt
+*/
+public class MultiLabelClassifier {
+
+    /**
+        The classes having the term as a feature, with its weights.
+    */
+    private static class Postings {
+        int[] classes = new int[2];
+        double[] weights = new double[2];
+        int size;
+
+        void add(int klass, double weight) {
+            if (size == classes.length) {
+                int[] c = new int[size * 2];
+                double[] w = new double[size * 2];
+                System.arraycopy(classes, 0, c, 0, size);
+                System.arraycopy(weights, 0, w, 0, size);
+                classes = c;
+                weights = w;
+            }
+            classes[size] = klass;
+            weights[size] = weight;
+            size++;
+        }
+    }
+
+    /**
+        The scores of the classes of one document, only the classes touched
+        are reset for the next one.
+    */
+    private static class Accumulator {
+        double[] scores = new double[0];
+        boolean[] touched = new boolean[0];
+        int[] list = new int[0];
+        int size;
+
+        void ensure(int n) {
+            if (scores.length < n) {
+                scores = new double[n];
+                touched = new boolean[n];
+                list = new int[n];
+            }
+        }
+
+        void add(int klass, double weight) {
+            if (!touched[klass]) {
+                touched[klass] = true;
+                scores[klass] = 0.0;
+                list[size++] = klass;
+            }
+            scores[klass] += weight;
+        }
+
+        void clear() {
+            for (int i = 0; i < size; ++i) {
+                touched[list[i]] = false;
+            }
+            size = 0;
+        }
+    }
+
+    private static final Comparator<ScoredClass> ASCENDING = new Comparator<ScoredClass>() {
+        public int compare(ScoredClass c1, ScoredClass c2) {
+            return Double.compare(c1.getScore(), c2.getScore());
+        }
+    };
+
+    private Map<String, Postings> postings = new HashMap<String, Postings>();
+    // the classes by the dense index used in the postings
+    private List<Integer> classes = new ArrayList<Integer>();
+    private Map<Integer, Integer> classIndexes = new HashMap<Integer, Integer>();
+    private int size;
+
+    private ThreadLocal<Accumulator> accumulators = new ThreadLocal<Accumulator>() {
+        protected Accumulator initialValue() {
+            return new Accumulator();
+        }
+    };
+
+    /**
+        Adds the classes of the classifier.
+        @param selectedfeatures The number of the best features of each class to use, -1 for all.
+    */
+    public void add(NaiveBayesClassifier nbc, int selectedfeatures) {
+        for (Map.Entry<Integer, List<String>> entry : nbc.features.entrySet()) {
+            Integer klass = entry.getKey();
+            Integer index = classIndexes.get(klass);
+            if (index == null) {
+                index = classes.size();
+                classes.add(klass);
+                classIndexes.put(klass, index);
+            }
+
+            Map<String, Double> loglikelihoods = nbc.loglikelihoods.get(klass);
+            List<String> features = entry.getValue();
+            int n = selectedfeatures < 0 ? features.size() : Math.min(selectedfeatures, features.size());
+            for (int i = 0; i < n; ++i) {
+                String feature = features.get(i);
+                Postings p = postings.get(feature);
+                if (p == null) {
+                    p = new Postings();
+                    postings.put(feature, p);
+                }
+                p.add(index, loglikelihoods.get(feature));
+                size++;
+            }
+        }
+    }
+
+    /**
+        @return the number of the classes.
+    */
+    public int getClassCount() {
+        return classes.size();
+    }
+
+    /**
+        @return the number of the (term, class) postings.
+    */
+    public int getPostingCount() {
+        return size;
+    }
+
+    /**
+        @return the k best scoring classes of the document, the best first.
+    */
+    public List<ScoredClass> classify(Collection<String> tokens, int k) {
+        Accumulator accumulator = accumulators.get();
+        accumulate(tokens, accumulator);
+
+        PriorityQueue<ScoredClass> pq = new PriorityQueue<ScoredClass>(Math.max(1, k), ASCENDING);
+        for (int i = 0; i < accumulator.size; ++i) {
+            int index = accumulator.list[i];
+            double score = accumulator.scores[index];
+            if (pq.size() < k) {
+                pq.add(new ScoredClass(classes.get(index), score));
+            }
+            else if (k > 0 && pq.peek().getScore() < score) {
+                pq.poll();
+                pq.add(new ScoredClass(classes.get(index), score));
+            }
+        }
+        accumulator.clear();
+
+        List<ScoredClass> ret = new ArrayList<ScoredClass>(pq);
+        Collections.sort(ret, Collections.reverseOrder(ASCENDING));
+        return ret;
+    }
+
+    /**
+        @return all the classes the document belongs to, the ones with the
+        positive score, the best first.
+    */
+    public List<ScoredClass> classify(Collection<String> tokens) {
+        Accumulator accumulator = accumulators.get();
+        accumulate(tokens, accumulator);
+
+        List<ScoredClass> ret = new ArrayList<ScoredClass>();
+        for (int i = 0; i < accumulator.size; ++i) {
+            int index = accumulator.list[i];
+            if (accumulator.scores[index] > 0.0) {
+                ret.add(new ScoredClass(classes.get(index), accumulator.scores[index]));
+            }
+        }
+        accumulator.clear();
+
+        Collections.sort(ret, Collections.reverseOrder(ASCENDING));
+        return ret;
+    }
+
+    private void accumulate(Collection<String> tokens, Accumulator accumulator) {
+        accumulator.ensure(classes.size());
+        for (String token : tokens) {
+            Postings p = postings.get(token);
+            if (p == null) continue;
+            for (int i = 0; i < p.size; ++i) {
+                accumulator.add(p.classes[i], p.weights[i]);
+            }
+        }
+    }
+}
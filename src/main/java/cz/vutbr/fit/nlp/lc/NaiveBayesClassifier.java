@@ -34,6 +34,7 @@ package cz.vutbr.fit.nlp.lc;
 
 import java.io.Serializable;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -80,6 +81,65 @@ public class NaiveBayesClassifier implements Serializable {
             loglikelihoods = new HashMap<Integer, Map<String, Double>> ();
             features = new HashMap<Integer, List<String>> ();
         }
+
+        /**
+            Makes the classifier read only, the maps and the lists of the
+            classes can no longer be changed, and builds the lookups of the
+            terms for classifying a text without splitting it to Strings, see
+            {@link LuceneClassification#classify(NaiveBayesClassifier, CharSequence, int, int)}.
+            The classifiers trained by {@link LuceneClassification} are frozen.
+            @return this classifier.
+        */
+        public NaiveBayesClassifier freeze() {
+            if (frozen) {
+                return this;
+            }
+
+            Map<Integer, Map<String, Double>> klassloglikelihoods = new HashMap<Integer, Map<String, Double>>();
+            for (Map.Entry<Integer, Map<String, Double>> entry : loglikelihoods.entrySet()) {
+                klassloglikelihoods.put(entry.getKey(), Collections.unmodifiableMap(entry.getValue()));
+            }
+            Map<Integer, List<String>> klassfeatures = new HashMap<Integer, List<String>>();
+            for (Map.Entry<Integer, List<String>> entry : features.entrySet()) {
+                klassfeatures.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+            }
+            logpriors = Collections.unmodifiableMap(logpriors);
+            loglikelihoods = Collections.unmodifiableMap(klassloglikelihoods);
+            features = Collections.unmodifiableMap(klassfeatures);
+            frozen = true;
+            buildLookups();
+            return this;
+        }
+
+        public boolean isFrozen() {
+            return frozen;
+        }
+
+        private void buildLookups() {
+            Map<Integer, TermLookup> built = new HashMap<Integer, TermLookup>();
+            Set<Integer> classes = new HashSet<Integer>(loglikelihoods.keySet());
+            classes.addAll(features.keySet());
+            for (Integer klass : classes) {
+                built.put(klass, new TermLookup(loglikelihoods.get(klass), features.get(klass)));
+            }
+            lookups = built;
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            if (frozen) {
+                buildLookups();
+            }
+        }
+
+        /**
+            @return the loglikelihoods of the class indexed by the ids of a
+            {@link TermTable}, null if the classifier is not frozen.
+        */
+        TermLookup lookup(int klass) {
+            Map<Integer, TermLookup> built = lookups;
+            return built == null ? null : built.get(klass);
+        }
     
         public String toString() {
             StringBuilder sb = new StringBuilder();
@@ -105,5 +165,40 @@ public class NaiveBayesClassifier implements Serializable {
 
             return sb.toString();
         }
+
+        private boolean frozen;
+        // the lookups of the classes, built by freeze
+        private transient volatile Map<Integer, TermLookup> lookups;
+
+        static class TermLookup {
+            final TermTable table;
+            final double[] loglikelihoods;
+            // the position of the term among the features, MAX_VALUE if not one
+            final int[] ranks;
+
+            TermLookup(Map<String, Double> klassloglikelihoods, List<String> klassfeatures) {
+                int size = klassloglikelihoods == null ? 0 : klassloglikelihoods.size();
+                table = new TermTable(size);
+                loglikelihoods = new double[size];
+                ranks = new int[size];
+                if (klassloglikelihoods != null) {
+                    for (Map.Entry<String, Double> entry : klassloglikelihoods.entrySet()) {
+                        int id = table.add(entry.getKey());
+                        loglikelihoods[id] = entry.getValue();
+                        ranks[id] = Integer.MAX_VALUE;
+                    }
+                }
+                if (klassfeatures != null) {
+                    int rank = 0;
+                    for (String feature : klassfeatures) {
+                        int id = table.get(feature);
+                        if (id >= 0 && ranks[id] == Integer.MAX_VALUE) {
+                            ranks[id] = rank;
+                        }
+                        ++rank;
+                    }
+                }
+            }
+        }
 }
 
@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+/**
+    Keeps the scores in a persistent trie of blocks of 64 documents, the
+    accumulator to use when the earlier iterations must keep their scores,
+    the default {@link MapScoreAccumulator} changes them in place.
+    {@link #successor} shares all the blocks with the
+    new accumulator, and either of them copies a block (and the path to
+    it) only when it first changes it, so each
+    {@link LuceneClassification.Iteration} keeps its own scores for the cost
+    of the blocks the step changed.
+
+    The trie nodes have 64 children, a block holds the scores of 64
+    consecutive docids and a bitmap of the ones scored.
+
+    @author Marek Schmidt
+*/
+public class PersistentScoreAccumulator extends ScoreAccumulator {
+
+    public static final Factory FACTORY = new Factory() {
+        public ScoreAccumulator create(int maxDoc) {
+            return new PersistentScoreAccumulator(maxDoc);
+        }
+    };
+
+    private static final int BITS = 6;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static class Node {
+        // the accumulator which may change the node in place
+        Object owner;
+        Object[] children = new Object[WIDTH];
+
+        Node(Object owner) {
+            this.owner = owner;
+        }
+
+        Node copy(Object owner) {
+            Node ret = new Node(owner);
+            System.arraycopy(children, 0, ret.children, 0, WIDTH);
+            return ret;
+        }
+    }
+
+    private static class Block {
+        Object owner;
+        long present;
+        double[] scores = new double[WIDTH];
+
+        Block(Object owner) {
+            this.owner = owner;
+        }
+
+        Block copy(Object owner) {
+            Block ret = new Block(owner);
+            ret.present = present;
+            System.arraycopy(scores, 0, ret.scores, 0, WIDTH);
+            return ret;
+        }
+    }
+
+    // the levels of the nodes above the blocks
+    private int levels;
+    private Node root;
+    private int size;
+    private Object owner = new Object();
+
+    public PersistentScoreAccumulator(int maxDoc) {
+        levels = 1;
+        while (BITS * (levels + 1) < 31 && (1L << (BITS * (levels + 1))) < maxDoc) {
+            levels++;
+        }
+        root = new Node(owner);
+    }
+
+    private PersistentScoreAccumulator(PersistentScoreAccumulator other) {
+        levels = other.levels;
+        root = other.root;
+        size = other.size;
+    }
+
+    /**
+        @return a new accumulator with the same scores, the changes of either
+        are not seen by the other. It costs nothing until the blocks are changed.
+    */
+    public ScoreAccumulator successor() {
+        // the blocks are shared now, neither may change them in place
+        owner = new Object();
+        return new PersistentScoreAccumulator(this);
+    }
+
+    private Block block(int doc) {
+        Object n = root;
+        for (int shift = BITS * levels; shift > 0 && n != null; shift -= BITS) {
+            n = ((Node) n).children[(doc >>> shift) & MASK];
+        }
+        return (Block) n;
+    }
+
+    /**
+        @return the block of the document owned by this accumulator, copying the path to it.
+    */
+    private Block ownBlock(int doc) {
+        if (root.owner != owner) {
+            root = root.copy(owner);
+        }
+
+        Node n = root;
+        for (int shift = BITS * levels; shift > BITS; shift -= BITS) {
+            int i = (doc >>> shift) & MASK;
+            Node child = (Node) n.children[i];
+            if (child == null) {
+                child = new Node(owner);
+                n.children[i] = child;
+            }
+            else if (child.owner != owner) {
+                child = child.copy(owner);
+                n.children[i] = child;
+            }
+            n = child;
+        }
+
+        int i = (doc >>> BITS) & MASK;
+        Block block = (Block) n.children[i];
+        if (block == null) {
+            block = new Block(owner);
+            n.children[i] = block;
+        }
+        else if (block.owner != owner) {
+            block = block.copy(owner);
+            n.children[i] = block;
+        }
+        return block;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int doc) {
+        Block block = block(doc);
+        return block != null && (block.present & (1L << (doc & MASK))) != 0;
+    }
+
+    public double score(int doc) {
+        Block block = block(doc);
+        if (block == null || (block.present & (1L << (doc & MASK))) == 0) {
+            return Double.NaN;
+        }
+        return block.scores[doc & MASK];
+    }
+
+    public boolean add(int doc, double value) {
+        Block block = ownBlock(doc);
+        long bit = 1L << (doc & MASK);
+        if ((block.present & bit) == 0) {
+            block.present |= bit;
+            block.scores[doc & MASK] = value;
+            size++;
+            return true;
+        }
+        block.scores[doc & MASK] += value;
+        return false;
+    }
+
+    public void remove(int doc) {
+        if (!contains(doc)) return;
+
+        Block block = ownBlock(doc);
+        block.present &= ~(1L << (doc & MASK));
+        size--;
+    }
+
+    /**
+        @return the bytes of all the blocks, also the ones shared with the
+        other iterations.
+    */
+    public long getMemoryUsage() {
+        return memoryUsage(root, levels);
+    }
+
+    private static long memoryUsage(Node node, int levels) {
+        // the object, the owner and the array of the references
+        long ret = 32 + 16 + WIDTH * 8;
+        for (Object child : node.children) {
+            if (child == null) {
+                continue;
+            }
+            if (levels > 1) {
+                ret += memoryUsage((Node) child, levels - 1);
+            }
+            else {
+                // the object, the owner, the bitmap and the array of the scores
+                ret += 32 + 16 + WIDTH * 8;
+            }
+        }
+        return ret;
+    }
+
+    public Cursor cursor() {
+        return new Cursor() {
+            // the path to the current block
+            private Node[] nodes = new Node[levels];
+            private int[] positions = new int[levels];
+            private int depth = 0;
+
+            private Block block;
+            private int base;
+            private long bits;
+            private int doc = -1;
+            private double score;
+
+            {
+                nodes[0] = root;
+                positions[0] = -1;
+            }
+
+            private boolean nextBlock() {
+                while (depth >= 0) {
+                    if (++positions[depth] >= WIDTH) {
+                        depth--;
+                        continue;
+                    }
+
+                    Object child = nodes[depth].children[positions[depth]];
+                    if (child == null) {
+                        continue;
+                    }
+
+                    if (depth == levels - 1) {
+                        block = (Block) child;
+                        bits = block.present;
+                        base = 0;
+                        for (int d = 0; d < levels; ++d) {
+                            base |= positions[d] << (BITS * (levels - d));
+                        }
+                        return true;
+                    }
+
+                    depth++;
+                    nodes[depth] = (Node) child;
+                    positions[depth] = -1;
+                }
+                return false;
+            }
+
+            public boolean next() {
+                while (bits == 0) {
+                    if (!nextBlock()) {
+                        return false;
+                    }
+                }
+                int bit = Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                doc = base + bit;
+                score = block.scores[bit];
+                return true;
+            }
+
+            public int doc() {
+                return doc;
+            }
+
+            public double score() {
+                return score;
+            }
+
+            public void remove() {
+                // the path may be copied, the cursor goes on over the
+                // blocks as they were, only the documents passed change
+                PersistentScoreAccumulator.this.remove(doc);
+            }
+        };
+    }
+}
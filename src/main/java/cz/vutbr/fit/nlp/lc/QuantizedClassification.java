@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.util.OpenBitSet;
+
+/**
+    Steps a {@link QuantizedClassifier} over the index as
+    {@link LuceneClassification} does, summing the quantized weights in an
+    int array of the size of the index. The scores are multiplied by the
+    scale only for the top documents.
+
+    {@code
+    QuantizedClassification classification = new QuantizedClassification(reader, qc, "lemmas");
+    classification.steps(50);
+    List<ScoredDocument> top = classification.top(100);
+    }
+
+    The int scores cannot overflow before 65536 steps.
+
+    @author Marek Schmidt
+*/
+public class QuantizedClassification {
+
+    private IndexReader reader;
+    private QuantizedClassifier classifier;
+    private String featureField;
+
+    private int[] scores;
+    private OpenBitSet scored;
+    private int size;
+    // the number of the features stepped
+    private int iteration;
+
+    public QuantizedClassification(IndexReader reader, QuantizedClassifier classifier, String featureField) {
+        this.reader = reader;
+        this.classifier = classifier;
+        this.featureField = featureField;
+
+        scores = new int[reader.maxDoc()];
+        scored = new OpenBitSet(reader.maxDoc());
+    }
+
+    public boolean hasNext() {
+        return iteration < classifier.size();
+    }
+
+    /**
+        Adds the weight of the next feature to the documents containing it.
+        @return false if there are no more features.
+    */
+    public boolean step() throws IOException {
+        if (!hasNext()) return false;
+
+        int weight = classifier.getWeight(iteration);
+        TermDocs tds = reader.termDocs(new Term(featureField, classifier.getFeature(iteration)));
+        while (tds.next()) {
+            int docid = tds.doc();
+            if (!scored.getAndSet(docid)) {
+                size++;
+            }
+            scores[docid] += weight;
+        }
+        tds.close();
+
+        iteration++;
+        return true;
+    }
+
+    /**
+        Makes at most n steps.
+    */
+    public void steps(int n) throws IOException {
+        while (n-- > 0 && step()) {
+        }
+    }
+
+    /**
+        @return the number of the features stepped.
+    */
+    public int getIteration() {
+        return iteration;
+    }
+
+    /**
+        @return the number of the documents scored.
+    */
+    public int size() {
+        return size;
+    }
+
+    /**
+        @return the score of the document in the units of the scale, 0 if not scored.
+    */
+    public int getQuantizedScore(int doc) {
+        return scores[doc];
+    }
+
+    /**
+        @return the score of the document, NaN if it has not been scored.
+    */
+    public double getLogScore(int doc) {
+        return scored.get(doc) ? scores[doc] * classifier.getScale() : Double.NaN;
+    }
+
+    /**
+        @return the k best scored documents, the best first.
+    */
+    public List<ScoredDocument> top(int k) {
+        // the order of the scores is the same quantized, only the k best are scaled
+        TopDocumentCollector collector = new TopDocumentCollector(k);
+        for (int doc = scored.nextSetBit(0); doc >= 0; doc = scored.nextSetBit(doc + 1)) {
+            collector.collect(doc, scores[doc]);
+        }
+
+        double scale = classifier.getScale();
+        List<ScoredDocument> ret = new ArrayList<ScoredDocument>();
+        for (ScoredDocument document : collector.results()) {
+            ret.add(new ScoredDocument(document.getDoc(), document.getScore() * scale));
+        }
+        return ret;
+    }
+}
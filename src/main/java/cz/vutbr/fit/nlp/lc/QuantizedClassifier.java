@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+    The weights of one class of a trained classifier as 16 bit fixed point
+    numbers with a scale per class, the features ranked in an array.
+
+    {@code
+    QuantizedClassifier qc = QuantizedClassifier.quantize(nbc, 0);
+    }
+
+    The weight of the feature i is {@code getWeight(i) * getScale()}, the
+    error of each weight is at most half of the scale, which is the largest
+    absolute weight divided by {@link Short#MAX_VALUE}. The scores summed
+    from the weights are exact integers, multiplied by the scale only at the
+    end, see {@link QuantizedClassification}.
+
+    @author Marek Schmidt
+*/
+public class QuantizedClassifier implements Serializable {
+
+    private static final long serialVersionUID = 2519783314385826630L;
+
+    private int klass;
+    private double logprior;
+    private double scale;
+    private String[] features;
+    private short[] weights;
+
+    // the rank of the feature by the term, not serialized
+    private transient Map<String, Integer> ranks;
+
+    private QuantizedClassifier() {
+    }
+
+    /**
+        Quantizes the weights of the features of the class.
+    */
+    public static QuantizedClassifier quantize(NaiveBayesClassifier nbc, int klass) {
+        List<String> features = nbc.features.get(klass);
+        Map<String, Double> loglikelihoods = nbc.loglikelihoods.get(klass);
+
+        QuantizedClassifier ret = new QuantizedClassifier();
+        ret.klass = klass;
+        ret.logprior = nbc.logpriors.get(klass);
+        ret.features = features.toArray(new String[features.size()]);
+        ret.weights = new short[ret.features.length];
+
+        double max = 0.0;
+        for (String feature : ret.features) {
+            max = Math.max(max, Math.abs(loglikelihoods.get(feature)));
+        }
+        ret.scale = max > 0.0 ? max / Short.MAX_VALUE : 1.0;
+
+        for (int i = 0; i < ret.features.length; ++i) {
+            ret.weights[i] = (short) Math.round(loglikelihoods.get(ret.features[i]) / ret.scale);
+        }
+
+        ret.buildRanks();
+        return ret;
+    }
+
+    private void buildRanks() {
+        ranks = new HashMap<String, Integer>(features.length * 4 / 3 + 1);
+        for (int i = 0; i < features.length; ++i) {
+            ranks.put(features[i], i);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        buildRanks();
+    }
+
+    public int getKlass() {
+        return klass;
+    }
+
+    public double getLogPrior() {
+        return logprior;
+    }
+
+    /**
+        @return the value of one unit of the weights and of the summed scores.
+    */
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+        @return the number of the features.
+    */
+    public int size() {
+        return features.length;
+    }
+
+    /**
+        @return the i-th best feature.
+    */
+    public String getFeature(int i) {
+        return features[i];
+    }
+
+    /**
+        @return the quantized weight of the i-th best feature.
+    */
+    public short getWeight(int i) {
+        return weights[i];
+    }
+
+    /**
+        @return the rank of the feature, -1 if the term is not a feature.
+    */
+    public int getRank(String term) {
+        Integer rank = ranks.get(term);
+        return rank == null ? -1 : rank;
+    }
+
+    /**
+        Sums the quantized weights of the features of the document, as
+        {@link LuceneClassification#classify(NaiveBayesClassifier, Collection, int, int)}.
+        @param selectedfeatures The number of the best features used, -1 for all.
+        @return the score in the units of the scale.
+    */
+    public int classifyQuantized(Collection<String> tokens, int selectedfeatures) {
+        int depth = selectedfeatures < 0 ? features.length : selectedfeatures;
+        int p = 0;
+        for (String token : tokens) {
+            Integer rank = ranks.get(token);
+            if (rank != null && rank < depth) {
+                p += weights[rank];
+            }
+        }
+        return p;
+    }
+
+    /**
+        @return the score of the document, positive if it belongs to the class.
+    */
+    public double classify(Collection<String> tokens, int selectedfeatures) {
+        return classifyQuantized(tokens, selectedfeatures) * scale;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.Directory;
+
+/**
+    Keeps a read only {@link IndexReader} open for a long running process
+    and reopens it when the index changes.
+
+    The readers are reference counted, every {@link #acquire} must be
+    followed by a {@link #release} of the same reader. A reader replaced by
+    a reopen is closed once the last thread using it releases it.
+
+    {@code
+    IndexReader reader = readers.acquire();
+    try {
+        ...
+    }
+    finally {
+        readers.release(reader);
+    }
+    }
+
+    @author Marek Schmidt
+*/
+public class ReaderManager {
+
+    private IndexReader current;
+    private long checkInterval;
+    private long lastCheck;
+    private IndexWarmer warmer;
+    private boolean reopening;
+
+    /**
+        @param checkInterval How often (in milliseconds) to check whether the index changed, 0 to check on every acquire.
+    */
+    public ReaderManager(Directory dir, long checkInterval) throws IOException {
+        this.current = IndexReader.open(dir, true);
+        this.checkInterval = checkInterval;
+        this.lastCheck = System.currentTimeMillis();
+    }
+
+    /**
+        Warms the reader, and every reopened one before it replaces the
+        current one, so no request pays for the cold reads. The acquires
+        keep getting the old reader during the warm up.
+    */
+    public ReaderManager(Directory dir, long checkInterval, IndexWarmer warmer) throws IOException {
+        this(dir, checkInterval);
+        this.warmer = warmer;
+        try {
+            warmer.warm(current);
+        }
+        catch (IOException e) {
+            current.close();
+            throw e;
+        }
+    }
+
+    /**
+        @return the current reader, reopened first if the index changed.
+        While another thread reopens and warms the index, the reader being
+        replaced is returned.
+    */
+    public IndexReader acquire() throws IOException {
+        boolean check;
+        synchronized (this) {
+            ensureOpen();
+            long now = System.currentTimeMillis();
+            check = now - lastCheck >= checkInterval;
+            if (check) {
+                lastCheck = now;
+            }
+        }
+
+        if (check) {
+            maybeReopen();
+        }
+
+        synchronized (this) {
+            ensureOpen();
+            current.incRef();
+            return current;
+        }
+    }
+
+    public void release(IndexReader reader) throws IOException {
+        reader.decRef();
+    }
+
+    /**
+        Reopens the reader if the index changed. The reopen and the warm up
+        run without holding the lock, only one thread at a time reopens, the
+        others return at once.
+        @return true if the reader was reopened.
+    */
+    public boolean maybeReopen() throws IOException {
+        IndexReader reader;
+        synchronized (this) {
+            ensureOpen();
+            if (reopening) {
+                return false;
+            }
+            reopening = true;
+            reader = current;
+            reader.incRef();
+        }
+
+        IndexReader reopened = null;
+        try {
+            if (reader.isCurrent()) {
+                return false;
+            }
+
+            reopened = reader.reopen();
+            if (reopened == reader) {
+                reopened = null;
+                return false;
+            }
+
+            if (warmer != null) {
+                warmer.warm(reopened);
+            }
+
+            synchronized (this) {
+                if (current == null) {
+                    // closed during the reopen
+                    return false;
+                }
+                IndexReader old = current;
+                current = reopened;
+                reopened = null;
+                // the manager's own reference, the old reader is closed when
+                // the last user releases it
+                old.decRef();
+            }
+            return true;
+        }
+        finally {
+            if (reopened != null) {
+                reopened.close();
+            }
+            synchronized (this) {
+                reopening = false;
+            }
+            reader.decRef();
+        }
+    }
+
+    private void ensureOpen() {
+        if (current == null) {
+            throw new IllegalStateException("The reader manager is closed");
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if (current != null) {
+            current.decRef();
+            current = null;
+        }
+    }
+}
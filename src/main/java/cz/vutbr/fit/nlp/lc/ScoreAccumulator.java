@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+    Holds the scores of the documents during the classification, see
+    {@link LuceneClassification#setAccumulatorFactory}.
+
+    @author Marek Schmidt
+*/
+public abstract class ScoreAccumulator {
+
+    /**
+        Creates the accumulators for an index.
+    */
+    public static interface Factory {
+        ScoreAccumulator create(int maxDoc) throws IOException;
+    }
+
+    /**
+        Iterates over the scored documents, in no particular order.
+    */
+    public static interface Cursor {
+        boolean next();
+        int doc();
+        double score();
+        /** Removes the current document. */
+        void remove();
+    }
+
+    /**
+        @return the number of scored documents.
+    */
+    public abstract int size();
+
+    public abstract boolean contains(int doc);
+
+    /**
+        @return the score of the document, or NaN if it is not scored.
+    */
+    public abstract double score(int doc);
+
+    /**
+        Adds the value to the score of the document, a document not scored
+        yet starts at zero.
+        @return true if the document was not scored before.
+    */
+    public abstract boolean add(int doc, double value);
+
+    public abstract void remove(int doc);
+
+    public abstract Cursor cursor();
+
+    /**
+        @return an estimate of the bytes the scores take, -1 if not known.
+    */
+    public long getMemoryUsage() {
+        return -1;
+    }
+
+    /**
+        @return the accumulator of the next step of a classification. The
+        mutable accumulators return themselves, so the earlier iterations
+        see the later scores. {@link PersistentScoreAccumulator} returns a
+        copy sharing the unchanged scores.
+    */
+    public ScoreAccumulator successor() {
+        return this;
+    }
+
+    /**
+        Frees the resources held by the accumulator, it must not be used
+        afterwards.
+    */
+    public void release() {
+    }
+
+    /**
+        @return the scores as a read only map, backed by the accumulator.
+    */
+    public Map<Integer, Double> asMap() {
+        return new AbstractMap<Integer, Double>() {
+            public int size() {
+                return ScoreAccumulator.this.size();
+            }
+
+            public boolean containsKey(Object key) {
+                return key instanceof Integer && contains((Integer) key);
+            }
+
+            public Double get(Object key) {
+                if (!containsKey(key)) return null;
+                return score((Integer) key);
+            }
+
+            public Set<Map.Entry<Integer, Double>> entrySet() {
+                return new AbstractSet<Map.Entry<Integer, Double>>() {
+                    public int size() {
+                        return ScoreAccumulator.this.size();
+                    }
+
+                    public Iterator<Map.Entry<Integer, Double>> iterator() {
+                        final Cursor cursor = cursor();
+                        return new Iterator<Map.Entry<Integer, Double>>() {
+                            private boolean ready;
+                            private boolean more;
+
+                            public boolean hasNext() {
+                                if (!ready) {
+                                    more = cursor.next();
+                                    ready = true;
+                                }
+                                return more;
+                            }
+
+                            public Map.Entry<Integer, Double> next() {
+                                if (!hasNext()) throw new NoSuchElementException();
+                                ready = false;
+                                return new ScoreEntry(cursor.doc(), cursor.score());
+                            }
+
+                            public void remove() {
+                                throw new UnsupportedOperationException();
+                            }
+                        };
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+        A read only entry of {@link #asMap}.
+    */
+    private static final class ScoreEntry implements Map.Entry<Integer, Double> {
+        private final Integer doc;
+        private final Double score;
+
+        ScoreEntry(int doc, double score) {
+            this.doc = doc;
+            this.score = score;
+        }
+
+        public Integer getKey() {
+            return doc;
+        }
+
+        public Double getValue() {
+            return score;
+        }
+
+        public Double setValue(Double value) {
+            throw new UnsupportedOperationException();
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return doc.equals(e.getKey()) && score.equals(e.getValue());
+        }
+
+        public int hashCode() {
+            return doc.hashCode() ^ score.hashCode();
+        }
+
+        public String toString() {
+            return "" + doc + "=" + score;
+        }
+    }
+}
@@ -0,0 +1,639 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.Directory;
+
+/**
+    Classifies an index split to several shards, e.g. on separate disks.
+    Each shard steps the same features of the model on its own, in parallel
+    on the executor, and the top k documents of the shards are merged. The
+    score of a document only depends on its own postings, so the merged top
+    k is the same as of the one index of all the shards.
+
+    The documents are identified by the shard and the docid in the shard,
+    the global docid as of a {@link org.apache.lucene.index.MultiReader} of
+    the shards in the order given, and optionally the stored external id.
+
+    {@code
+    ShardedClassification sharded = ShardedClassification.open(directories, executor);
+    List<ShardedClassification.Hit> top = sharded.top(nbc, "lemmas", 0, 51, 20, "id");
+    }
+
+    A shard can also be scored by another process, see {@link RemoteShard}
+    and {@link #serve}: the worker opens the shard, the classifier is sent
+    to it once, as the plain values of its features, and then identified by
+    its hash.
+
+    @author Marek Schmidt
+*/
+public class ShardedClassification {
+
+    /**
+        A document of a shard and its score.
+    */
+    public static class Hit {
+        int shard;
+        int doc;
+        int globalDoc;
+        double score;
+        String id;
+
+        Hit(int doc, double score, String id) {
+            this.doc = doc;
+            this.score = score;
+            this.id = id;
+        }
+
+        /** The index of the shard in the list. */
+        public int getShard() {
+            return shard;
+        }
+
+        /** The docid in the shard. */
+        public int getDoc() {
+            return doc;
+        }
+
+        /** The docid in all the shards, offset by the maxDoc of the shards before. */
+        public int getGlobalDoc() {
+            return globalDoc;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        /** The stored external id, null if not asked for. */
+        public String getId() {
+            return id;
+        }
+
+        public String toString() {
+            return "" + shard + "/" + doc + ":" + score;
+        }
+    }
+
+    /**
+        Scores one shard.
+    */
+    public interface Shard {
+
+        /** @return the maxDoc of the index of the shard. */
+        int maxDoc() throws IOException;
+
+        /**
+            Steps the first steps features of the class.
+            @param idField The stored field of the external ids, null for none.
+            @return the k best documents of the shard, the best first.
+        */
+        List<Hit> top(NaiveBayesClassifier nbc, String featureField, int klass, int steps, int k, String idField) throws IOException;
+
+        void close() throws IOException;
+    }
+
+    /**
+        A shard in this process, stepped by a {@link ClassificationEngine} of
+        each classifier. The engines of the last classifiers are kept.
+    */
+    public static class LocalShard implements Shard {
+
+        private IndexReader reader;
+        private boolean closeReader;
+        private Map<NaiveBayesClassifier, ClassificationEngine> engines;
+
+        public LocalShard(IndexReader reader) {
+            this(reader, false);
+        }
+
+        /**
+            @param closeReader Whether {@link #close} closes the reader too.
+        */
+        public LocalShard(IndexReader reader, boolean closeReader) {
+            this.reader = reader;
+            this.closeReader = closeReader;
+            this.engines = new LinkedHashMap<NaiveBayesClassifier, ClassificationEngine>(16, 0.75f, true) {
+                protected boolean removeEldestEntry(Map.Entry<NaiveBayesClassifier, ClassificationEngine> eldest) {
+                    if (size() > 16) {
+                        eldest.getValue().close();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        public IndexReader getReader() {
+            return reader;
+        }
+
+        public int maxDoc() {
+            return reader.maxDoc();
+        }
+
+        private synchronized ClassificationEngine engine(NaiveBayesClassifier nbc, String featureField, int klass) {
+            ClassificationEngine engine = engines.get(nbc);
+            if (engine == null || engine.getKlass() != klass || !engine.getFeatureField().equals(featureField)) {
+                if (engine != null) {
+                    engine.close();
+                }
+                engine = new ClassificationEngine(reader, nbc, featureField, klass, 4);
+                engines.put(nbc, engine);
+            }
+            return engine;
+        }
+
+        public List<Hit> top(NaiveBayesClassifier nbc, String featureField, int klass, int steps, int k, String idField) throws IOException {
+            int[] docs = new int[k];
+            double[] scores = new double[k];
+            int n;
+            ClassificationSession session = engine(nbc, featureField, klass).openSession();
+            try {
+                session.steps(steps);
+                n = session.top(k, docs, scores);
+            }
+            finally {
+                session.close();
+            }
+
+            MapFieldSelector selector = idField != null ? new MapFieldSelector(new String[] { idField }) : null;
+            List<Hit> ret = new ArrayList<Hit>(n);
+            for (int i = 0; i < n; ++i) {
+                String id = null;
+                if (selector != null) {
+                    Document doc = reader.document(docs[i], selector);
+                    id = doc.get(idField);
+                }
+                ret.add(new Hit(docs[i], scores[i], id));
+            }
+            return ret;
+        }
+
+        /**
+            Frees the engines.
+        */
+        public synchronized void close() throws IOException {
+            for (ClassificationEngine engine : engines.values()) {
+                engine.close();
+            }
+            engines.clear();
+            if (closeReader) {
+                reader.close();
+            }
+        }
+    }
+
+    // the requests and the responses of the workers
+    static final byte MAX_DOC = 'D';
+    static final byte TOP = 'T';
+    static final byte CLASSIFIER = 'C';
+    static final byte OK = 0;
+    static final byte UNKNOWN_CLASSIFIER = 1;
+    static final byte ERROR = 2;
+
+    /**
+        A shard scored by a worker process listening on a socket, see
+        {@link ShardedClassification#serve}. The requests of one connection
+        are answered one at a time.
+    */
+    public static class RemoteShard implements Shard {
+
+        private Socket socket;
+        private DataInputStream in;
+        private DataOutputStream out;
+        private int maxDoc = -1;
+
+        // the classifier sent last, as written by writeClassifier
+        private NaiveBayesClassifier classifier;
+        private byte[] model;
+        private String key;
+
+        public RemoteShard(String host, int port) throws IOException {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        public synchronized int maxDoc() throws IOException {
+            if (maxDoc < 0) {
+                out.writeByte(MAX_DOC);
+                out.flush();
+                status();
+                maxDoc = in.readInt();
+            }
+            return maxDoc;
+        }
+
+        public synchronized List<Hit> top(NaiveBayesClassifier nbc, String featureField, int klass, int steps, int k, String idField) throws IOException {
+            if (nbc != classifier) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream data = new DataOutputStream(bytes);
+                writeClassifier(nbc, data);
+                data.flush();
+                model = bytes.toByteArray();
+                key = key(model);
+                classifier = nbc;
+            }
+
+            writeTop(featureField, klass, steps, k, idField);
+            if (status() == UNKNOWN_CLASSIFIER) {
+                out.writeByte(CLASSIFIER);
+                out.writeUTF(key);
+                out.write(model);
+                out.flush();
+                status();
+
+                writeTop(featureField, klass, steps, k, idField);
+                if (status() != OK) {
+                    throw new IOException("The worker lost the classifier");
+                }
+            }
+
+            int n = in.readInt();
+            List<Hit> ret = new ArrayList<Hit>(n);
+            for (int i = 0; i < n; ++i) {
+                int doc = in.readInt();
+                double score = in.readDouble();
+                String id = idField != null ? in.readUTF() : null;
+                ret.add(new Hit(doc, score, id));
+            }
+            return ret;
+        }
+
+        private void writeTop(String featureField, int klass, int steps, int k, String idField) throws IOException {
+            out.writeByte(TOP);
+            out.writeUTF(key);
+            out.writeUTF(featureField);
+            out.writeInt(klass);
+            out.writeInt(steps);
+            out.writeInt(k);
+            out.writeUTF(idField != null ? idField : "");
+            out.flush();
+        }
+
+        /**
+            @return OK or UNKNOWN_CLASSIFIER, throws on an error of the worker.
+        */
+        private byte status() throws IOException {
+            byte status = in.readByte();
+            if (status == ERROR) {
+                throw new IOException("Worker failed: " + in.readUTF());
+            }
+            return status;
+        }
+
+        public synchronized void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    // the limits of a classifier received, above them the request is rejected
+    static final int MAX_CLASSES = 1 << 16;
+    static final int MAX_FEATURES = 1 << 24;
+
+    /**
+        Writes the classes of the classifier, each as the class, the log
+        prior, the number of its features and the features, best first,
+        with their log likelihoods. The weights of the terms which are not
+        features are not written, they are never used to classify.
+    */
+    static void writeClassifier(NaiveBayesClassifier nbc, DataOutputStream out) throws IOException {
+        List<Integer> classes = new ArrayList<Integer>(nbc.logpriors.keySet());
+        Collections.sort(classes);
+        out.writeInt(classes.size());
+        for (Integer klass : classes) {
+            List<String> features = nbc.features.get(klass);
+            if (features == null) {
+                features = Collections.emptyList();
+            }
+            Map<String, Double> loglikelihoods = nbc.loglikelihoods.get(klass);
+
+            out.writeInt(klass);
+            out.writeDouble(nbc.logpriors.get(klass));
+            out.writeInt(features.size());
+            for (String feature : features) {
+                out.writeUTF(feature);
+                out.writeDouble(loglikelihoods.get(feature));
+            }
+        }
+    }
+
+    /**
+        Reads the classifier written by {@link #writeClassifier}.
+        @throws StreamCorruptedException if the numbers of the classes or
+        of the features are negative or above {@link #MAX_CLASSES} and
+        {@link #MAX_FEATURES} in total.
+    */
+    static NaiveBayesClassifier readClassifier(DataInputStream in) throws IOException {
+        NaiveBayesClassifier nbc = new NaiveBayesClassifier();
+        int classes = readLength(in, MAX_CLASSES, "classes");
+        int total = 0;
+        for (int c = 0; c < classes; ++c) {
+            int klass = in.readInt();
+            double logprior = in.readDouble();
+            int n = readLength(in, MAX_FEATURES - total, "features");
+            total += n;
+
+            // grown as read, the sender may lie about the number
+            List<String> features = new ArrayList<String>();
+            Map<String, Double> loglikelihoods = new HashMap<String, Double>();
+            for (int i = 0; i < n; ++i) {
+                String feature = in.readUTF();
+                features.add(feature);
+                loglikelihoods.put(feature, in.readDouble());
+            }
+
+            nbc.logpriors.put(klass, logprior);
+            nbc.features.put(klass, features);
+            nbc.loglikelihoods.put(klass, loglikelihoods);
+        }
+        return nbc.freeze();
+    }
+
+    private static int readLength(DataInputStream in, int max, String what) throws IOException {
+        int n = in.readInt();
+        if (n < 0 || n > max) {
+            throw new StreamCorruptedException("Invalid number of " + what + ": " + n);
+        }
+        return n;
+    }
+
+    static String key(byte[] model) {
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(model)) {
+                sb.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            }
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+        Answers the requests of a {@link RemoteShard} by the shard until the
+        connection is closed. The classifiers received are kept by their
+        hash, the last 16. A request which cannot be read, e.g. a classifier
+        with too many features, is answered by an error and the connection
+        is closed.
+    */
+    public static void serve(Shard shard, Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        Map<String, NaiveBayesClassifier> classifiers = new LinkedHashMap<String, NaiveBayesClassifier>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, NaiveBayesClassifier> eldest) {
+                return size() > 16;
+            }
+        };
+
+        while (true) {
+            byte command;
+            try {
+                command = in.readByte();
+            }
+            catch (EOFException e) {
+                return;
+            }
+
+            try {
+                if (command == MAX_DOC) {
+                    int maxDoc = shard.maxDoc();
+                    out.writeByte(OK);
+                    out.writeInt(maxDoc);
+                }
+                else if (command == CLASSIFIER) {
+                    String key = in.readUTF();
+                    classifiers.put(key, readClassifier(in));
+                    out.writeByte(OK);
+                }
+                else if (command == TOP) {
+                    String key = in.readUTF();
+                    String featureField = in.readUTF();
+                    int klass = in.readInt();
+                    int steps = in.readInt();
+                    int k = in.readInt();
+                    String idField = in.readUTF();
+                    if (idField.length() == 0) {
+                        idField = null;
+                    }
+                    if (k < 0) {
+                        throw new StreamCorruptedException("Invalid k: " + k);
+                    }
+                    // the top is allocated for k
+                    k = Math.min(k, shard.maxDoc());
+
+                    NaiveBayesClassifier nbc = classifiers.get(key);
+                    if (nbc == null) {
+                        out.writeByte(UNKNOWN_CLASSIFIER);
+                    }
+                    else {
+                        List<Hit> hits = shard.top(nbc, featureField, klass, steps, k, idField);
+                        out.writeByte(OK);
+                        out.writeInt(hits.size());
+                        for (Hit hit : hits) {
+                            out.writeInt(hit.doc);
+                            out.writeDouble(hit.score);
+                            if (idField != null) {
+                                out.writeUTF(hit.id != null ? hit.id : "");
+                            }
+                        }
+                    }
+                }
+                else {
+                    out.writeByte(ERROR);
+                    out.writeUTF("Unknown request " + command);
+                    out.flush();
+                    return;
+                }
+            }
+            catch (StreamCorruptedException e) {
+                // the rest of the request cannot be read
+                out.writeByte(ERROR);
+                out.writeUTF(e.toString());
+                out.flush();
+                return;
+            }
+            catch (RuntimeException e) {
+                out.writeByte(ERROR);
+                out.writeUTF(e.toString());
+            }
+            out.flush();
+        }
+    }
+
+    private List<Shard> shards;
+    private ExecutorService executor;
+    private int[] bases;
+    private int maxDoc;
+
+    /**
+        @param executor Steps the shards, in the calling thread if null.
+    */
+    public ShardedClassification(List<Shard> shards, ExecutorService executor) throws IOException {
+        this.shards = new ArrayList<Shard>(shards);
+        this.executor = executor;
+        this.bases = new int[shards.size()];
+        int base = 0;
+        for (int i = 0; i < shards.size(); ++i) {
+            bases[i] = base;
+            base += shards.get(i).maxDoc();
+        }
+        maxDoc = base;
+    }
+
+    /**
+        Opens the readers of the directories as the local shards, closed
+        by {@link #close}.
+    */
+    public static ShardedClassification open(List<Directory> directories, ExecutorService executor) throws IOException {
+        List<Shard> shards = new ArrayList<Shard>();
+        for (Directory directory : directories) {
+            shards.add(new LocalShard(IndexReader.open(directory, true), true));
+        }
+        return new ShardedClassification(shards, executor);
+    }
+
+    public List<Shard> getShards() {
+        return Collections.unmodifiableList(shards);
+    }
+
+    /**
+        @return the number of the documents of all the shards, as the maxDoc of their MultiReader.
+    */
+    public int maxDoc() {
+        return maxDoc;
+    }
+
+    /**
+        Steps the shards and merges their top k.
+        @param steps The number of the features stepped.
+        @param idField The stored field of the external ids, null for none.
+        @return the k best documents of all the shards, the best first, the
+        ties by the global docid.
+    */
+    public List<Hit> top(final NaiveBayesClassifier nbc, final String featureField, final int klass, final int steps, final int k, final String idField) throws IOException {
+        List<List<Hit>> results = new ArrayList<List<Hit>>(shards.size());
+        if (executor == null) {
+            for (Shard shard : shards) {
+                results.add(shard.top(nbc, featureField, klass, steps, k, idField));
+            }
+        }
+        else {
+            List<Future<List<Hit>>> futures = new ArrayList<Future<List<Hit>>>(shards.size());
+            for (final Shard shard : shards) {
+                futures.add(executor.submit(new Callable<List<Hit>>() {
+                    public List<Hit> call() throws IOException {
+                        return shard.top(nbc, featureField, klass, steps, k, idField);
+                    }
+                }));
+            }
+            try {
+                for (Future<List<Hit>> future : futures) {
+                    results.add(future.get());
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while stepping the shards");
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException)e.getCause();
+                }
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        List<Hit> merged = new ArrayList<Hit>();
+        for (int i = 0; i < results.size(); ++i) {
+            for (Hit hit : results.get(i)) {
+                hit.shard = i;
+                hit.globalDoc = bases[i] + hit.doc;
+                merged.add(hit);
+            }
+        }
+        return merge(merged, k);
+    }
+
+    /**
+        @return the k best of the hits of all the shards.
+    */
+    static List<Hit> merge(List<Hit> hits, int k) {
+        Collections.sort(hits, new Comparator<Hit>() {
+            public int compare(Hit h1, Hit h2) {
+                int c = Double.compare(h2.score, h1.score);
+                return c != 0 ? c : (h1.globalDoc < h2.globalDoc ? -1 : (h1.globalDoc == h2.globalDoc ? 0 : 1));
+            }
+        });
+        return hits.size() > k ? new ArrayList<Hit>(hits.subList(0, k)) : hits;
+    }
+
+    /**
+        Closes the shards.
+    */
+    public void close() throws IOException {
+        for (Shard shard : shards) {
+            shard.close();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+/**
+    Splits a text to the tokens separated by spaces without copying it,
+    each token is a span of the text with the hash of its characters, to be
+    looked up in a {@link TermTable}.
+
+    {@code
+    SpanTokenizer tokenizer = new SpanTokenizer();
+    tokenizer.reset(text);
+    while (tokenizer.next()) {
+        int id = table.get(text, tokenizer.start(), tokenizer.end(), tokenizer.hash());
+        ...
+    }
+    }
+
+    The tokens are the same as of {@code text.split(" ")}, including the
+    empty ones between two spaces, but not the trailing ones. One instance
+    can be reused for any number of texts, but not by more threads at once.
+
+    @author Marek Schmidt
+*/
+public class SpanTokenizer {
+
+    private CharSequence text;
+    // the end of the text without the trailing spaces
+    private int limit;
+    private int pos;
+
+    private int start;
+    private int end;
+    private int hash;
+
+    public SpanTokenizer reset(CharSequence text) {
+        this.text = text;
+
+        int length = text.length();
+        limit = length;
+        while (limit > 0 && text.charAt(limit - 1) == ' ') {
+            limit--;
+        }
+        // only spaces, no tokens at all, but an empty text is one empty token
+        pos = limit == 0 && length > 0 ? 1 : 0;
+        return this;
+    }
+
+    /**
+        Moves to the next token.
+        @return false if there are no more tokens.
+    */
+    public boolean next() {
+        if (pos > limit) {
+            return false;
+        }
+
+        int h = 0;
+        int i = pos;
+        char c;
+        while (i < limit && (c = text.charAt(i)) != ' ') {
+            h = 31 * h + c;
+            i++;
+        }
+
+        start = pos;
+        end = i;
+        hash = h;
+        pos = i + 1;
+        return true;
+    }
+
+    /** The index of the first character of the token. */
+    public int start() {
+        return start;
+    }
+
+    /** The index after the last character of the token. */
+    public int end() {
+        return end;
+    }
+
+    /** The hash of the token, the same as of the token as a String. */
+    public int hash() {
+        return hash;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+/**
+    The cost of one step of {@link LuceneClassification}.
+
+    @author Marek Schmidt
+*/
+public class StepStatistics {
+
+    int klass;
+    int iteration;
+    String term;
+    int docFreq;
+    int postingsRead;
+    int accumulatorSize;
+    int newDocuments;
+    int prunedDocuments;
+    LuceneClassification.PruneBound pruneBound = LuceneClassification.PruneBound.NONE;
+    long elapsedNanos;
+
+    public int getKlass() {
+        return klass;
+    }
+
+    public int getIteration() {
+        return iteration;
+    }
+
+    /** The feature stepped. */
+    public String getTerm() {
+        return term;
+    }
+
+    /** The document frequency of the feature in the index. */
+    public int getDocFreq() {
+        return docFreq;
+    }
+
+    /** The number of postings read in this step. */
+    public int getPostingsRead() {
+        return postingsRead;
+    }
+
+    /** The number of scored documents after this step. */
+    public int getAccumulatorSize() {
+        return accumulatorSize;
+    }
+
+    /** The number of documents scored for the first time in this step. */
+    public int getNewDocuments() {
+        return newDocuments;
+    }
+
+    /** The number of documents pruned from the scores in this step. */
+    public int getPrunedDocuments() {
+        return prunedDocuments;
+    }
+
+    /** The bound used to prune the documents in this step. */
+    public LuceneClassification.PruneBound getPruneBound() {
+        return pruneBound;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
@@ -0,0 +1,448 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+
+/**
+    The term occurrences counted over the labelled documents, the input of
+    the training. For each class it keeps the number of documents and the
+    number of occurrences of each term in them. The counts of the other
+    classes (the negative ones) are the total minus the class.
+
+    The counts can be added and subtracted, so e.g. the counts of all the
+    folds but one are the total minus that fold, see {@link CrossValidation}.
+
+    @author Marek Schmidt
+*/
+public class TermCounts {
+
+    private Map<Integer, Map<String, Integer>> classCounts = new HashMap<Integer, Map<String, Integer>>();
+    private Map<String, Integer> totalCounts = new HashMap<String, Integer>();
+    private Map<Integer, Integer> classSizes = new HashMap<Integer, Integer>();
+
+    // the terms seen so far, the tokens of a document are counted by their
+    // ids first, so the maps are updated once per distinct term
+    private TermTable vocabulary;
+    private SpanTokenizer tokenizer;
+    private int[] documentCounts;
+    // the ids of the document in the order of the first occurrence
+    private int[] documentTerms;
+    private int documentSize;
+
+    public TermCounts() {
+    }
+
+    /**
+        Counts the terms of the labelled documents.
+    */
+    public static TermCounts count(IndexReader reader, Map<Integer, Set<Integer>> class2ids, String featureField) throws IOException {
+        TermCounts counts = new TermCounts();
+        FieldSelector selector = new MapFieldSelector(new String[] { featureField });
+        for (Integer klass : class2ids.keySet()) {
+            counts.addClass(klass);
+            for (Integer docid : class2ids.get(klass)) {
+                counts.add(klass, text(reader, docid, featureField, selector));
+            }
+        }
+        return counts;
+    }
+
+    /**
+        Counts the terms of the labelled documents, estimating the counts
+        of the negative class instead of reading its documents if the
+        options say so, see {@link TrainingOptions#setNegativeEstimate}.
+    */
+    public static TermCounts count(IndexReader reader, Map<Integer, Set<Integer>> class2ids, String featureField, TrainingOptions options) throws IOException {
+        TrainingOptions.NegativeEstimate estimate = options.getNegativeEstimate();
+        int negative = options.getNegativeClass();
+        if (estimate == TrainingOptions.NegativeEstimate.EXACT || !class2ids.containsKey(negative)) {
+            return count(reader, class2ids, featureField);
+        }
+
+        TermCounts counts = new TermCounts();
+        Set<Integer> positives = new HashSet<Integer>();
+        FieldSelector selector = new MapFieldSelector(new String[] { featureField });
+        for (Integer klass : class2ids.keySet()) {
+            counts.addClass(klass);
+            if (klass == negative) continue;
+
+            for (Integer docid : class2ids.get(klass)) {
+                counts.add(klass, text(reader, docid, featureField, selector));
+                positives.add(docid);
+            }
+        }
+
+        // only the number of the negative documents is known
+        int documents = class2ids.get(negative).size();
+        int unlabelled = reader.numDocs() - positives.size();
+
+        Map<String, Integer> estimated = new HashMap<String, Integer>();
+        if (documents > 0 && unlabelled > 0) {
+            if (estimate == TrainingOptions.NegativeEstimate.COLLECTION_STATISTICS) {
+                // the negatives are as a random sample of the documents not
+                // labelled positive, the total counts are of the positives only yet
+                double scale = (0.0 + documents) / unlabelled;
+                for (Map.Entry<String, Integer> entry : counts.totalCounts.entrySet()) {
+                    long rest = occurrences(reader, new Term(featureField, entry.getKey())) - entry.getValue();
+                    int n = (int) Math.round(Math.max(0, rest) * scale);
+                    if (n > 0) {
+                        estimated.put(entry.getKey(), n);
+                    }
+                }
+            }
+            else {
+                int[] sample = sample(reader, positives, options.getSampleSize(), new Random(options.getSeed()));
+                Map<String, Integer> sampled = new HashMap<String, Integer>();
+                for (int docid : sample) {
+                    counts.scan(text(reader, docid, featureField, selector));
+                    counts.flush(sampled, null);
+                }
+
+                double scale = (0.0 + documents) / sample.length;
+                for (Map.Entry<String, Integer> entry : sampled.entrySet()) {
+                    int n = (int) Math.round(entry.getValue() * scale);
+                    if (n > 0) {
+                        estimated.put(entry.getKey(), n);
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<String, Integer> entry : estimated.entrySet()) {
+            increment(counts.classCounts.get(negative), entry.getKey(), entry.getValue());
+            increment(counts.totalCounts, entry.getKey(), entry.getValue());
+        }
+        counts.classSizes.put(negative, documents);
+
+        return counts;
+    }
+
+    /**
+        Counts the terms of the documents of the class, the documents of
+        the other classes are counted only to the total, see {@link #addToTotal}.
+        The negative estimates are counted as by
+        {@link #count(IndexReader, Map, String, TrainingOptions)}.
+    */
+    public static TermCounts countBinary(IndexReader reader, Map<Integer, Set<Integer>> class2ids, String featureField, int klass, TrainingOptions options) throws IOException {
+        if (options.getNegativeEstimate() != TrainingOptions.NegativeEstimate.EXACT) {
+            return count(reader, class2ids, featureField, options);
+        }
+
+        TermCounts counts = new TermCounts();
+        FieldSelector selector = new MapFieldSelector(new String[] { featureField });
+        for (Integer other : class2ids.keySet()) {
+            counts.addClass(other);
+            for (Integer docid : class2ids.get(other)) {
+                if (other == klass) {
+                    counts.add(klass, text(reader, docid, featureField, selector));
+                }
+                else {
+                    counts.addToTotal(other, text(reader, docid, featureField, selector));
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+        @return the number of the occurrences of the term in the documents
+        not deleted, the unit of the counts, unlike the document frequency.
+    */
+    static long occurrences(IndexReader reader, Term term) throws IOException {
+        long n = 0;
+        TermDocs docs = reader.termDocs(term);
+        try {
+            while (docs.next()) {
+                n += docs.freq();
+            }
+        }
+        finally {
+            docs.close();
+        }
+        return n;
+    }
+
+    /**
+        Samples the documents not deleted nor excluded uniformly, with a
+        reservoir, in one pass over the docids.
+        @return at most n docids.
+    */
+    static int[] sample(IndexReader reader, Set<Integer> excluded, int n, Random random) {
+        int[] reservoir = new int[n];
+        int seen = 0;
+        int maxDoc = reader.maxDoc();
+        for (int docid = 0; docid < maxDoc; ++docid) {
+            if (reader.isDeleted(docid) || excluded.contains(docid)) continue;
+
+            if (seen < n) {
+                reservoir[seen] = docid;
+            }
+            else {
+                int r = random.nextInt(seen + 1);
+                if (r < n) {
+                    reservoir[r] = docid;
+                }
+            }
+            seen++;
+        }
+
+        if (seen < n) {
+            int[] ret = new int[seen];
+            System.arraycopy(reservoir, 0, ret, 0, seen);
+            return ret;
+        }
+        return reservoir;
+    }
+
+    /**
+        @return the stored value of the field, only the field is loaded.
+    */
+    static String text(IndexReader reader, int docid, String featureField, FieldSelector selector) throws IOException {
+        Document doc = reader.document(docid, selector);
+        return doc.get(featureField);
+    }
+
+    /**
+        Counts the tokens of the text by their ids, see {@link #flush}.
+    */
+    private void scan(CharSequence text) {
+        if (vocabulary == null) {
+            vocabulary = new TermTable(1024);
+            tokenizer = new SpanTokenizer();
+            documentCounts = new int[1024];
+            documentTerms = new int[256];
+        }
+
+        documentSize = 0;
+        tokenizer.reset(text);
+        while (tokenizer.next()) {
+            int id = vocabulary.add(text, tokenizer.start(), tokenizer.end(), tokenizer.hash());
+            if (id >= documentCounts.length) {
+                documentCounts = Arrays.copyOf(documentCounts, Math.max(id + 1, documentCounts.length * 2));
+            }
+            if (documentCounts[id]++ == 0) {
+                if (documentSize == documentTerms.length) {
+                    documentTerms = Arrays.copyOf(documentTerms, documentSize * 2);
+                }
+                documentTerms[documentSize++] = id;
+            }
+        }
+    }
+
+    /**
+        Adds the counts of the document scanned last to the maps, the new
+        terms in the order of their first occurrence as if counted token by token.
+        @param total Also added to this one, may be null.
+    */
+    private void flush(Map<String, Integer> counts, Map<String, Integer> total) {
+        for (int i = 0; i < documentSize; ++i) {
+            int id = documentTerms[i];
+            String term = vocabulary.term(id);
+            int n = documentCounts[id];
+            documentCounts[id] = 0;
+            increment(counts, term, n);
+            if (total != null) {
+                increment(total, term, n);
+            }
+        }
+    }
+
+    private static void increment(Map<String, Integer> counts, String term, int n) {
+        Integer value = counts.get(term);
+        int updated = value == null ? n : value + n;
+        if (updated == 0) {
+            counts.remove(term);
+        }
+        else {
+            counts.put(term, updated);
+        }
+    }
+
+    /**
+        Registers the class, even if it has no documents.
+    */
+    public void addClass(int klass) {
+        if (!classCounts.containsKey(klass)) {
+            classCounts.put(klass, new HashMap<String, Integer>());
+            classSizes.put(klass, 0);
+        }
+    }
+
+    /**
+        Counts one document of the class.
+    */
+    public void add(int klass, String[] tokens) {
+        addClass(klass);
+        Map<String, Integer> counts = classCounts.get(klass);
+        for (String text : tokens) {
+            increment(counts, text, 1);
+            increment(totalCounts, text, 1);
+        }
+        classSizes.put(klass, classSizes.get(klass) + 1);
+    }
+
+    /**
+        Counts one document of the class, the stored value of its field,
+        without splitting it to Strings.
+    */
+    public void add(int klass, String text) {
+        addClass(klass);
+        scan(text);
+        flush(classCounts.get(klass), totalCounts);
+        classSizes.put(klass, classSizes.get(klass) + 1);
+    }
+
+    /**
+        Counts one document of the class only to the total and to the size
+        of the class, without keeping the counts of the class. Enough for
+        training the other classes against it, see
+        {@link LuceneClassification#learnBinary(TermCounts, int, TrainingOptions)}.
+        Such counts cannot be added or subtracted.
+    */
+    public void addToTotal(int klass, String[] tokens) {
+        addClass(klass);
+        for (String text : tokens) {
+            increment(totalCounts, text, 1);
+        }
+        classSizes.put(klass, classSizes.get(klass) + 1);
+    }
+
+    /**
+        Counts one document of the class only to the total, as
+        {@link #addToTotal(int, String[])}, without splitting it to Strings.
+    */
+    public void addToTotal(int klass, String text) {
+        addClass(klass);
+        scan(text);
+        flush(totalCounts, null);
+        classSizes.put(klass, classSizes.get(klass) + 1);
+    }
+
+    private TermCounts combine(TermCounts other, int sign) {
+        TermCounts ret = new TermCounts();
+        for (Map.Entry<Integer, Map<String, Integer>> entry : classCounts.entrySet()) {
+            ret.classCounts.put(entry.getKey(), new HashMap<String, Integer>(entry.getValue()));
+        }
+        ret.totalCounts.putAll(totalCounts);
+        ret.classSizes.putAll(classSizes);
+
+        for (Map.Entry<Integer, Map<String, Integer>> entry : other.classCounts.entrySet()) {
+            ret.addClass(entry.getKey());
+            Map<String, Integer> counts = ret.classCounts.get(entry.getKey());
+            for (Map.Entry<String, Integer> term : entry.getValue().entrySet()) {
+                increment(counts, term.getKey(), sign * term.getValue());
+                increment(ret.totalCounts, term.getKey(), sign * term.getValue());
+            }
+            ret.classSizes.put(entry.getKey(), ret.classSizes.get(entry.getKey()) + sign * other.classSizes.get(entry.getKey()));
+        }
+        return ret;
+    }
+
+    /**
+        @return new counts, these plus the other ones.
+    */
+    public TermCounts plus(TermCounts other) {
+        return combine(other, 1);
+    }
+
+    /**
+        @return new counts, these minus the other ones, which must have been
+        counted into these.
+    */
+    public TermCounts minus(TermCounts other) {
+        return combine(other, -1);
+    }
+
+    public Set<Integer> getClasses() {
+        return classCounts.keySet();
+    }
+
+    /**
+        @return the number of documents of the class.
+    */
+    public int getClassSize(int klass) {
+        Integer size = classSizes.get(klass);
+        return size == null ? 0 : size;
+    }
+
+    /**
+        @return the number of documents of all the classes.
+    */
+    public int getTotalSize() {
+        int total = 0;
+        for (int size : classSizes.values()) {
+            total += size;
+        }
+        return total;
+    }
+
+    /**
+        @return the occurrences of the terms in the documents of the class.
+    */
+    public Map<String, Integer> getClassCounts(int klass) {
+        return classCounts.get(klass);
+    }
+
+    /**
+        @return the occurrences of the term in all the documents.
+    */
+    int getTotalCount(String term) {
+        Integer total = totalCounts.get(term);
+        return total == null ? 0 : total;
+    }
+
+    /**
+        @return the occurrences of the term in the documents of the other classes.
+    */
+    public int getNegativeCount(int klass, String term) {
+        Integer total = totalCounts.get(term);
+        if (total == null) return 0;
+        Integer positive = classCounts.get(klass).get(term);
+        return positive == null ? total : total - positive;
+    }
+}
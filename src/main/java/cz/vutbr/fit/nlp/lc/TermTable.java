@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.Arrays;
+
+/**
+    Numbers the terms 0, 1, ... in the order they are added, in an open
+    addressing table that can be looked up by a span of a text, see
+    {@link SpanTokenizer}, without making a String of it.
+
+    @author Marek Schmidt
+*/
+public class TermTable {
+
+    private String[] terms;
+    private int[] hashes;
+    // the id + 1 of the term in the slot, 0 if empty
+    private int[] slots;
+    private int mask;
+    private int size;
+
+    public TermTable() {
+        this(16);
+    }
+
+    public TermTable(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        slots = new int[capacity];
+        mask = capacity - 1;
+        terms = new String[Math.max(8, expectedSize)];
+        hashes = new int[terms.length];
+    }
+
+    /**
+        @return the hash of the span, the same as of the span as a String.
+    */
+    public static int hash(CharSequence text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; ++i) {
+            h = 31 * h + text.charAt(i);
+        }
+        return h;
+    }
+
+    private static int mix(int hash) {
+        // spread the String hashes, similar words differ in the low bits only
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+        @return the term of the id.
+    */
+    public String term(int id) {
+        return terms[id];
+    }
+
+    /**
+        @return the id of the term, -1 if not in the table.
+    */
+    public int get(String term) {
+        return get(term, 0, term.length(), term.hashCode());
+    }
+
+    /**
+        @param hash The hash of the span, see {@link #hash}.
+        @return the id of the span, -1 if not in the table.
+    */
+    public int get(CharSequence text, int start, int end, int hash) {
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                return -1;
+            }
+            if (hashes[id] == hash && matches(terms[id], text, start, end)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+        @return the id of the term, added if not in the table.
+    */
+    public int add(String term) {
+        int id = get(term);
+        return id >= 0 ? id : insert(term, term.hashCode());
+    }
+
+    /**
+        @return the id of the span, added as a new String if not in the table.
+    */
+    public int add(CharSequence text, int start, int end, int hash) {
+        int id = get(text, start, end, hash);
+        return id >= 0 ? id : insert(text.subSequence(start, end).toString(), hash);
+    }
+
+    private static boolean matches(String term, CharSequence text, int start, int end) {
+        int length = end - start;
+        if (term.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; ++i) {
+            if (term.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int insert(String term, int hash) {
+        if (size == terms.length) {
+            terms = Arrays.copyOf(terms, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        terms[id] = term;
+        hashes[id] = hash;
+
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        else {
+            place(id);
+        }
+        return id;
+    }
+
+    private void place(int id) {
+        int slot = mix(hashes[id]) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = id + 1;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        mask = capacity - 1;
+        for (int id = 0; id < size; ++id) {
+            place(id);
+        }
+    }
+}
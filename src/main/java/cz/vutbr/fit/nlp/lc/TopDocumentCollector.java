@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+    Collects the k best scored documents.
+
+    @author Marek Schmidt
+*/
+public class TopDocumentCollector {
+
+    static final Comparator<ScoredDocument> ASCENDING = new Comparator<ScoredDocument>() {
+        public int compare(ScoredDocument d1, ScoredDocument d2) {
+            return Double.compare(d1.getScore(), d2.getScore());
+        }
+    };
+
+    private int k;
+    private PriorityQueue<ScoredDocument> pq;
+
+    public TopDocumentCollector(int k) {
+        this.k = k;
+        this.pq = new PriorityQueue<ScoredDocument>(Math.max(1, k), ASCENDING);
+    }
+
+    public void collect(int doc, double score) {
+        if (pq.size() < k) {
+            pq.add(new ScoredDocument(doc, score));
+        }
+        else if (k > 0 && pq.peek().getScore() < score) {
+            pq.poll();
+            pq.add(new ScoredDocument(doc, score));
+        }
+    }
+
+    /**
+        Collects all the documents of the accumulator.
+    */
+    public void collect(ScoreAccumulator scores) {
+        ScoreAccumulator.Cursor cursor = scores.cursor();
+        while (cursor.next()) {
+            collect(cursor.doc(), cursor.score());
+        }
+    }
+
+    /**
+        @return the score a document must beat to get collected, negative
+        infinity until k documents are collected.
+    */
+    public double threshold() {
+        return pq.size() < k ? Double.NEGATIVE_INFINITY : pq.peek().getScore();
+    }
+
+    /**
+        @return the collected documents, the best first.
+    */
+    public List<ScoredDocument> results() {
+        List<ScoredDocument> ret = new ArrayList<ScoredDocument>(pq);
+        Collections.sort(ret, Collections.reverseOrder(ASCENDING));
+        return ret;
+    }
+}
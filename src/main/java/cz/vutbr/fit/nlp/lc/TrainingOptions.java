@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+/**
+    The options of {@link LuceneClassification#learn(TermCounts, TrainingOptions)}.
+
+    @author Marek Schmidt
+*/
+public class TrainingOptions {
+
+    /**
+        How the term counts of the negative class are obtained.
+    */
+    public enum NegativeEstimate {
+        /** Reading every negative document. */
+        EXACT,
+        /**
+            From the occurrences of the terms in the index, assuming the
+            negatives are a random sample of the documents not labelled
+            positive. Only the terms of the positive documents are
+            estimated, reading their postings.
+        */
+        COLLECTION_STATISTICS,
+        /**
+            From a uniform sample of the documents not labelled positive,
+            scaled to the number of the negatives.
+        */
+        RESERVOIR_SAMPLE
+    }
+
+    private FeatureScorer featureScorer = FeatureScorers.INFORMATION_GAIN;
+    private ClassificationListener listener;
+    private int maxFeatures = -1;
+    private NegativeEstimate negativeEstimate = NegativeEstimate.EXACT;
+    private int negativeClass = 1;
+    private int sampleSize = 1000;
+    private long seed = 1;
+
+    public FeatureScorer getFeatureScorer() {
+        return featureScorer;
+    }
+
+    /**
+        The feature selection method, information gain by default.
+    */
+    public TrainingOptions setFeatureScorer(FeatureScorer featureScorer) {
+        this.featureScorer = featureScorer;
+        return this;
+    }
+
+    public ClassificationListener getListener() {
+        return listener;
+    }
+
+    /**
+        Notified with the cost of the training, none by default.
+    */
+    public TrainingOptions setListener(ClassificationListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    public int getMaxFeatures() {
+        return maxFeatures;
+    }
+
+    /**
+        The number of the best features kept for each class, -1 (the
+        default) for all of them. The weights of the other terms are
+        dropped, the classifier will not use them even if asked for all
+        the features.
+    */
+    public TrainingOptions setMaxFeatures(int maxFeatures) {
+        this.maxFeatures = maxFeatures;
+        return this;
+    }
+
+    public NegativeEstimate getNegativeEstimate() {
+        return negativeEstimate;
+    }
+
+    public int getNegativeClass() {
+        return negativeClass;
+    }
+
+    /**
+        Estimates the counts of the negative class instead of reading its
+        documents, so the cost of the training depends only on the number of
+        the positive ones. The class must still list the negatives, only
+        their number is used. {@link NegativeEstimate#EXACT} by default.
+    */
+    public TrainingOptions setNegativeEstimate(NegativeEstimate negativeEstimate, int negativeClass) {
+        this.negativeEstimate = negativeEstimate;
+        this.negativeClass = negativeClass;
+        return this;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+        The number of the documents read for {@link NegativeEstimate#RESERVOIR_SAMPLE}, 1000 by default.
+    */
+    public TrainingOptions setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+        return this;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+        The seed of the sample, 1 by default.
+    */
+    public TrainingOptions setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public String toString() {
+        return maxFeatures < 0 ? "" + featureScorer : "" + featureScorer + "/" + maxFeatures;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc.tools;
+
+import cz.vutbr.fit.nlp.lc.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.store.Directory;
+
+/**
+    Trains a class of each tag of the indexed documents, see {@link Index},
+    and categorizes the documents read from the standard input, one per line
+    as space delimited tokens, with a {@link MultiLabelClassifier}.
+
+    Usage: Categorize index [--features 100] [--k 5] [--directory fs|mmap|nio|ram]
+
+    Prints the k best tags of each document with the scores, tab delimited.
+
+    @author Marek Schmidt
+*/
+class Categorize {
+
+    public static void main(String[] args) throws Exception {
+
+        int features = 100;
+        int k = 5;
+        DirectoryType directoryType = DirectoryType.FS;
+
+        for (int i = 1; i + 1 < args.length; ++i) {
+            if ("--directory".equals(args[i])) {
+                directoryType = DirectoryType.parse(args[++i]);
+            }
+            else if ("--features".equals(args[i])) {
+                features = Integer.parseInt(args[++i]);
+            }
+            else if ("--k".equals(args[i])) {
+                k = Integer.parseInt(args[++i]);
+            }
+        }
+
+        Directory dir = directoryType.open(new File(args[0]));
+        IndexReader reader = IndexReader.open(dir, true);
+
+        List<String> tags = new ArrayList<String>();
+        Map<Integer, Set<Integer>> class2ids = new HashMap<Integer, Set<Integer>>();
+        TermEnum terms = reader.terms(new Term("tag", ""));
+        do {
+            Term term = terms.term();
+            if (term == null || !"tag".equals(term.field())) break;
+
+            Set<Integer> ids = new HashSet<Integer>();
+            TermDocs docs = reader.termDocs(term);
+            while (docs.next()) {
+                ids.add(docs.doc());
+            }
+            docs.close();
+
+            class2ids.put(tags.size(), ids);
+            tags.add(term.text());
+        } while (terms.next());
+        terms.close();
+
+        long start = System.currentTimeMillis();
+        NaiveBayesClassifier nbc = LuceneClassification.learn(reader, class2ids, "lemmas", new TrainingOptions().setMaxFeatures(features));
+        MultiLabelClassifier classifier = new MultiLabelClassifier();
+        classifier.add(nbc, features);
+        System.err.println("" + classifier.getClassCount() + " classes, " + classifier.getPostingCount() + " postings in " + (System.currentTimeMillis() - start) + " ms");
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+        String line;
+        while ((line = in.readLine()) != null) {
+            StringBuilder sb = new StringBuilder();
+            for (ScoredClass c : classifier.classify(Arrays.asList(line.split(" ")), k)) {
+                if (sb.length() > 0) sb.append("\t");
+                sb.append(tags.get(c.getKlass()) + "\t" + c.getScore());
+            }
+            System.out.println(sb.toString());
+        }
+
+        reader.close();
+    }
+}
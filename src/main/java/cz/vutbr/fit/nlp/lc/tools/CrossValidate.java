@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc.tools;
+
+import cz.vutbr.fit.nlp.lc.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.Directory;
+
+/**
+    Cross validates the feature scorers and the number of features to step
+    on a training set read from the standard input in the format of
+    {@link Search}.
+
+    Usage: CrossValidate index [--folds 5] [--depths 10,20,50,100,-1] [--scorers ig,mi,lr,tf] [--threads n] [--seed n] [--directory fs|mmap|nio|ram]
+
+    Prints "scorer depth precision recall f1 accuracy" for each combination.
+
+    @author Marek Schmidt
+*/
+class CrossValidate {
+
+    public static void main(String[] args) throws Exception {
+
+        int folds = 5;
+        String depthList = "10,20,50,100,-1";
+        String scorerList = "ig,mi,lr,tf";
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        DirectoryType directoryType = DirectoryType.FS;
+
+        for (int i = 1; i + 1 < args.length; ++i) {
+            if ("--directory".equals(args[i])) {
+                directoryType = DirectoryType.parse(args[++i]);
+            }
+            else if ("--folds".equals(args[i])) {
+                folds = Integer.parseInt(args[++i]);
+            }
+            else if ("--depths".equals(args[i])) {
+                depthList = args[++i];
+            }
+            else if ("--scorers".equals(args[i])) {
+                scorerList = args[++i];
+            }
+            else if ("--threads".equals(args[i])) {
+                threads = Integer.parseInt(args[++i]);
+            }
+            else if ("--seed".equals(args[i])) {
+                seed = Long.parseLong(args[++i]);
+            }
+        }
+
+        String[] depthStrings = depthList.split(",");
+        int[] depths = new int[depthStrings.length];
+        for (int i = 0; i < depths.length; ++i) {
+            depths[i] = Integer.parseInt(depthStrings[i].trim());
+        }
+
+        List<TrainingOptions> configurations = new ArrayList<TrainingOptions>();
+        for (String scorer : scorerList.split(",")) {
+            configurations.add(new TrainingOptions().setFeatureScorer(FeatureScorers.forName(scorer.trim())));
+        }
+
+        Directory dir = directoryType.open(new File(args[0]));
+        IndexReader reader = IndexReader.open(dir, true);
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+        Map<Integer, Set<Integer>> class2ids = Search.readTraining(reader, in, new LinkedList<String>(), new LinkedList<String>(), System.err);
+
+        long start = System.currentTimeMillis();
+        CrossValidation cv = new CrossValidation(reader, class2ids, "lemmas", folds, new Random(seed));
+        long counted = System.currentTimeMillis();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<CrossValidation.Evaluation> evaluations;
+        try {
+            evaluations = cv.evaluate(0, configurations, depths, executor);
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        for (CrossValidation.Evaluation e : evaluations) {
+            System.out.println("" + e.getOptions().getFeatureScorer() + " " + e.getDepth() + " " + e.getPrecision() + " " + e.getRecall() + " " + e.getF1() + " " + e.getAccuracy());
+        }
+        System.out.println("# counting " + (counted - start) + " ms, evaluation " + (System.currentTimeMillis() - counted) + " ms");
+
+        reader.close();
+    }
+}
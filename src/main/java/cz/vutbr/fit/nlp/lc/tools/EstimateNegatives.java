@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc.tools;
+
+import cz.vutbr.fit.nlp.lc.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.Directory;
+
+/**
+    Reports how far the estimated negative counts are from the exact ones,
+    for the training set read from the standard input in the format of
+    {@link Search}.
+
+    Usage: EstimateNegatives index [--sample 1000] [--seed 1] [--depth 50] [--directory fs|mmap|nio|ram]
+
+    Prints one tab delimited line per estimate: the time of counting in ms,
+    the mean absolute and the mean relative error of the negative counts of
+    the positive terms, and the share of the best depth positive features
+    the estimated model has in common with the exact one.
+
+    @author Marek Schmidt
+*/
+class EstimateNegatives {
+
+    public static void main(String[] args) throws Exception {
+
+        int sampleSize = 1000;
+        long seed = 1;
+        int depth = 50;
+        DirectoryType directoryType = DirectoryType.FS;
+
+        for (int i = 1; i + 1 < args.length; ++i) {
+            if ("--directory".equals(args[i])) {
+                directoryType = DirectoryType.parse(args[++i]);
+            }
+            else if ("--sample".equals(args[i])) {
+                sampleSize = Integer.parseInt(args[++i]);
+            }
+            else if ("--seed".equals(args[i])) {
+                seed = Long.parseLong(args[++i]);
+            }
+            else if ("--depth".equals(args[i])) {
+                depth = Integer.parseInt(args[++i]);
+            }
+        }
+
+        Directory dir = directoryType.open(new File(args[0]));
+        IndexReader reader = IndexReader.open(dir, true);
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+        Map<Integer, Set<Integer>> class2ids = Search.readTraining(reader, in, new LinkedList<String>(), new LinkedList<String>(), null);
+
+        TermCounts exact = null;
+        Set<String> exactFeatures = null;
+
+        System.out.println("estimate\tcountMs\tmeanAbsoluteError\tmeanRelativeError\tfeatureOverlap");
+        for (TrainingOptions.NegativeEstimate estimate : TrainingOptions.NegativeEstimate.values()) {
+            TrainingOptions options = new TrainingOptions().setNegativeEstimate(estimate, 1).setSampleSize(sampleSize).setSeed(seed);
+
+            long start = System.currentTimeMillis();
+            TermCounts counts = TermCounts.count(reader, class2ids, "lemmas", options);
+            long countMs = System.currentTimeMillis() - start;
+
+            List<String> features = LuceneClassification.learn(counts, options).features.get(0);
+            Set<String> best = new HashSet<String>(features.subList(0, Math.min(depth, features.size())));
+
+            if (exact == null) {
+                exact = counts;
+                exactFeatures = best;
+            }
+
+            double absolute = 0.0;
+            double relative = 0.0;
+            int terms = 0;
+            for (String term : exact.getClassCounts(0).keySet()) {
+                int truth = exact.getNegativeCount(0, term);
+                int error = Math.abs(counts.getNegativeCount(0, term) - truth);
+                absolute += error;
+                relative += (0.0 + error) / Math.max(1, truth);
+                terms++;
+            }
+
+            Set<String> common = new HashSet<String>(best);
+            common.retainAll(exactFeatures);
+
+            System.out.println("" + estimate + "\t" + countMs + "\t" + absolute / Math.max(1, terms) + "\t" + relative / Math.max(1, terms) + "\t" + (0.0 + common.size()) / Math.max(1, exactFeatures.size()));
+        }
+
+        reader.close();
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+
+package cz.vutbr.fit.nlp.lc.tools;
+
+import cz.vutbr.fit.nlp.lc.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.Directory;
+
+/**
+    Measures the ranking change of the {@link HashedClassifier} of a number of
+    bits against the model of the terms, for the training set read from the
+    standard input in the format of {@link Search}.
+
+    Usage: HashingTest index [--bits 16,18,20] [--k 100] [--documents n] [--directory fs|mmap|nio|ram]
+
+    Classifies the first n documents of the index (all by default), the
+    deleted ones are skipped, by the model of the terms and by the hashed
+    models of each number of bits, both hashed from the model by
+    {@link HashedClassifier#hash} and learned by {@link HashedClassifier#learn},
+    all the models in one pass over the documents. Prints the serialized size of each
+    model, the features that collided, the buckets used, the share of the
+    top k documents in common with the model of the terms, and the largest
+    difference of the scores.
+
+    @author Marek Schmidt
+*/
+class HashingTest {
+
+    /**
+        @return the k best documents, the deleted ones are NaN.
+    */
+    static Set<Integer> top(double[] scores, int k) {
+        TopDocumentCollector collector = new TopDocumentCollector(k);
+        for (int i = 0; i < scores.length; ++i) {
+            if (!Double.isNaN(scores[i])) {
+                collector.collect(i, scores[i]);
+            }
+        }
+        Set<Integer> ret = new HashSet<Integer>();
+        for (ScoredDocument doc : collector.results()) {
+            ret.add(doc.getDoc());
+        }
+        return ret;
+    }
+
+    static String compare(double[] full, double[] hashed, Set<Integer> fullTop, int k) {
+        double maxError = 0.0;
+        for (int i = 0; i < full.length; ++i) {
+            if (!Double.isNaN(full[i])) {
+                maxError = Math.max(maxError, Math.abs(full[i] - hashed[i]));
+            }
+        }
+        Set<Integer> common = top(hashed, k);
+        common.retainAll(fullTop);
+        return "" + (0.0 + common.size()) / Math.max(1, fullTop.size()) + "\t" + maxError;
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        String[] bits = { "16", "18", "20" };
+        int k = 100;
+        int documents = -1;
+        DirectoryType directoryType = DirectoryType.FS;
+
+        for (int i = 1; i + 1 < args.length; ++i) {
+            if ("--directory".equals(args[i])) {
+                directoryType = DirectoryType.parse(args[++i]);
+            }
+            else if ("--bits".equals(args[i])) {
+                bits = args[++i].split(",");
+            }
+            else if ("--k".equals(args[i])) {
+                k = Integer.parseInt(args[++i]);
+            }
+            else if ("--documents".equals(args[i])) {
+                documents = Integer.parseInt(args[++i]);
+            }
+        }
+
+        Directory dir = directoryType.open(new File(args[0]));
+        IndexReader reader = IndexReader.open(dir, true);
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+        Map<Integer, Set<Integer>> class2ids = Search.readTraining(reader, in, new LinkedList<String>(), new LinkedList<String>(), null);
+
+        NaiveBayesClassifier nbc = LuceneClassification.learnBinary(reader, class2ids, "lemmas", 0, new TrainingOptions());
+
+        HashedClassifier[] hashed = new HashedClassifier[bits.length];
+        HashedClassifier[] learned = new HashedClassifier[bits.length];
+        for (int b = 0; b < bits.length; ++b) {
+            int bit = Integer.parseInt(bits[b]);
+            hashed[b] = HashedClassifier.hash(nbc, 0, bit);
+            learned[b] = HashedClassifier.learn(reader, class2ids, "lemmas", 0, bit, new TrainingOptions());
+        }
+
+        // the scores of the deleted documents are NaN, see top
+        int n = documents < 0 ? reader.maxDoc() : Math.min(documents, reader.maxDoc());
+        double[] full = new double[n];
+        double[][] hashedScores = new double[bits.length][n];
+        double[][] learnedScores = new double[bits.length][n];
+        MapFieldSelector selector = new MapFieldSelector(new String[] { "lemmas" });
+        for (int i = 0; i < n; ++i) {
+            if (reader.isDeleted(i)) {
+                full[i] = Double.NaN;
+                continue;
+            }
+            String text = reader.document(i, selector).get("lemmas");
+            full[i] = LuceneClassification.classify(nbc, text, 0, -1);
+            for (int b = 0; b < bits.length; ++b) {
+                hashedScores[b][i] = hashed[b].classify(text);
+                learnedScores[b][i] = learned[b].classify(text);
+            }
+        }
+        Set<Integer> fullTop = top(full, k);
+
+        System.out.println("model\tbits\tbytes\tcollisions\tbuckets\toverlap@" + k + "\tmaxError");
+        System.out.println("terms\t-\t" + QuantizationTest.serializedSize(nbc) + "\t0\t" + nbc.features.get(0).size() + "\t1.0\t0.0");
+
+        for (int b = 0; b < bits.length; ++b) {
+            System.out.println("hashed\t" + bits[b] + "\t" + QuantizationTest.serializedSize(hashed[b]) + "\t" + hashed[b].getCollisions() + "\t" + hashed[b].getUsedBuckets() + "\t" + compare(full, hashedScores[b], fullTop, k));
+            System.out.println("learned\t" + bits[b] + "\t" + QuantizationTest.serializedSize(learned[b]) + "\t-\t" + learned[b].getUsedBuckets() + "\t" + compare(full, learnedScores[b], fullTop, k));
+        }
+
+        reader.close();
+    }
+}
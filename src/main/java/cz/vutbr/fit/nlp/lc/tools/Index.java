@@ -56,6 +56,43 @@ import org.apache.lucene.store.FSDirectory;
  */
 class Index {
 
+    /**
+     *  Parses one line of the input format into a document.
+     *  @return the document, or null if the line is malformed.
+     */
+    static Document toDocument(String line) {
+        String[] split = line.split("\t", 4);
+
+        String id = null;
+        String title = null;
+        String lemmas = null;
+        String tags = null;
+
+        if (split.length == 3 || split.length == 4) {
+            id = split[0];
+            title = split[1];
+            lemmas = split[2];
+        }
+        else {
+            return null;
+        }
+
+        if (split.length == 4) {
+            tags = split[3];
+        }
+
+        Document doc = new Document();
+        doc.add(new Field("id", id, Field.Store.YES, Field.Index.NOT_ANALYZED));
+        doc.add(new Field("title", title, Field.Store.YES, Field.Index.ANALYZED));
+        doc.add(new Field("lemmas", lemmas, Field.Store.YES, Field.Index.ANALYZED));
+
+        if (tags != null) {
+            doc.add(new Field("tag", tags, Field.Store.YES, Field.Index.ANALYZED));
+        }
+
+        return doc;
+    }
+
     public static void main(String[] args) throws Exception {
 
         IndexWriter writer;
@@ -72,36 +109,12 @@ class Index {
 
             i++;
 
-            String[] split = line.split("\t", 4);
-
-            String id = null;
-            String title = null;
-            String lemmas = null;
-            String tags = null;
-
-            if (split.length == 3 || split.length == 4) {
-                id = split[0];
-                title = split[1];
-                lemmas = split[2];
-            }
-            else {
+            Document doc = toDocument(line);
+            if (doc == null) {
                 System.err.println("Wrong line " + i + " : " + line);
                 continue;
             }
 
-            if (split.length == 4) {
-                tags = split[3];
-            }
-            
-            Document doc = new Document();
-            doc.add(new Field("id", id, Field.Store.YES, Field.Index.NOT_ANALYZED));
-            doc.add(new Field("title", title, Field.Store.YES, Field.Index.ANALYZED));
-            doc.add(new Field("lemmas", lemmas, Field.Store.YES, Field.Index.ANALYZED));
-
-            if (tags != null) {
-                doc.add(new Field("tag", tags, Field.Store.YES, Field.Index.ANALYZED));
-            }
-
             writer.addDocument(doc);
         }
 
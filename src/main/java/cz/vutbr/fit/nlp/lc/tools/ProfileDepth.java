@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc.tools;
+
+import cz.vutbr.fit.nlp.lc.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.store.Directory;
+
+/**
+    Profiles the cost and the quality of the ranking by the number of
+    features stepped, see {@link DepthProfile}, for the tags of a labelled
+    index. The classifiers are trained from the documents with the ids
+    starting with "training/" and evaluated on the ones starting with
+    "test/", as in {@link ReutersExperiment}, or trained and evaluated on
+    all the documents if there are no such ids.
+
+    Usage: ProfileDepth index [--tags earn,acq] [--classes 10] [--max-depth 200] [--k 100] [--repeat 3]
+    [--latency ms] [--memory MB] [--tolerance 0.01] [--accumulator map] [--directory fs]
+
+    Prints "tag depth postings elapsedMs accumulator memoryBytes recall@k
+    overlap@k" for each tag and depth, the same averaged over the tags as
+    the tag "all", and a line with the recommended depth of each, the
+    smallest depth within the latency and memory budgets whose overlap
+    with the ranking of all the features is within the tolerance of the
+    best one.
+
+    @author Marek Schmidt
+*/
+class ProfileDepth {
+
+    /**
+        @return the n tags with the most documents.
+    */
+    static List<String> frequentTags(IndexReader reader, int n) throws java.io.IOException {
+        final Map<String, Integer> docFreqs = new HashMap<String, Integer>();
+        TermEnum terms = reader.terms(new Term("tag", ""));
+        do {
+            Term term = terms.term();
+            if (term == null || !"tag".equals(term.field())) break;
+            docFreqs.put(term.text(), terms.docFreq());
+        } while (terms.next());
+        terms.close();
+
+        List<String> ret = new ArrayList<String>(docFreqs.keySet());
+        Collections.sort(ret, new Comparator<String>() {
+            public int compare(String t1, String t2) {
+                return docFreqs.get(t2) - docFreqs.get(t1);
+            }
+        });
+        return ret.subList(0, Math.min(n, ret.size()));
+    }
+
+    static void print(String tag, List<DepthProfile.Point> curve, double latency, long memory, double tolerance) {
+        for (DepthProfile.Point point : curve) {
+            System.out.println(tag + "\t" + point);
+        }
+
+        DepthProfile.Point best = DepthProfile.recommend(curve, latency, memory, tolerance);
+        if (best == null) {
+            System.out.println("# " + tag + " no depth within the budget");
+        }
+        else {
+            System.out.println("# " + tag + " recommended depth " + best.getDepth() + " " + best.getElapsedNanos() / 1000000.0 + " ms " + best.getMemory() + " bytes recall " + best.getRecall() + " overlap " + best.getOverlap());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        String tagList = null;
+        int classes = 10;
+        int maxDepth = 200;
+        int k = 100;
+        int repeat = 3;
+        double latency = -1;
+        long memory = -1;
+        double tolerance = 0.01;
+        ScoreAccumulator.Factory accumulatorFactory = MapScoreAccumulator.FACTORY;
+        DirectoryType directoryType = DirectoryType.FS;
+
+        for (int i = 1; i + 1 < args.length; ++i) {
+            if ("--tags".equals(args[i])) {
+                tagList = args[++i];
+            }
+            else if ("--classes".equals(args[i])) {
+                classes = Integer.parseInt(args[++i]);
+            }
+            else if ("--max-depth".equals(args[i])) {
+                maxDepth = Integer.parseInt(args[++i]);
+            }
+            else if ("--k".equals(args[i])) {
+                k = Integer.parseInt(args[++i]);
+            }
+            else if ("--repeat".equals(args[i])) {
+                repeat = Integer.parseInt(args[++i]);
+            }
+            else if ("--latency".equals(args[i])) {
+                latency = Double.parseDouble(args[++i]);
+            }
+            else if ("--memory".equals(args[i])) {
+                memory = (long) (Double.parseDouble(args[++i]) * 1024 * 1024);
+            }
+            else if ("--tolerance".equals(args[i])) {
+                tolerance = Double.parseDouble(args[++i]);
+            }
+            else if ("--accumulator".equals(args[i])) {
+                accumulatorFactory = Search.accumulatorFactory(args[++i]);
+            }
+            else if ("--directory".equals(args[i])) {
+                directoryType = DirectoryType.parse(args[++i]);
+            }
+        }
+
+        Directory dir = directoryType.open(new File(args[0]));
+        IndexReader reader = IndexReader.open(dir, true);
+
+        List<String> tags = new ArrayList<String>();
+        if (tagList != null) {
+            for (String tag : tagList.split(",")) {
+                tags.add(tag.trim());
+            }
+        }
+        else {
+            tags = frequentTags(reader, classes);
+        }
+
+        // the training and the evaluation documents
+        Set<Integer> training = new HashSet<Integer>();
+        Set<Integer> test = new HashSet<Integer>();
+        String[] ids = FieldCache.DEFAULT.getStrings(reader, "id");
+        for (int doc = 0; doc < reader.maxDoc(); ++doc) {
+            if (reader.isDeleted(doc) || ids[doc] == null) continue;
+            if (ids[doc].startsWith("training/")) {
+                training.add(doc);
+            }
+            else if (ids[doc].startsWith("test/")) {
+                test.add(doc);
+            }
+        }
+        if (training.isEmpty()) {
+            for (int doc = 0; doc < reader.maxDoc(); ++doc) {
+                if (!reader.isDeleted(doc)) {
+                    training.add(doc);
+                }
+            }
+            test = null;
+        }
+
+        System.out.println("tag\tdepth\tpostings\telapsedMs\taccumulator\tmemoryBytes\trecall@" + k + "\toverlap@" + k);
+
+        List<List<DepthProfile.Point>> curves = new ArrayList<List<DepthProfile.Point>>();
+        for (String tag : tags) {
+            Map<Integer, Set<Integer>> class2ids = new HashMap<Integer, Set<Integer>>();
+            class2ids.put(0, new HashSet<Integer>());
+            class2ids.put(1, new HashSet<Integer>());
+            Set<Integer> positives = new HashSet<Integer>();
+
+            TermDocs docs = reader.termDocs(new Term("tag", tag));
+            while (docs.next()) {
+                int doc = docs.doc();
+                if (training.contains(doc)) {
+                    class2ids.get(0).add(doc);
+                }
+                if (test == null || test.contains(doc)) {
+                    positives.add(doc);
+                }
+            }
+            docs.close();
+
+            for (int doc : training) {
+                if (!class2ids.get(0).contains(doc)) {
+                    class2ids.get(1).add(doc);
+                }
+            }
+
+            if (class2ids.get(0).isEmpty()) {
+                System.err.println("No training documents of " + tag);
+                continue;
+            }
+
+            NaiveBayesClassifier nbc = LuceneClassification.learnBinary(reader, class2ids, "lemmas", 0, new TrainingOptions());
+            LuceneClassification classification = new LuceneClassification(reader, nbc, "lemmas", 0);
+            classification.setAccumulatorFactory(accumulatorFactory);
+
+            List<Integer> reference = DepthProfile.reference(reader, nbc, "lemmas", 0, test, k);
+            List<DepthProfile.Point> curve = DepthProfile.profile(classification, maxDepth, k, test, positives, reference, repeat);
+            curves.add(curve);
+
+            print(tag, curve, latency, memory, tolerance);
+        }
+
+        print("all", DepthProfile.average(curves), latency, memory, tolerance);
+
+        reader.close();
+    }
+}
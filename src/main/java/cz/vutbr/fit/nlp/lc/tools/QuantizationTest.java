@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc.tools;
+
+import cz.vutbr.fit.nlp.lc.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.Directory;
+
+/**
+    Measures the ranking change of the {@link QuantizedClassifier} against
+    the full precision model, for the training set read from the standard
+    input in the format of {@link Search}.
+
+    Usage: QuantizationTest index [--features 50] [--k 100] [--directory fs|mmap|nio|ram]
+
+    Prints the serialized sizes of the models, the time and the peak heap of
+    stepping the features, the share of the top k documents in common,
+    the number of the top k documents at a different rank and the largest
+    difference of their scores.
+
+    @author Marek Schmidt
+*/
+class QuantizationTest {
+
+    static int serializedSize(Serializable o) throws java.io.IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(o);
+        out.close();
+        return bytes.size();
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        int features = 50;
+        int k = 100;
+        DirectoryType directoryType = DirectoryType.FS;
+
+        for (int i = 1; i + 1 < args.length; ++i) {
+            if ("--directory".equals(args[i])) {
+                directoryType = DirectoryType.parse(args[++i]);
+            }
+            else if ("--features".equals(args[i])) {
+                features = Integer.parseInt(args[++i]);
+            }
+            else if ("--k".equals(args[i])) {
+                k = Integer.parseInt(args[++i]);
+            }
+        }
+
+        Directory dir = directoryType.open(new File(args[0]));
+        IndexReader reader = IndexReader.open(dir, true);
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+        Map<Integer, Set<Integer>> class2ids = Search.readTraining(reader, in, new LinkedList<String>(), new LinkedList<String>(), null);
+
+        NaiveBayesClassifier nbc = LuceneClassification.learnBinary(reader, class2ids, "lemmas", 0, new TrainingOptions());
+        QuantizedClassifier qc = QuantizedClassifier.quantize(nbc, 0);
+
+        ScaleTest.resetPeakHeap();
+        long start = System.currentTimeMillis();
+        LuceneClassification classification = new LuceneClassification(reader, nbc, "lemmas", 0);
+        LuceneClassification.Iteration iter = classification.steps(null, features);
+        List<ScoredDocument> full = iter.top(k);
+        long fullMs = System.currentTimeMillis() - start;
+        long fullHeap = ScaleTest.peakHeap();
+        iter.release();
+        iter = null;
+
+        ScaleTest.resetPeakHeap();
+        start = System.currentTimeMillis();
+        QuantizedClassification quantized = new QuantizedClassification(reader, qc, "lemmas");
+        quantized.steps(features);
+        List<ScoredDocument> top = quantized.top(k);
+        long quantizedMs = System.currentTimeMillis() - start;
+        long quantizedHeap = ScaleTest.peakHeap();
+
+        Map<Integer, Integer> ranks = new HashMap<Integer, Integer>();
+        for (int i = 0; i < full.size(); ++i) {
+            ranks.put(full.get(i).getDoc(), i);
+        }
+
+        int common = 0;
+        int moved = 0;
+        double maxError = 0.0;
+        for (int i = 0; i < top.size(); ++i) {
+            Integer rank = ranks.get(top.get(i).getDoc());
+            if (rank == null) {
+                moved++;
+                continue;
+            }
+            common++;
+            if (rank != i) {
+                moved++;
+            }
+            maxError = Math.max(maxError, Math.abs(full.get(rank).getScore() - top.get(i).getScore()));
+        }
+
+        System.out.println("model\tbytes\tstepMs\tpeakHeapMB");
+        System.out.println("full\t" + serializedSize(nbc) + "\t" + fullMs + "\t" + fullHeap / (1024 * 1024));
+        System.out.println("quantized\t" + serializedSize(qc) + "\t" + quantizedMs + "\t" + quantizedHeap / (1024 * 1024));
+        System.out.println("# scale " + qc.getScale() + ", overlap@" + k + " " + (0.0 + common) / Math.max(1, full.size()) + ", moved " + moved + ", max score error " + maxError);
+
+        reader.close();
+    }
+}
@@ -47,6 +47,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.Map.Entry;
 
 import java.io.File;
@@ -62,7 +66,6 @@ import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermDocs;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 
 /**
 
@@ -113,15 +116,15 @@ class ReutersExperiment {
             class2ids.get(1).add(title2docid(reader, s));
         }
 
-        NaiveBayesClassifier nbc = LuceneClassification.learn(reader, class2ids, "lemmas");
+        NaiveBayesClassifier nbc = LuceneClassification.learnBinary(reader, class2ids, "lemmas", 0, new TrainingOptions());
         return nbc;
     }
    
-    public static List<Result> search(IndexReader reader, NaiveBayesClassifier nbc) throws Exception {
+    public static List<Result> search(IndexReader reader, NaiveBayesClassifier nbc, int depth) throws Exception {
         List<Result> ret = new LinkedList<Result> ();
         LuceneClassification classification = new LuceneClassification(reader, nbc, "lemmas", 0);
 
-        LuceneClassification.Iteration iter = classification.steps(null, 50);
+        LuceneClassification.Iteration iter = classification.steps(null, depth);
 
         // System.out.println("Iteration: " + iter.iteration);
         for (Map.Entry<Integer, Double> entry : iter.getId2LogScore().entrySet()) {
@@ -197,109 +200,371 @@ class ReutersExperiment {
         return e;
     }
 
-    public static void main(String[] args) throws Exception {
+    /**
+        One round of the active learning, the number of training examples
+        and the evaluation of the classifier trained from them.
+    */
+    public static class Round {
+        int pos;
+        int neg;
+        Eval eval;
+        // the time of the run until the round was evaluated
+        long elapsed;
+    }
 
-        Random random = new Random();
+    /**
+        The active learning rounds of one tag.
+    */
+    public static class Run {
+        String tag;
+        int restart;
+        List<Round> rounds = new ArrayList<Round>();
+        long elapsed;
+    }
 
-        IndexReader reader;
-        
-        Directory dir = FSDirectory.getDirectory(new File(args[0]));
+    /**
+        Collects the titles of the training documents.
+    */
+    public static List<String> trainingTitles(IndexReader reader) throws Exception {
+        List<String> ret = new ArrayList<String>();
+        for (int i = 0; i < reader.maxDoc(); ++i) {
+            if (reader.isDeleted(i)) continue;
+            Document doc = reader.document(i);
+            Field field = doc.getField("id");
+            String title = field.stringValue();
+            if (title.startsWith("training/")) {
+                ret.add(title);
+            }
+        }
+        return ret;
+    }
 
-        String[] tags = {"earn", "acq", "money-fx", "grain", "crude", "trade", "interest", "ship", "wheat", "corn"};
+    /**
+        Runs the experiment for one tag. The restart 0 trains from all the
+        training data, the other restarts start the active learning from a
+        random positive and a random negative example.
+    */
+    public static Run run(IndexReader reader, List<String> trainingTitles, String tag, int restart, Random random, int depth) throws Exception {
+        long start = System.currentTimeMillis();
 
-        reader = IndexReader.open(dir);
+        Run run = new Run();
+        run.tag = tag;
+        run.restart = restart;
 
-        for (String tag : tags) {
-            Term term = new Term("tag", tag);
-        
-            Set<String> allTrainPoses = new HashSet<String>();
-            Set<String> allTestPoses = new HashSet<String>();
-            TermDocs docs = reader.termDocs(term);
-            while(docs.next()) {
-                int docid = docs.doc();
-                Document doc = reader.document(docid);
-                Field field = doc.getField("id");
-                String title = field.stringValue();
+        Term term = new Term("tag", tag);
     
-                if (title.startsWith("training/")) {
-                    allTrainPoses.add (title);
-                }
-                else if (title.startsWith("test/")) {
-                    allTestPoses.add (title);
-                }
-            }
+        Set<String> allTrainPoses = new HashSet<String>();
+        Set<String> allTestPoses = new HashSet<String>();
+        TermDocs docs = reader.termDocs(term);
+        while(docs.next()) {
+            int docid = docs.doc();
+            Document doc = reader.document(docid);
+            Field field = doc.getField("id");
+            String title = field.stringValue();
 
-            Set<String> trainPoses = new HashSet<String>();
-            Set<String> trainNeges = new HashSet<String>();
+            if (title.startsWith("training/")) {
+                allTrainPoses.add (title);
+            }
+            else if (title.startsWith("test/")) {
+                allTestPoses.add (title);
+            }
+        }
+        docs.close();
 
-            // randomly choose first example
-            //trainPoses.add(new ArrayList<String>(allTrainPoses).get(random.nextInt(allTrainPoses.size())));
-            //trainPoses.add(new ArrayList<String>(allTrainPoses).get(0));
+        Set<String> trainPoses = new HashSet<String>();
+        Set<String> trainNeges = new HashSet<String>();
 
+        if (restart == 0) {
             // put all the training data in there...
             trainPoses.addAll(allTrainPoses);
 
-            for (int i = 0; i < reader.numDocs(); ++i) {
-                Document doc = reader.document(i);
-                Field field = doc.getField("id");
-                String title = field.stringValue();
-                if (title.startsWith("training/") && !trainPoses.contains(title)) {
+            for (String title : trainingTitles) {
+                if (!trainPoses.contains(title)) {
                     trainNeges.add(title);
                 }
             }
+        }
+        else {
+            // randomly choose the first examples
+            List<String> allTrainNeges = new ArrayList<String>();
+            for (String title : trainingTitles) {
+                if (!allTrainPoses.contains(title)) {
+                    allTrainNeges.add(title);
+                }
+            }
+            if (allTrainPoses.isEmpty() || allTrainNeges.isEmpty()) {
+                run.elapsed = System.currentTimeMillis() - start;
+                return run;
+            }
+            trainPoses.add(new ArrayList<String>(allTrainPoses).get(random.nextInt(allTrainPoses.size())));
+            trainNeges.add(allTrainNeges.get(random.nextInt(allTrainNeges.size())));
+        }
 
-            boolean end = false;
-            while (!end) {
-                end = true;
+        boolean end = false;
+        while (!end) {
+            end = true;
 
-                NaiveBayesClassifier nbc = train(reader, trainPoses, trainNeges);
-                List<Result> results = search(reader, nbc);
+            NaiveBayesClassifier nbc = train(reader, trainPoses, trainNeges);
+            List<Result> results = search(reader, nbc, depth);
 
-                Collections.sort(results, new Comparator<Result>() {
-                    public int compare(Result r1, Result r2) {
-                        return Double.compare(r2.score, r1.score);
-                    }
-                });
+            Collections.sort(results, new Comparator<Result>() {
+                public int compare(Result r1, Result r2) {
+                    return Double.compare(r2.score, r1.score);
+                }
+            });
 
-                List<Result> trainResults = new LinkedList<Result>();
-    
-                Eval e = evaluate(results, allTestPoses);
+            List<Result> trainResults = new LinkedList<Result>();
 
-                System.out.println("" + tag + " " + (trainPoses.size() + trainNeges.size()) + " " + trainPoses.size() + " " + trainNeges.size() + " " + e.p + " " + e.r + " " + e.f1);
+            Round round = new Round();
+            round.pos = trainPoses.size();
+            round.neg = trainNeges.size();
+            round.eval = evaluate(results, allTestPoses);
+            round.elapsed = System.currentTimeMillis() - start;
+            run.rounds.add(round);
 
-                for (Result res : results) {
-                    if (trainPoses.contains(res.title)) {
-                //        System.out.println("" + res.title + " score: " + res.score);
-                    }
+            for (Result res : results) {
+                if (trainPoses.contains(res.title) || trainNeges.contains(res.title)) {
+                    continue;
+                }
+                if (res.title.startsWith("training/")) {
+                    trainResults.add (res);
+                }
+            }
 
-                    if (trainPoses.contains(res.title) || trainNeges.contains(res.title)) {
-                        continue;
-                    }
-                    if (res.title.startsWith("training/")) {
-                        trainResults.add (res);
-                    }
+            // strategy to choose the best next training example... we choose closest to zero...
+            Collections.sort(trainResults, new Comparator<Result>() {
+                public int compare(Result r1, Result r2) {
+                    // return Double.compare(Math.abs(r1.score), Math.abs(r2.score));
+                    return - Double.compare(r1.score, r2.score);
                 }
+            });
 
-                // strategy to choose the best next training example... we choose closest to zero...
-                Collections.sort(trainResults, new Comparator<Result>() {
-                    public int compare(Result r1, Result r2) {
-                        // return Double.compare(Math.abs(r1.score), Math.abs(r2.score));
-                        return - Double.compare(r1.score, r2.score);
-                    }
-                });
+            if (trainResults.size() > 0) {
+                Result selected = trainResults.get(0);
+                if (allTrainPoses.contains(selected.title)) {
+                    trainPoses.add (selected.title);
+                }
+                else {
+                    trainNeges.add (selected.title);
+                }
 
-                if (trainResults.size() > 0) {
-                    Result selected = trainResults.get(0);
-                    if (allTrainPoses.contains(selected.title)) {
-                        trainPoses.add (selected.title);
-                    }
-                    else {
-                        trainNeges.add (selected.title);
+                end = false;
+            }
+        }
+
+        run.elapsed = System.currentTimeMillis() - start;
+        return run;
+    }
+
+    /**
+        Collects the documents of the test data.
+    */
+    public static List<Integer> testDocids(IndexReader reader) throws Exception {
+        List<Integer> ret = new ArrayList<Integer>();
+        for (int i = 0; i < reader.maxDoc(); ++i) {
+            if (reader.isDeleted(i)) continue;
+            Document doc = reader.document(i);
+            Field field = doc.getField("id");
+            if (field.stringValue().startsWith("test/")) {
+                ret.add(i);
+            }
+        }
+        return ret;
+    }
+
+    /**
+        Runs the active learning of one tag from a random positive and a
+        random negative example, labelling a batch of documents per round,
+        see {@link BatchActiveLearning}. The whole test data is evaluated.
+    */
+    public static Run runBatch(IndexReader reader, List<String> trainingTitles, List<Integer> testDocids, String tag, int restart, Random random, int depth, int batch, double similarity, ExecutorService executor, int threads) throws Exception {
+        long start = System.currentTimeMillis();
+
+        Run run = new Run();
+        run.tag = tag;
+        run.restart = restart;
+
+        final Set<Integer> positives = new HashSet<Integer>();
+        TermDocs docs = reader.termDocs(new Term("tag", tag));
+        while (docs.next()) {
+            positives.add(docs.doc());
+        }
+        docs.close();
+
+        List<Integer> trainPoses = new ArrayList<Integer>();
+        List<Integer> trainNeges = new ArrayList<Integer>();
+        List<Integer> pool = new ArrayList<Integer>();
+        for (String title : trainingTitles) {
+            int docid = title2docid(reader, title);
+            pool.add(docid);
+            if (positives.contains(docid)) {
+                trainPoses.add(docid);
+            }
+            else {
+                trainNeges.add(docid);
+            }
+        }
+        if (trainPoses.isEmpty() || trainNeges.isEmpty()) {
+            run.elapsed = System.currentTimeMillis() - start;
+            return run;
+        }
+
+        List<Integer> testPoses = new ArrayList<Integer>();
+        for (int docid : testDocids) {
+            if (positives.contains(docid)) {
+                testPoses.add(docid);
+            }
+        }
+
+        BatchActiveLearning learning = new BatchActiveLearning(reader, "lemmas", pool, new BatchActiveLearning.Oracle() {
+            public boolean isPositive(int docid) {
+                return positives.contains(docid);
+            }
+        });
+        // scored by the same number of features as the search of run
+        learning.setBatchSize(batch).setMaxSimilarity(similarity).setSelectedFeatures(depth).setExecutor(executor, threads).setEvaluation(testDocids, testPoses);
+        learning.label(trainPoses.get(random.nextInt(trainPoses.size())), true);
+        learning.label(trainNeges.get(random.nextInt(trainNeges.size())), false);
+
+        for (BatchActiveLearning.Round r : learning.run(-1)) {
+            Round round = new Round();
+            round.pos = r.getPositives();
+            round.neg = r.getNegatives();
+            round.eval = new Eval();
+            round.eval.p = r.getPrecision();
+            round.eval.r = r.getRecall();
+            round.eval.f1 = r.getF1();
+            round.elapsed = r.getTotalNanos() / 1000000;
+            run.rounds.add(round);
+        }
+
+        run.elapsed = System.currentTimeMillis() - start;
+        return run;
+    }
+
+    /**
+        Runs the tags (and the random restarts) in parallel over a shared
+        reader. Prints one line per round,
+
+        {@code tag restart examples positives negatives p r f1 elapsedMs}
+
+        followed by a summary line per run,
+
+        {@code # tag restart rounds p r f1 elapsedMs}
+
+        with the evaluation of the last round.
+
+        {@code java -cp lucene-core-2.9.1.jar:. cz.vutbr.fit.nlp.lc.tools.ReutersExperiment index/ --threads 4 --restarts 2}
+
+        {@code --depth} is the number of features stepped, 50, see {@link ProfileDepth},
+        and of the features scored by in the batch rounds.
+
+        {@code --batch} labels that many documents per round of the restarts
+        by {@link BatchActiveLearning}, the pool scored by {@code --score-threads}
+        and the documents with the Jaccard similarity to one of the batch of
+        at least {@code --similarity}, 0.9, left for the next rounds.
+    */
+    public static void main(String[] args) throws Exception {
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        int restarts = 0;
+        long seed = System.currentTimeMillis();
+        int depth = 50;
+        int batch = 0;
+        double similarity = 0.9;
+        int scoreThreads = 1;
+        DirectoryType directoryType = DirectoryType.FS;
+
+        for (int i = 1; i + 1 < args.length; ++i) {
+            if ("--directory".equals(args[i])) {
+                directoryType = DirectoryType.parse(args[++i]);
+            }
+            else if ("--threads".equals(args[i])) {
+                threads = Integer.parseInt(args[++i]);
+            }
+            else if ("--restarts".equals(args[i])) {
+                restarts = Integer.parseInt(args[++i]);
+            }
+            else if ("--seed".equals(args[i])) {
+                seed = Long.parseLong(args[++i]);
+            }
+            else if ("--depth".equals(args[i])) {
+                depth = Integer.parseInt(args[++i]);
+            }
+            else if ("--batch".equals(args[i])) {
+                batch = Integer.parseInt(args[++i]);
+            }
+            else if ("--similarity".equals(args[i])) {
+                similarity = Double.parseDouble(args[++i]);
+            }
+            else if ("--score-threads".equals(args[i])) {
+                scoreThreads = Integer.parseInt(args[++i]);
+            }
+        }
+
+        final IndexReader reader;
+        
+        Directory dir = directoryType.open(new File(args[0]));
+
+        String[] tags = {"earn", "acq", "money-fx", "grain", "crude", "trade", "interest", "ship", "wheat", "corn"};
+
+        reader = IndexReader.open(dir, true);
+
+        final List<String> trainingTitles = trainingTitles(reader);
+        final List<Integer> testDocids = batch > 0 ? testDocids(reader) : null;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final ExecutorService scoreExecutor = scoreThreads > 1 ? Executors.newFixedThreadPool(scoreThreads) : null;
+        List<Future<Run>> futures = new ArrayList<Future<Run>>();
+
+        long start = System.currentTimeMillis();
+
+        for (final String tag : tags) {
+            for (int restart = 0; restart <= restarts; ++restart) {
+                final int r = restart;
+                final int d = depth;
+                final int b = batch;
+                final double s = similarity;
+                final int st = scoreThreads;
+                final Random random = new Random(seed + 31 * tag.hashCode() + restart);
+                futures.add(executor.submit(new Callable<Run>() {
+                    public Run call() throws Exception {
+                        if (b > 0 && r > 0) {
+                            return runBatch(reader, trainingTitles, testDocids, tag, r, random, d, b, s, scoreExecutor, st);
+                        }
+                        return run(reader, trainingTitles, tag, r, random, d);
                     }
+                }));
+            }
+        }
 
-                    end = false;
-                }
+        List<Run> runs = new ArrayList<Run>();
+        try {
+            for (Future<Run> future : futures) {
+                runs.add(future.get());
+            }
+        }
+        finally {
+            executor.shutdown();
+            if (scoreExecutor != null) {
+                scoreExecutor.shutdown();
+            }
+        }
+
+        for (Run run : runs) {
+            for (Round round : run.rounds) {
+                Eval e = round.eval;
+                System.out.println("" + run.tag + " " + run.restart + " " + (round.pos + round.neg) + " " + round.pos + " " + round.neg + " " + e.p + " " + e.r + " " + e.f1 + " " + round.elapsed);
             }
         }
+
+        for (Run run : runs) {
+            Eval e = run.rounds.isEmpty() ? new Eval() : run.rounds.get(run.rounds.size() - 1).eval;
+            System.out.println("# " + run.tag + " " + run.restart + " " + run.rounds.size() + " " + e.p + " " + e.r + " " + e.f1 + " " + run.elapsed);
+        }
+
+        System.out.println("# total " + (System.currentTimeMillis() - start));
+
+        reader.close();
     }
 }
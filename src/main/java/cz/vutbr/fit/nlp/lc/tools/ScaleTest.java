@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc.tools;
+
+import cz.vutbr.fit.nlp.lc.*;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.OpenBitSet;
+
+/**
+ *  Scale test on synthetic corpora. For each of the given collection sizes
+ *  the tool generates a corpus with {@link SyntheticCorpus}, indexes it,
+ *  trains a classifier for {@code class0} from a few labelled documents and
+ *  steps the best features, printing one tab delimited line per size:
+ *
+ *  {@code documents indexMs learnMs stepMs postings accumulator peakHeapMB p@k r@k}
+ *
+ *  where the postings are the number of postings read while stepping, the
+ *  accumulator is the number of scored documents and p@k / r@k are the
+ *  precision and recall of the top k documents (not counting the training
+ *  ones) against the generated labels. The recall is of the relevant
+ *  documents the top k can hold, the hits divided by the smaller of k and
+ *  the number of the relevant documents.
+ *
+ *  {@code java -cp lucene-core-2.9.1.jar:. cz.vutbr.fit.nlp.lc.tools.ScaleTest --dir /tmp/scale --sizes 10000,100000,1000000}
+ *
+ *  Other options are {@code --features} (number of features to step, 50),
+ *  {@code --k} (100), {@code --positives} (20), {@code --negatives} (200),
+ *  {@code --accumulator} ({@code map}, {@code persistent}, {@code direct} or {@code mapped}, see
+ *  {@link Search}) and the options of {@link SyntheticCorpus}.
+ *
+ *  @author Marek Schmidt
+ */
+class ScaleTest {
+
+    public static class Result {
+        public double score;
+        public int docn;
+
+        public Result(int docn, double score) {
+            this.docn = docn;
+            this.score = score;
+        }
+    }
+
+    static void generate(Directory dir, SyntheticCorpus corpus, long documents) throws Exception {
+        IndexWriter writer = new IndexWriter(dir, new WhitespaceAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+        writer.setRAMBufferSizeMB(64.0);
+
+        corpus.init();
+        for (long i = 0; i < documents; ++i) {
+            writer.addDocument(Index.toDocument(corpus.next()));
+        }
+
+        writer.optimize();
+        writer.close();
+    }
+
+    static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        String path = "scale";
+        String sizes = "10000,100000,1000000";
+        int features = 50;
+        int k = 100;
+        int positives = 20;
+        int negatives = 200;
+        String accumulator = "map";
+
+        for (int i = 0; i + 1 < args.length; ++i) {
+            if ("--dir".equals(args[i])) {
+                path = args[i + 1];
+            }
+            else if ("--sizes".equals(args[i])) {
+                sizes = args[i + 1];
+            }
+            else if ("--features".equals(args[i])) {
+                features = Integer.parseInt(args[i + 1]);
+            }
+            else if ("--k".equals(args[i])) {
+                k = Integer.parseInt(args[i + 1]);
+            }
+            else if ("--positives".equals(args[i])) {
+                positives = Integer.parseInt(args[i + 1]);
+            }
+            else if ("--negatives".equals(args[i])) {
+                negatives = Integer.parseInt(args[i + 1]);
+            }
+            else if ("--accumulator".equals(args[i])) {
+                accumulator = args[i + 1];
+            }
+        }
+
+        SyntheticCorpus corpus = SyntheticCorpus.parse(args);
+
+        System.out.println("documents\tindexMs\tlearnMs\tstepMs\tpostings\taccumulator\tpeakHeapMB\tp@" + k + "\tr@" + k);
+
+        for (String size : sizes.split(",")) {
+            long documents = Long.parseLong(size.trim());
+
+            Directory dir = FSDirectory.open(new File(path, "" + documents));
+
+            long start = System.currentTimeMillis();
+            generate(dir, corpus, documents);
+            long indexMs = System.currentTimeMillis() - start;
+
+            resetPeakHeap();
+
+            IndexReader reader = IndexReader.open(dir, true);
+
+            // the first documents of the target class are the positives,
+            // the first documents of any other class the negatives
+            Map<Integer, Set<Integer>> class2ids = new HashMap<Integer, Set<Integer>>();
+            class2ids.put(0, new HashSet<Integer>());
+            class2ids.put(1, new HashSet<Integer>());
+
+            // one bit per document, the relevant ones are a large share of the corpus
+            OpenBitSet relevant = new OpenBitSet(reader.maxDoc());
+            long relevantCount = 0;
+            TermDocs docs = reader.termDocs(new Term("tag", SyntheticCorpus.tag(0)));
+            while (docs.next()) {
+                if (class2ids.get(0).size() < positives) {
+                    class2ids.get(0).add(docs.doc());
+                }
+                else {
+                    relevant.fastSet(docs.doc());
+                    relevantCount++;
+                }
+            }
+            docs.close();
+
+            for (int i = 0; i < reader.maxDoc() && class2ids.get(1).size() < negatives; ++i) {
+                if (!reader.isDeleted(i) && !class2ids.get(0).contains(i) && !relevant.fastGet(i)) {
+                    class2ids.get(1).add(i);
+                }
+            }
+
+            start = System.currentTimeMillis();
+            NaiveBayesClassifier nbc = LuceneClassification.learnBinary(reader, class2ids, "lemmas", 0, new TrainingOptions());
+            long learnMs = System.currentTimeMillis() - start;
+
+            LuceneClassification classification = new LuceneClassification(reader, nbc, "lemmas", 0);
+            ClassificationMetrics metrics = new ClassificationMetrics();
+            classification.addListener(metrics);
+            classification.setAccumulatorFactory(Search.accumulatorFactory(accumulator));
+
+            start = System.currentTimeMillis();
+            LuceneClassification.Iteration iter = classification.steps(null, features);
+            long stepMs = System.currentTimeMillis() - start;
+            long postings = metrics.getPostingsRead();
+
+            PriorityQueue<Result> pq = new PriorityQueue<Result>(k, new Comparator<Result>() {
+                public int compare(Result r1, Result r2) {
+                    return Double.compare(r1.score, r2.score);
+                }
+            });
+
+            int scored = 0;
+            if (iter != null) {
+                scored = iter.getScores().size();
+                ScoreAccumulator.Cursor cursor = iter.getScores().cursor();
+                while (cursor.next()) {
+                    int doc = cursor.doc();
+                    double score = cursor.score();
+                    if (class2ids.get(0).contains(doc) || class2ids.get(1).contains(doc)) {
+                        continue;
+                    }
+
+                    if (pq.size() < k) {
+                        pq.add(new Result(doc, score));
+                    }
+                    else if (pq.peek().score < score) {
+                        pq.poll();
+                        pq.add(new Result(doc, score));
+                    }
+                }
+            }
+
+            int hits = 0;
+            for (Result r : pq) {
+                if (relevant.fastGet(r.docn)) {
+                    hits++;
+                }
+            }
+
+            double p = (0.0 + hits) / k;
+            double r = relevantCount == 0 ? 0.0 : (0.0 + hits) / Math.min(k, relevantCount);
+
+            System.out.println("" + documents + "\t" + indexMs + "\t" + learnMs + "\t" + stepMs + "\t" + postings + "\t" + scored + "\t" + (peakHeap() / (1024 * 1024)) + "\t" + p + "\t" + r);
+
+            if (iter != null) {
+                iter.release();
+            }
+            reader.close();
+            dir.close();
+        }
+    }
+}
@@ -52,6 +52,12 @@ import java.util.Map.Entry;
 import java.io.File;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.apache.lucene.analysis.WhitespaceAnalyzer;
 import org.apache.lucene.analysis.Token;
 import org.apache.lucene.analysis.TokenStream;
@@ -61,8 +67,9 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.search.QueryWrapperFilter;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 
 
 /**
@@ -85,6 +92,30 @@ import org.apache.lucene.store.FSDirectory;
  * To run, you also need to specify path to the index:
  *
  * {@code java -cp lucene-core-2.9.1.jar:. cz.vutbr.fit.nlp.lc.tools.Search index/}
+ *
+ * Add {@code --csv metrics.csv} to write the cost of the training and of each
+ * step to a file, or {@code --jmx} to expose them as a
+ * {@link ClassificationMetricsMBean}. With {@code --budget n} at most n documents
+ * are kept scored, see {@link LuceneClassification#setAccumulatorBudget}, and
+ * {@code --accumulator direct} or {@code --accumulator mapped} keeps the scores
+ * off the heap, see {@link DirectScoreAccumulator}, {@code --accumulator persistent}
+ * keeps a snapshot of them for every step, see {@link PersistentScoreAccumulator},
+ * the default with {@code --checkpoint}, a mutable map otherwise. {@code --max-features n}
+ * keeps only the n best features of the model, see
+ * {@link TrainingOptions#setMaxFeatures}. {@code --negatives stats} or
+ * {@code --negatives sample} estimates the counts of the negatives instead of
+ * reading them, see {@link TrainingOptions.NegativeEstimate}. {@code --deadline ms}
+ * and {@code --postings n} stop the steps earlier, see {@link AnytimeClassification}.
+ * {@code --checkpoint file} checkpoints the steps every
+ * {@code --checkpoint-interval ms} (60000) and resumes them from the file if it
+ * was written for the same model and index, see {@link Checkpointer}.
+ * {@code --directory fs|mmap|nio|ram} chooses how the index is opened, see
+ * {@link DirectoryType}, and {@code --warm n} reads the postings of the n best
+ * features of the model before the steps, see {@link IndexWarmer}.
+ * {@code --depth n} steps n features (50), see {@link ProfileDepth}.
+ * {@code --tag t} scores only the documents of the tag, see
+ * {@link LuceneClassification#setFilter}, the training examples are never
+ * scored.
  * 
  * @author Marek Schmidt
  */
@@ -100,25 +131,36 @@ class Search {
         }
     }
 
-    public static void main(String[] args) throws Exception {
-
-        IndexReader reader;
-        
-        Directory dir = FSDirectory.getDirectory(new File(args[0]));
-                
-        reader = IndexReader.open(dir);
-
-        List<String> poses = new LinkedList<String>();
-        List<String> neges = new LinkedList<String>();
+    static ScoreAccumulator.Factory accumulatorFactory(String name) {
+        if ("direct".equals(name)) {
+            return DirectScoreAccumulator.direct();
+        }
+        else if ("mapped".equals(name)) {
+            return DirectScoreAccumulator.mapped(null);
+        }
+        else if ("persistent".equals(name)) {
+            return PersistentScoreAccumulator.FACTORY;
+        }
+        return MapScoreAccumulator.FACTORY;
+    }
 
+    /**
+     * Reads the training examples in the input format, up to the end of the
+     * input or an empty line.
+     *
+     * @param poses The ids of the positive examples are added here.
+     * @param neges The ids of the negative examples are added here.
+     * @param log The docids found are logged here, may be null.
+     * @return The docids of the positive examples as class 0 and of the negative ones as class 1.
+     */
+    static Map<Integer, Set<Integer>> readTraining(IndexReader reader, BufferedReader in, List<String> poses, List<String> neges, PrintStream log) throws IOException {
         Map<Integer, Set<Integer>> class2ids = new HashMap<Integer, Set<Integer>>();
 
         class2ids.put(0, new HashSet<Integer>());
         class2ids.put(1, new HashSet<Integer>());
 
-        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
         String line;
-        while( (line = in.readLine()) != null) {
+        while( (line = in.readLine()) != null && line.length() > 0) {
             boolean pos;
             if ("+".equals(line.substring(0, 1))) {
                 pos = true;
@@ -133,10 +175,18 @@ class Search {
             String title = line.substring(1);
             Term term = new Term("id", title);
             TermDocs docs = reader.termDocs(term);
-            docs.next();
+            if (!docs.next()) {
+                if (log != null) {
+                    log.println("term " + title + ": not found");
+                }
+                continue;
+            }
             int docid = docs.doc();
+            docs.close();
 
-            System.err.println("term " + title + ": docid: " + docid);
+            if (log != null) {
+                log.println("term " + title + ": docid: " + docid);
+            }
 
             if (pos) {
                 poses.add (title);
@@ -148,64 +198,75 @@ class Search {
             }
         }
 
-        NaiveBayesClassifier nbc;
-        nbc = LuceneClassification.learn(reader, class2ids, "lemmas");
-
-        // System.out.println(nbc.toString());
-        
-        LuceneClassification classification = new LuceneClassification(reader, nbc, "lemmas", 0);
-        LuceneClassification.Iteration iter = null;// classification.steps(null, 50);
-
-        while(classification.hasNext(iter)) {
-            iter = classification.step(iter);
-
-            System.err.println("Iteration: " + iter.getIteration() + ", feature: " + classification.getFeatures().get(iter.getIteration()) + " ll: " + nbc.loglikelihoods.get(0).get(classification.getFeatures().get(iter.getIteration())));
-
-            // We fix the number of features to 50, which has quite acceptable
-            // results in both speed and classification performance.
-            if (iter.getIteration() >= 50) break;
-        }
-
+        return class2ids;
+    }
 
-        PriorityQueue<Result> pq = new PriorityQueue(20, new Comparator<Result>() {
+    /**
+     * Collects the best n documents that are not in the training set.
+     *
+     * @return The results, note, in the wrong order (the best one last).
+     */
+    static List<Result> top(LuceneClassification.Iteration iter, Map<Integer, Set<Integer>> class2ids, int n) {
+        PriorityQueue<Result> pq = new PriorityQueue<Result>(n, new Comparator<Result>() {
             public int compare(Result r1, Result r2) {
                 return Double.compare(r1.score, r2.score);
             }
         });
 
-        for (Map.Entry<Integer, Double> entry : iter.getId2LogScore().entrySet()) {
+        ScoreAccumulator.Cursor cursor = iter.getScores().cursor();
+        while (cursor.next()) {
 
-            if (class2ids.get(0).contains(entry.getKey()) || class2ids.get(1).contains(entry.getKey())) {
+            if (class2ids.get(0).contains(cursor.doc()) || class2ids.get(1).contains(cursor.doc())) {
                 continue;
             }
 
-            //Document doc = reader.document(entry.getKey());
-            //Field field = doc.getField("id");
-                //TokenStream stream = field.tokenStreamValue();
-            //String id = field.stringValue();
-
-            if (pq.size() < 20) {
-                pq.add(new Result(entry.getKey(), entry.getValue()));
+            if (pq.size() < n) {
+                pq.add(new Result(cursor.doc(), cursor.score()));
             }
             else {
-                if (pq.peek().score < entry.getValue()) {
+                if (pq.peek().score < cursor.score()) {
                     pq.poll();
-                    pq.add(new Result(entry.getKey(), entry.getValue()));
+                    pq.add(new Result(cursor.doc(), cursor.score()));
                 }
             }
         }
 
-        // note, this will print the best results in wrong order... 
+        List<Result> ret = new ArrayList<Result>(pq.size());
         while (pq.size() > 0) {
-            Result r = pq.poll();
+            ret.add(pq.poll());
+        }
+        return ret;
+    }
+
+    /**
+     * @return The n best results of the session not in the training set, the worst first, as {@link #top(LuceneClassification.Iteration, Map, int)}.
+     */
+    static List<Result> top(ClassificationSession session, Map<Integer, Set<Integer>> class2ids, int n) {
+        int k = n + class2ids.get(0).size() + class2ids.get(1).size();
+        int[] docs = new int[k];
+        double[] scores = new double[k];
+        int m = session.top(k, docs, scores);
+
+        LinkedList<Result> ret = new LinkedList<Result>();
+        for (int i = 0; i < m && ret.size() < n; ++i) {
+            if (class2ids.get(0).contains(docs[i]) || class2ids.get(1).contains(docs[i])) {
+                continue;
+            }
+            ret.addFirst(new Result(docs[i], scores[i]));
+        }
+        return ret;
+    }
 
+    /**
+     * Prints the results in the output format.
+     */
+    static void print(IndexReader reader, List<Result> results, PrintWriter out) throws IOException {
+        for (Result r : results) {
             Document doc = reader.document(r.docn);
             Field field = doc.getField("id");
-            // TokenStream stream = field.tokenStreamValue();
             String id = field.stringValue();
 
             field = doc.getField("lemmas");
-            //stream = field.tokenStreamValue();
             String lemmas = field.stringValue();
 
             field = doc.getField("title");
@@ -218,7 +279,203 @@ class Search {
                 lemmas = lemmas.substring(0, 75) + "...";
             }
 
-            System.out.println("" + r.score + "\t" + id + "\t" + title + "\t" + lemmas);
+            out.println("" + r.score + "\t" + id + "\t" + title + "\t" + lemmas);
+        }
+    }
+
+    /**
+        @return the negative estimate by its name, exact, stats or sample.
+    */
+    static TrainingOptions.NegativeEstimate negativeEstimate(String name) {
+        if ("exact".equals(name)) return TrainingOptions.NegativeEstimate.EXACT;
+        if ("stats".equals(name)) return TrainingOptions.NegativeEstimate.COLLECTION_STATISTICS;
+        if ("sample".equals(name)) return TrainingOptions.NegativeEstimate.RESERVOIR_SAMPLE;
+        throw new IllegalArgumentException("Unknown negative estimate " + name);
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        IndexReader reader;
+        
+        final List<ClassificationListener> listeners = new LinkedList<ClassificationListener>();
+        CsvClassificationListener csv = null;
+        int budget = -1;
+        int maxFeatures = -1;
+        long deadline = -1;
+        long postingsBudget = -1;
+        File checkpoint = null;
+        long checkpointInterval = 60000;
+        int warm = 0;
+        int depth = 50;
+        String tag = null;
+        DirectoryType directoryType = DirectoryType.FS;
+        TrainingOptions.NegativeEstimate negativeEstimate = TrainingOptions.NegativeEstimate.EXACT;
+        ScoreAccumulator.Factory accumulatorFactory = null;
+        for (int i = 1; i < args.length; ++i) {
+            if ("--csv".equals(args[i]) && i + 1 < args.length) {
+                csv = new CsvClassificationListener(new File(args[++i]));
+                listeners.add(csv);
+            }
+            else if ("--budget".equals(args[i]) && i + 1 < args.length) {
+                budget = Integer.parseInt(args[++i]);
+            }
+            else if ("--max-features".equals(args[i]) && i + 1 < args.length) {
+                maxFeatures = Integer.parseInt(args[++i]);
+            }
+            else if ("--deadline".equals(args[i]) && i + 1 < args.length) {
+                deadline = Long.parseLong(args[++i]);
+            }
+            else if ("--postings".equals(args[i]) && i + 1 < args.length) {
+                postingsBudget = Long.parseLong(args[++i]);
+            }
+            else if ("--checkpoint".equals(args[i]) && i + 1 < args.length) {
+                checkpoint = new File(args[++i]);
+            }
+            else if ("--directory".equals(args[i]) && i + 1 < args.length) {
+                directoryType = DirectoryType.parse(args[++i]);
+            }
+            else if ("--depth".equals(args[i]) && i + 1 < args.length) {
+                depth = Integer.parseInt(args[++i]);
+            }
+            else if ("--tag".equals(args[i]) && i + 1 < args.length) {
+                tag = args[++i];
+            }
+            else if ("--warm".equals(args[i]) && i + 1 < args.length) {
+                warm = Integer.parseInt(args[++i]);
+            }
+            else if ("--checkpoint-interval".equals(args[i]) && i + 1 < args.length) {
+                checkpointInterval = Long.parseLong(args[++i]);
+            }
+            else if ("--negatives".equals(args[i]) && i + 1 < args.length) {
+                negativeEstimate = negativeEstimate(args[++i]);
+            }
+            else if ("--accumulator".equals(args[i]) && i + 1 < args.length) {
+                accumulatorFactory = accumulatorFactory(args[++i]);
+            }
+            else if ("--jmx".equals(args[i])) {
+                ClassificationMetrics metrics = new ClassificationMetrics();
+                metrics.register("search");
+                listeners.add(metrics);
+            }
+        }
+
+        Directory dir = directoryType.open(new File(args[0]));
+        reader = IndexReader.open(dir);
+
+        ClassificationListener listener = null;
+        if (!listeners.isEmpty()) {
+            listener = new ClassificationListener() {
+                public void stepFinished(StepStatistics statistics) {
+                    for (ClassificationListener l : listeners) {
+                        l.stepFinished(statistics);
+                    }
+                }
+
+                public void learnFinished(LearnStatistics statistics) {
+                    for (ClassificationListener l : listeners) {
+                        l.learnFinished(statistics);
+                    }
+                }
+            };
+        }
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+        Map<Integer, Set<Integer>> class2ids = readTraining(reader, in, new LinkedList<String>(), new LinkedList<String>(), System.err);
+
+        NaiveBayesClassifier nbc;
+        nbc = LuceneClassification.learnBinary(reader, class2ids, "lemmas", 0, new TrainingOptions().setListener(listener).setMaxFeatures(maxFeatures).setNegativeEstimate(negativeEstimate, 1));
+
+        // System.out.println(nbc.toString());
+
+        if (warm > 0) {
+            IndexWarmer warmer = new IndexWarmer("lemmas").addFeatures(nbc, 0, warm);
+            warmer.warm(reader);
+            System.err.println("Warmed " + warmer.getPostingsRead() + " postings in " + warmer.getElapsedNanos() / 1000000 + " ms");
+        }
+        
+        LuceneClassification classification = new LuceneClassification(reader, nbc, "lemmas", 0);
+        if (listener != null) {
+            classification.addListener(listener);
+        }
+        if (accumulatorFactory == null) {
+            // the checkpoints write the snapshots of the scores while the steps go on
+            accumulatorFactory = checkpoint != null ? PersistentScoreAccumulator.FACTORY : MapScoreAccumulator.FACTORY;
+        }
+        classification.setAccumulatorFactory(accumulatorFactory);
+        List<Integer> examples = new ArrayList<Integer>(class2ids.get(0));
+        examples.addAll(class2ids.get(1));
+        classification.setExcluded(examples);
+        if (tag != null) {
+            classification.setFilter(new QueryWrapperFilter(new TermQuery(new Term("tag", tag))));
+        }
+        if (budget >= 0) {
+            classification.setAccumulatorBudget(budget, 20);
+        }
+        final LuceneClassification c = classification;
+        final NaiveBayesClassifier model = nbc;
+        AnytimeClassification anytime = new AnytimeClassification(classification);
+
+        // By default we fix the number of features to 50 (and the one more), which has quite acceptable
+        // results in both speed and classification performance, see ProfileDepth.
+        anytime.setMaxSteps(depth + 1);
+        if (deadline >= 0) {
+            anytime.setDeadline(deadline, TimeUnit.MILLISECONDS);
+        }
+        if (postingsBudget >= 0) {
+            anytime.setPostingsBudget(postingsBudget);
+        }
+        anytime.setSnapshotListener(0, new AnytimeClassification.SnapshotListener() {
+            public void snapshot(LuceneClassification.Iteration iter, List<ScoredDocument> top) {
+                String feature = c.getFeatures().get(iter.getIteration());
+                System.err.println("Iteration: " + iter.getIteration() + ", feature: " + feature + " ll: " + model.loglikelihoods.get(0).get(feature));
+            }
+        });
+
+        LuceneClassification.Iteration resumed = null;
+        ExecutorService checkpointExecutor = null;
+        Checkpointer checkpointer = null;
+        if (checkpoint != null) {
+            checkpointExecutor = Executors.newSingleThreadExecutor();
+            checkpointer = new Checkpointer(classification, checkpoint, checkpointExecutor);
+            checkpointer.setInterval(checkpointInterval, TimeUnit.MILLISECONDS);
+            try {
+                resumed = checkpointer.resume();
+                if (resumed != null) {
+                    System.err.println("Resumed after iteration " + resumed.getIteration());
+                }
+            }
+            catch (IOException e) {
+                System.err.println("Not resuming " + checkpoint + ": " + e.getMessage());
+            }
+            anytime.setCheckpointer(checkpointer);
+        }
+
+        // steps in this thread
+        LuceneClassification.Iteration iter = anytime.start(new Executor() {
+            public void execute(Runnable command) {
+                command.run();
+            }
+        }, resumed).get();
+        System.err.println("Stopped: " + anytime.getStopReason() + ", postings: " + anytime.getPostingsRead());
+
+        if (checkpointer != null) {
+            checkpointer.close();
+            checkpointExecutor.shutdown();
+        }
+
+        if (iter == null) {
+            reader.close();
+            return;
+        }
+
+        PrintWriter out = new PrintWriter(System.out);
+        print(reader, top(iter, class2ids, 20), out);
+        out.flush();
+        
+        iter.release();
+
+        if (csv != null) {
+            csv.close();
         }
         
         reader.close();
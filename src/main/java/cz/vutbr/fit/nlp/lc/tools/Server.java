@@ -0,0 +1,410 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc.tools;
+
+import cz.vutbr.fit.nlp.lc.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.Directory;
+
+/**
+ * A long running {@link Search}. The server keeps the index open (reopening
+ * it when it changes) and the classifiers trained recently, so a search only
+ * costs the stepping itself. The classifiers are trained from the counts of
+ * the index, when it is reopened they are dropped and trained again from the
+ * new one on the next request.
+ *
+ * It listens on the loopback interface only. A request is the input of
+ * {@link Search} terminated by an empty line, the response is the output of
+ * {@link Search} terminated by an empty line, or a single line starting with
+ * {@code error} and the empty line. A connection may send any number of
+ * requests.
+ *
+ * {@code java -cp lucene-core-2.9.1.jar:. cz.vutbr.fit.nlp.lc.tools.Server index/ --port 7070 --threads 8}
+ *
+ * {@code printf '+42\n+128\n-74\n\n' | nc localhost 7070}
+ *
+ * Each connection is read by a thread of its own, the requests are run on
+ * the pool of {@code --threads} threads, so the idle connections do not
+ * hold the threads of the pool. At most {@code --connections} (64)
+ * connections are open at once, the others get an error and are closed,
+ * and a connection idle for {@code --idle-timeout} milliseconds (30000) is
+ * closed.
+ *
+ * Other options are {@code --models} (the number of classifiers cached, 100),
+ * {@code --depth n} (the number of features stepped, 50, as {@link Search})
+ * and {@code --reopen-interval} (how often to check the index for changes in
+ * milliseconds, 1000). {@code --directory fs|mmap|nio|ram} chooses how the
+ * index is opened, see {@link DirectoryType}, and {@code --warm n} reads the
+ * postings of the n most frequent terms whenever the index is (re)opened, see
+ * {@link IndexWarmer}.
+ *
+ * @author Marek Schmidt
+ */
+class Server {
+
+    private ReaderManager readers;
+    // the classifiers trained from the index of the version
+    private Map<String, ClassificationEngine> models;
+    private long version = -1;
+    private int threads;
+    private int depth;
+    // the number of the classifiers trained
+    private AtomicInteger trained = new AtomicInteger();
+
+    public Server(ReaderManager readers, final int cachedModels, int threads, int depth) {
+        this.readers = readers;
+        this.threads = threads;
+        this.depth = depth;
+        this.models = Collections.synchronizedMap(new LinkedHashMap<String, ClassificationEngine>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, ClassificationEngine> eldest) {
+                if (size() > cachedModels) {
+                    eldest.getValue().close();
+                    return true;
+                }
+                return false;
+            }
+        });
+    }
+
+    /**
+     * The cache key of a training set, the hash of its sorted examples.
+     */
+    static String key(List<String> poses, List<String> neges) {
+        List<String> examples = new ArrayList<String>(poses.size() + neges.size());
+        for (String pos : poses) {
+            examples.add("+" + pos);
+        }
+        for (String neg : neges) {
+            examples.add("-" + neg);
+        }
+        Collections.sort(examples);
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (String example : examples) {
+                digest.update(example.getBytes("UTF-8"));
+                digest.update((byte) '\n');
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            }
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        catch (java.io.UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the number of the classifiers trained so far, the other requests used the cached ones.
+     */
+    int getTrained() {
+        return trained.get();
+    }
+
+    /**
+     * Reads the lines of one request up to an empty line.
+     * @return the request, null at the end of the input.
+     */
+    static String readRequest(BufferedReader in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        String line = in.readLine();
+        if (line == null) {
+            return null;
+        }
+        while (line != null && line.length() > 0) {
+            sb.append(line).append('\n');
+            line = in.readLine();
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Handles one request.
+     * @return the response, terminated by the empty line.
+     */
+    String handle(String request) throws IOException {
+        StringWriter response = new StringWriter();
+        PrintWriter out = new PrintWriter(response);
+        handle(new BufferedReader(new StringReader(request)), out);
+        out.flush();
+        return response.toString();
+    }
+
+    /**
+     * Handles one request read from the input.
+     */
+    void handle(BufferedReader in, PrintWriter out) throws IOException {
+        IndexReader reader = readers.acquire();
+        try {
+            List<String> poses = new LinkedList<String>();
+            List<String> neges = new LinkedList<String>();
+            Map<Integer, Set<Integer>> class2ids = Search.readTraining(reader, in, poses, neges, null);
+
+            if (class2ids.get(0).isEmpty()) {
+                out.println("error\tno positive examples");
+                out.println();
+                return;
+            }
+
+            String key = key(poses, neges);
+            long readerVersion = reader.getVersion();
+            ClassificationEngine engine = null;
+            boolean cached;
+            synchronized (models) {
+                if (readerVersion > version) {
+                    // reopened, the classifiers of the old index are dropped
+                    for (ClassificationEngine old : models.values()) {
+                        old.close();
+                    }
+                    models.clear();
+                    version = readerVersion;
+                }
+                // a request still reading the replaced index is not cached
+                cached = readerVersion == version;
+                if (cached) {
+                    engine = models.get(key);
+                }
+            }
+
+            if (engine == null) {
+                NaiveBayesClassifier nbc = LuceneClassification.learnBinary(reader, class2ids, "lemmas", 0, new TrainingOptions());
+                trained.incrementAndGet();
+                engine = new ClassificationEngine(reader, nbc, "lemmas", 0, threads);
+                synchronized (models) {
+                    cached = cached && readerVersion == version;
+                    if (cached) {
+                        ClassificationEngine replaced = models.put(key, engine);
+                        if (replaced != null) {
+                            replaced.close();
+                        }
+                    }
+                }
+            }
+
+            ClassificationSession session = engine.openSession();
+            try {
+                // the same features (and the one more) as Search
+                session.steps(depth + 1);
+                Search.print(reader, Search.top(session, class2ids, 20), out);
+            }
+            finally {
+                session.close();
+                if (!cached) {
+                    engine.close();
+                }
+            }
+            out.println();
+        }
+        catch (RuntimeException e) {
+            out.println("error\t" + e);
+            out.println();
+        }
+        finally {
+            out.flush();
+            readers.release(reader);
+        }
+    }
+
+    /**
+     * Reads the requests of the connection and runs each one on the pool.
+     * @param idleTimeout The milliseconds to wait for a request before the connection is closed, 0 for ever.
+     */
+    void serve(final Socket socket, ExecutorService pool, int idleTimeout) {
+        try {
+            socket.setSoTimeout(idleTimeout);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+            String request;
+            while ((request = readRequest(in)) != null) {
+                final String r = request;
+                Future<String> response = pool.submit(new Callable<String>() {
+                    public String call() throws IOException {
+                        return handle(r);
+                    }
+                });
+                try {
+                    out.print(response.get());
+                }
+                catch (ExecutionException e) {
+                    out.println("error\t" + e.getCause());
+                    out.println();
+                }
+                out.flush();
+            }
+        }
+        catch (SocketTimeoutException e) {
+            // idle for too long
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (IOException e) {
+            System.err.println("Connection failed: " + e);
+        }
+        finally {
+            try {
+                socket.close();
+            }
+            catch (IOException e) {
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = 7070;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int cachedModels = 100;
+        int depth = 50;
+        int maxConnections = 64;
+        int idleTimeout = 30000;
+        long reopenInterval = 1000;
+        DirectoryType directoryType = DirectoryType.FS;
+        int warm = 0;
+
+        for (int i = 1; i + 1 < args.length; ++i) {
+            if ("--port".equals(args[i])) {
+                port = Integer.parseInt(args[++i]);
+            }
+            else if ("--threads".equals(args[i])) {
+                threads = Integer.parseInt(args[++i]);
+            }
+            else if ("--models".equals(args[i])) {
+                cachedModels = Integer.parseInt(args[++i]);
+            }
+            else if ("--depth".equals(args[i])) {
+                depth = Integer.parseInt(args[++i]);
+            }
+            else if ("--connections".equals(args[i])) {
+                maxConnections = Integer.parseInt(args[++i]);
+            }
+            else if ("--idle-timeout".equals(args[i])) {
+                idleTimeout = Integer.parseInt(args[++i]);
+            }
+            else if ("--reopen-interval".equals(args[i])) {
+                reopenInterval = Long.parseLong(args[++i]);
+            }
+            else if ("--directory".equals(args[i])) {
+                directoryType = DirectoryType.parse(args[++i]);
+            }
+            else if ("--warm".equals(args[i])) {
+                warm = Integer.parseInt(args[++i]);
+            }
+        }
+
+        Directory dir = directoryType.open(new File(args[0]));
+        ReaderManager readers;
+        if (warm > 0) {
+            IndexWarmer warmer = new IndexWarmer("lemmas").setFrequentTerms(warm);
+            readers = new ReaderManager(dir, reopenInterval, warmer);
+            System.err.println("Warmed " + warmer.getPostingsRead() + " postings in " + warmer.getElapsedNanos() / 1000000 + " ms");
+        }
+        else {
+            readers = new ReaderManager(dir, reopenInterval);
+        }
+        final Server server = new Server(readers, cachedModels, threads, depth);
+
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ExecutorService connections = Executors.newCachedThreadPool();
+        final Semaphore open = new Semaphore(maxConnections);
+        final int timeout = idleTimeout;
+        ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getByName("127.0.0.1"));
+        System.err.println("Listening on " + serverSocket.getLocalSocketAddress());
+
+        try {
+            while (true) {
+                final Socket socket = serverSocket.accept();
+                if (!open.tryAcquire()) {
+                    PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+                    out.println("error\ttoo many connections");
+                    out.println();
+                    out.flush();
+                    socket.close();
+                    continue;
+                }
+                connections.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            server.serve(socket, pool, timeout);
+                        }
+                        finally {
+                            open.release();
+                        }
+                    }
+                });
+            }
+        }
+        finally {
+            connections.shutdown();
+            pool.shutdown();
+            serverSocket.close();
+            readers.close();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc.tools;
+
+import cz.vutbr.fit.nlp.lc.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.Directory;
+
+/**
+ * Scores one shard of a {@link ShardedSearch} in its own process, e.g. on
+ * the machine or the disk of the shard. It listens on the loopback interface
+ * only, the protocol is the one of {@link ShardedClassification.RemoteShard}.
+ *
+ * {@code java -cp lucene-core-2.9.1.jar:. cz.vutbr.fit.nlp.lc.tools.ShardWorker shard0/ --port 7071}
+ *
+ * {@code --threads n} is the number of the connections served at once and
+ * {@code --directory fs|mmap|nio|ram} chooses how the shard is opened, see
+ * {@link DirectoryType}.
+ *
+ * @author Marek Schmidt
+ */
+class ShardWorker {
+
+    public static void main(String[] args) throws Exception {
+        int port = 7071;
+        int threads = Runtime.getRuntime().availableProcessors();
+        DirectoryType directoryType = DirectoryType.FS;
+
+        for (int i = 1; i + 1 < args.length; ++i) {
+            if ("--port".equals(args[i])) {
+                port = Integer.parseInt(args[++i]);
+            }
+            else if ("--threads".equals(args[i])) {
+                threads = Integer.parseInt(args[++i]);
+            }
+            else if ("--directory".equals(args[i])) {
+                directoryType = DirectoryType.parse(args[++i]);
+            }
+        }
+
+        Directory dir = directoryType.open(new File(args[0]));
+        final ShardedClassification.LocalShard shard = new ShardedClassification.LocalShard(IndexReader.open(dir, true), true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getByName("127.0.0.1"));
+        System.err.println("Serving " + args[0] + " (" + shard.maxDoc() + " documents) on " + serverSocket.getLocalSocketAddress());
+
+        try {
+            while (true) {
+                final Socket socket = serverSocket.accept();
+                executor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            ShardedClassification.serve(shard, socket);
+                        }
+                        catch (IOException e) {
+                            System.err.println("Connection failed: " + e);
+                        }
+                        finally {
+                            try {
+                                socket.close();
+                            }
+                            catch (IOException e) {
+                            }
+                        }
+                    }
+                });
+            }
+        }
+        finally {
+            executor.shutdown();
+            serverSocket.close();
+            shard.close();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc.tools;
+
+import cz.vutbr.fit.nlp.lc.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiReader;
+
+/**
+ * {@link Search} of an index split to several shards, stepped in parallel and
+ * merged, see {@link ShardedClassification}. The input and the output are the
+ * ones of {@link Search}, the ids of the examples may be in any of the shards.
+ *
+ * {@code java -cp lucene-core-2.9.1.jar:. cz.vutbr.fit.nlp.lc.tools.ShardedSearch shard0/ shard1/ shard2/}
+ *
+ * The classifier is trained from all the shards. With
+ * {@code --workers 7071,7072,7073} the shards are stepped by the
+ * {@link ShardWorker}s listening on the ports, one per shard in the order
+ * given, otherwise in this process by {@code --threads} threads.
+ * {@code --directory fs|mmap|nio|ram} chooses how the shards are opened, see
+ * {@link DirectoryType}, and {@code --depth n} steps n features (50).
+ *
+ * @author Marek Schmidt
+ */
+class ShardedSearch {
+
+    public static void main(String[] args) throws Exception {
+        List<String> paths = new ArrayList<String>();
+        String[] workers = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int depth = 50;
+        DirectoryType directoryType = DirectoryType.FS;
+
+        for (int i = 0; i < args.length; ++i) {
+            if ("--workers".equals(args[i]) && i + 1 < args.length) {
+                workers = args[++i].split(",");
+            }
+            else if ("--threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            }
+            else if ("--depth".equals(args[i]) && i + 1 < args.length) {
+                depth = Integer.parseInt(args[++i]);
+            }
+            else if ("--directory".equals(args[i]) && i + 1 < args.length) {
+                directoryType = DirectoryType.parse(args[++i]);
+            }
+            else {
+                paths.add(args[i]);
+            }
+        }
+        if (workers != null && workers.length != paths.size()) {
+            throw new IllegalArgumentException("One worker per shard expected, " + paths.size() + " shards, " + workers.length + " workers");
+        }
+
+        IndexReader[] readers = new IndexReader[paths.size()];
+        List<ShardedClassification.Shard> shards = new ArrayList<ShardedClassification.Shard>();
+        for (int i = 0; i < readers.length; ++i) {
+            readers[i] = IndexReader.open(directoryType.open(new File(paths.get(i))), true);
+            if (workers != null) {
+                shards.add(new ShardedClassification.RemoteShard("127.0.0.1", Integer.parseInt(workers[i])));
+            }
+            else {
+                shards.add(new ShardedClassification.LocalShard(readers[i]));
+            }
+        }
+        // the docids of the examples and of the output are the global ones
+        IndexReader all = new MultiReader(readers, true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, shards.size())));
+        ShardedClassification sharded = new ShardedClassification(shards, executor);
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+            Map<Integer, Set<Integer>> class2ids = Search.readTraining(all, in, new LinkedList<String>(), new LinkedList<String>(), System.err);
+            NaiveBayesClassifier nbc = LuceneClassification.learnBinary(all, class2ids, "lemmas", 0, new TrainingOptions());
+
+            // the training documents are skipped in the output, ask for some more
+            int k = 20 + class2ids.get(0).size() + class2ids.get(1).size();
+            long start = System.nanoTime();
+            List<ShardedClassification.Hit> hits = sharded.top(nbc, "lemmas", 0, depth + 1, k, null);
+            System.err.println("Stepped " + shards.size() + " shards in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+            // the worst first as the output of Search
+            LinkedList<Search.Result> results = new LinkedList<Search.Result>();
+            for (ShardedClassification.Hit hit : hits) {
+                if (results.size() == 20) {
+                    break;
+                }
+                if (class2ids.get(0).contains(hit.getGlobalDoc()) || class2ids.get(1).contains(hit.getGlobalDoc())) {
+                    continue;
+                }
+                results.addFirst(new Search.Result(hit.getGlobalDoc(), hit.getScore()));
+            }
+
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, "UTF-8"));
+            Search.print(all, results, out);
+            out.flush();
+        }
+        finally {
+            executor.shutdown();
+            sharded.close();
+            all.close();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc.tools;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ *  Generates a synthetic corpus in the format read by {@link Index}.
+ *
+ *  The vocabulary is drawn from a Zipfian distribution with the given
+ *  exponent, each document gets a single class label (the class priors
+ *  follow another power law controlled by the skew, 0 meaning uniform), and
+ *  a fraction of the tokens of each document is replaced by terms planted
+ *  for its class, so that there is something to learn.
+ *
+ *  {@code java -cp lucene-core-2.9.1.jar:. cz.vutbr.fit.nlp.lc.tools.SyntheticCorpus --documents 1000000 > corpus.txt}
+ *
+ *  The options are {@code --documents}, {@code --vocabulary},
+ *  {@code --exponent}, {@code --length} (mean number of tokens),
+ *  {@code --classes}, {@code --skew}, {@code --class-terms} (planted terms
+ *  per class), {@code --plant-rate} and {@code --seed}.
+ *
+ *  @author Marek Schmidt
+ */
+class SyntheticCorpus {
+
+    int vocabulary = 100000;
+    double exponent = 1.0;
+    int length = 100;
+    int classes = 10;
+    double skew = 1.0;
+    int classTerms = 50;
+    double plantRate = 0.05;
+    long seed = 42;
+
+    private double[] termCdf;
+    private double[] classCdf;
+    private Random random;
+    private long generated;
+
+    /**
+     *  Precomputes the distributions, must be called after the parameters
+     *  are set and before the first document is generated.
+     */
+    void init() {
+        termCdf = cdf(vocabulary, exponent);
+        classCdf = cdf(classes, skew);
+        random = new Random(seed);
+        generated = 0;
+    }
+
+    private static double[] cdf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double sum = 0.0;
+        for (int i = 0; i < n; ++i) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; ++i) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private int sample(double[] cdf) {
+        int i = Arrays.binarySearch(cdf, random.nextDouble());
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return Math.min(i, cdf.length - 1);
+    }
+
+    /** The tag the documents of the given class are labelled with. */
+    static String tag(int klass) {
+        return "class" + klass;
+    }
+
+    /** The term planted into the documents of the given class. */
+    static String classTerm(int klass, int j) {
+        return "planted" + klass + "x" + j;
+    }
+
+    /** The term of the given Zipfian rank. */
+    static String term(int rank) {
+        return "term" + rank;
+    }
+
+    /**
+     *  Generates the next document as one line (without the line separator).
+     */
+    String next() {
+        long id = generated++;
+        int klass = sample(classCdf);
+
+        // uniformly between length/2 and 3*length/2
+        int n = Math.max(1, length / 2 + random.nextInt(length + 1));
+
+        StringBuilder sb = new StringBuilder(n * 8);
+        sb.append("doc").append(id).append('\t');
+        sb.append("synthetic document ").append(id).append('\t');
+
+        for (int i = 0; i < n; ++i) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+
+            if (classTerms > 0 && random.nextDouble() < plantRate) {
+                sb.append(classTerm(klass, random.nextInt(classTerms)));
+            }
+            else {
+                sb.append(term(sample(termCdf)));
+            }
+        }
+
+        sb.append('\t').append(tag(klass));
+
+        return sb.toString();
+    }
+
+    /**
+     *  Parses the generator options, unknown options are ignored so that the
+     *  tools using the generator may add their own.
+     */
+    static SyntheticCorpus parse(String[] args) {
+        SyntheticCorpus corpus = new SyntheticCorpus();
+        for (int i = 0; i + 1 < args.length; ++i) {
+            String arg = args[i];
+            String value = args[i + 1];
+            if ("--vocabulary".equals(arg)) {
+                corpus.vocabulary = Integer.parseInt(value);
+            }
+            else if ("--exponent".equals(arg)) {
+                corpus.exponent = Double.parseDouble(value);
+            }
+            else if ("--length".equals(arg)) {
+                corpus.length = Integer.parseInt(value);
+            }
+            else if ("--classes".equals(arg)) {
+                corpus.classes = Integer.parseInt(value);
+            }
+            else if ("--skew".equals(arg)) {
+                corpus.skew = Double.parseDouble(value);
+            }
+            else if ("--class-terms".equals(arg)) {
+                corpus.classTerms = Integer.parseInt(value);
+            }
+            else if ("--plant-rate".equals(arg)) {
+                corpus.plantRate = Double.parseDouble(value);
+            }
+            else if ("--seed".equals(arg)) {
+                corpus.seed = Long.parseLong(value);
+            }
+            else {
+                continue;
+            }
+            ++i;
+        }
+        return corpus;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long documents = 10000;
+        for (int i = 0; i + 1 < args.length; ++i) {
+            if ("--documents".equals(args[i])) {
+                documents = Long.parseLong(args[i + 1]);
+            }
+        }
+
+        SyntheticCorpus corpus = parse(args);
+        corpus.init();
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+        for (long i = 0; i < documents; ++i) {
+            out.write(corpus.next());
+            out.write('\n');
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc.tools;
+
+import cz.vutbr.fit.nlp.lc.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.Directory;
+
+/**
+    Measures the latency of the first classification after an index is
+    opened, cold and warmed by {@link IndexWarmer}, for each
+    {@link DirectoryType}, with the model of the training set read from the
+    standard input in the format of {@link Search}.
+
+    Usage: WarmupBenchmark index [--directories fs,mmap,nio,ram] [--features 50] [--warm 50] [--stored 0] [--repeat 5]
+
+    Prints "directory openMs coldMs warmMs warmedMs hotMs" for each
+    directory, the medians of the repeats: the time to open the directory
+    and the reader, of the first steps of a cold reader, of the warm up, of
+    the first steps after it, and of the steps once everything was read.
+    The cache of the operating system survives the repeats, drop it between
+    the runs to see the cold reads from the disk.
+
+    @author Marek Schmidt
+*/
+class WarmupBenchmark {
+
+    static long median(long[] a) {
+        long[] sorted = a.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    static long steps(IndexReader reader, NaiveBayesClassifier nbc, int features) throws java.io.IOException {
+        long start = System.nanoTime();
+        LuceneClassification classification = new LuceneClassification(reader, nbc, "lemmas", 0);
+        LuceneClassification.Iteration iter = classification.steps(null, features);
+        iter.top(100);
+        iter.release();
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        String directories = "fs,mmap,nio,ram";
+        int features = 50;
+        int warm = 50;
+        int stored = 0;
+        int repeat = 5;
+
+        for (int i = 1; i + 1 < args.length; ++i) {
+            if ("--directories".equals(args[i])) {
+                directories = args[++i];
+            }
+            else if ("--features".equals(args[i])) {
+                features = Integer.parseInt(args[++i]);
+            }
+            else if ("--warm".equals(args[i])) {
+                warm = Integer.parseInt(args[++i]);
+            }
+            else if ("--stored".equals(args[i])) {
+                stored = Integer.parseInt(args[++i]);
+            }
+            else if ("--repeat".equals(args[i])) {
+                repeat = Integer.parseInt(args[++i]);
+            }
+        }
+
+        File path = new File(args[0]);
+
+        List<DirectoryType> types = new ArrayList<DirectoryType>();
+        for (String name : directories.split(",")) {
+            types.add(DirectoryType.parse(name.trim()));
+        }
+
+        NaiveBayesClassifier nbc;
+        Directory dir = DirectoryType.FS.open(path);
+        IndexReader reader = IndexReader.open(dir, true);
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+            Map<Integer, Set<Integer>> class2ids = Search.readTraining(reader, in, new LinkedList<String>(), new LinkedList<String>(), null);
+            nbc = LuceneClassification.learnBinary(reader, class2ids, "lemmas", 0, new TrainingOptions());
+        }
+        finally {
+            reader.close();
+            dir.close();
+        }
+
+        IndexWarmer warmer = new IndexWarmer("lemmas").addFeatures(nbc, 0, warm).setStoredDocuments(stored);
+
+        // a round not measured, so the first directory does not pay for the JIT
+        dir = types.get(0).open(path);
+        reader = IndexReader.open(dir, true);
+        warmer.warm(reader);
+        steps(reader, nbc, features);
+        reader.close();
+        dir.close();
+
+        System.out.println("directory\topenMs\tcoldMs\twarmMs\twarmedMs\thotMs");
+        for (DirectoryType type : types) {
+            long[] open = new long[repeat];
+            long[] cold = new long[repeat];
+            long[] warming = new long[repeat];
+            long[] warmed = new long[repeat];
+            long[] hot = new long[repeat];
+
+            for (int r = 0; r < repeat; ++r) {
+                long start = System.nanoTime();
+                dir = type.open(path);
+                reader = IndexReader.open(dir, true);
+                open[r] = System.nanoTime() - start;
+
+                cold[r] = steps(reader, nbc, features);
+                hot[r] = steps(reader, nbc, features);
+                reader.close();
+                dir.close();
+
+                dir = type.open(path);
+                reader = IndexReader.open(dir, true);
+                warmer.warm(reader);
+                warming[r] = warmer.getElapsedNanos();
+                warmed[r] = steps(reader, nbc, features);
+                reader.close();
+                dir.close();
+            }
+
+            System.out.println(type.name().toLowerCase()
+                + "\t" + median(open) / 1000000.0
+                + "\t" + median(cold) / 1000000.0
+                + "\t" + median(warming) / 1000000.0
+                + "\t" + median(warmed) / 1000000.0
+                + "\t" + median(hot) / 1000000.0);
+        }
+    }
+}
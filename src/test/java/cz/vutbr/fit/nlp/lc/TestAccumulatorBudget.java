@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.lucene.index.IndexReader;
+
+public class TestAccumulatorBudget 
+    extends TestCase
+{
+    public TestAccumulatorBudget( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TestAccumulatorBudget.class );
+    }
+
+    static List<Integer> top( Map<Integer, Double> id2logscore, int k )
+    {
+        List<Map.Entry<Integer, Double>> entries = new ArrayList<Map.Entry<Integer, Double>>( id2logscore.entrySet() );
+        Collections.sort( entries, new Comparator<Map.Entry<Integer, Double>>() {
+            public int compare( Map.Entry<Integer, Double> e1, Map.Entry<Integer, Double> e2 ) {
+                return - Double.compare( e1.getValue(), e2.getValue() );
+            }
+        });
+
+        List<Integer> ret = new ArrayList<Integer>();
+        for( int i = 0; i < k && i < entries.size(); ++i ) {
+            ret.add( entries.get( i ).getKey() );
+        }
+        return ret;
+    }
+
+    public void testBudget() throws java.io.IOException
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 500, 1 );
+        NaiveBayesClassifier nbc = LuceneClassification.learn( reader, TestLuceneClassification.randomTrainingSet( 100 ), "lemmas" );
+
+        LuceneClassification exhaustive = new LuceneClassification( reader, nbc, "lemmas", 0 );
+        Map<Integer, Double> expected = exhaustive.steps( null, exhaustive.getFeatures().size() ).getId2LogScore();
+
+        int budget = 100;
+        int k = 10;
+
+        LuceneClassification budgeted = new LuceneClassification( reader, nbc, "lemmas", 0 );
+        budgeted.setAccumulatorBudget( budget, k );
+
+        boolean safe = true;
+        int pruned = 0;
+        LuceneClassification.Iteration iter = null;
+        while( budgeted.hasNext( iter ) ) {
+            iter = budgeted.step( iter );
+            Assert.assertTrue( iter.getId2LogScore().size() <= budget );
+            pruned += iter.getPrunedDocuments();
+            safe &= iter.getPruneBound() != LuceneClassification.PruneBound.BEAM;
+        }
+
+        Assert.assertTrue( iter.getTotalPrunedDocuments() > 0 );
+        Assert.assertEquals( pruned, iter.getTotalPrunedDocuments() );
+
+        // the surviving documents keep their exact scores
+        for( Map.Entry<Integer, Double> entry : iter.getId2LogScore().entrySet() ) {
+            Assert.assertEquals( expected.get( entry.getKey() ), entry.getValue(), 1e-9 );
+        }
+
+        if( safe ) {
+            Assert.assertEquals( top( expected, k ), top( iter.getId2LogScore(), k ) );
+        }
+    }
+
+    public void testSelect()
+    {
+        double[] a = { 3.0, 1.0, 4.0, 1.0, 5.0, 9.0, 2.0, 6.0 };
+        Assert.assertEquals( 9.0, LuceneClassification.select( a.clone(), a.length, 1 ), 0.0 );
+        Assert.assertEquals( 5.0, LuceneClassification.select( a.clone(), a.length, 3 ), 0.0 );
+        Assert.assertEquals( 1.0, LuceneClassification.select( a.clone(), a.length, 8 ), 0.0 );
+    }
+}
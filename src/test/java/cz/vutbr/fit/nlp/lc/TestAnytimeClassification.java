@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.lucene.index.IndexReader;
+
+public class TestAnytimeClassification 
+    extends TestCase
+{
+    public TestAnytimeClassification( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TestAnytimeClassification.class );
+    }
+
+    static LuceneClassification classification( IndexReader reader ) throws java.io.IOException
+    {
+        NaiveBayesClassifier nbc = LuceneClassification.learn( reader, TestLuceneClassification.randomTrainingSet( 100 ), "lemmas" );
+        return new LuceneClassification( reader, nbc, "lemmas", 1 );
+    }
+
+    public void testSnapshots() throws Exception
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 200, 1 );
+        LuceneClassification classification = classification( reader );
+
+        final List<List<ScoredDocument>> snapshots = new ArrayList<List<ScoredDocument>>();
+        AnytimeClassification anytime = new AnytimeClassification( classification )
+            .setMaxSteps( 5 )
+            .setTop( 10 )
+            .setSnapshotListener( 10, new AnytimeClassification.SnapshotListener() {
+                public void snapshot( LuceneClassification.Iteration iteration, List<ScoredDocument> top ) {
+                    Assert.assertEquals( snapshots.size(), iteration.getIteration() );
+                    snapshots.add( top );
+                }
+            } );
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        LuceneClassification.Iteration iter = anytime.start( executor ).get();
+        executor.shutdown();
+
+        Assert.assertEquals( AnytimeClassification.StopReason.COMPLETED, anytime.getStopReason() );
+        Assert.assertEquals( 5, snapshots.size() );
+        Assert.assertEquals( 4, iter.getIteration() );
+        Assert.assertEquals( iter.top( 10 ).toString(), snapshots.get( 4 ).toString() );
+        Assert.assertEquals( iter.top( 10 ).toString(), anytime.getTop().toString() );
+    }
+
+    public void testPostingsBudget() throws Exception
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 200, 1 );
+        LuceneClassification classification = classification( reader );
+
+        int budget = classification.nextDocFreq( null ) + 1;
+        AnytimeClassification anytime = new AnytimeClassification( classification ).setPostingsBudget( budget );
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        LuceneClassification.Iteration iter = anytime.start( executor ).get();
+        executor.shutdown();
+
+        Assert.assertEquals( AnytimeClassification.StopReason.POSTINGS_BUDGET, anytime.getStopReason() );
+        Assert.assertTrue( anytime.getPostingsRead() <= budget );
+        Assert.assertEquals( 0, iter.getIteration() );
+
+        anytime = new AnytimeClassification( classification ).setDeadline( 0, TimeUnit.MILLISECONDS );
+        executor = Executors.newSingleThreadExecutor();
+        Assert.assertNull( anytime.start( executor ).get() );
+        executor.shutdown();
+        Assert.assertEquals( AnytimeClassification.StopReason.DEADLINE, anytime.getStopReason() );
+    }
+
+    public void testCancel() throws Exception
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 200, 1 );
+        LuceneClassification classification = classification( reader );
+
+        final CountDownLatch stepped = new CountDownLatch( 1 );
+        final CountDownLatch cancelled = new CountDownLatch( 1 );
+        AnytimeClassification anytime = new AnytimeClassification( classification )
+            .setTop( 10 )
+            .setSnapshotListener( 0, new AnytimeClassification.SnapshotListener() {
+                public void snapshot( LuceneClassification.Iteration iteration, List<ScoredDocument> top ) {
+                    stepped.countDown();
+                    try {
+                        cancelled.await();
+                    }
+                    catch( InterruptedException e ) {
+                        throw new RuntimeException( e );
+                    }
+                }
+            } );
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CompletableFuture<LuceneClassification.Iteration> future = anytime.start( executor );
+        stepped.await();
+        future.cancel( true );
+        cancelled.countDown();
+        executor.shutdown();
+        executor.awaitTermination( 10, TimeUnit.SECONDS );
+
+        Assert.assertTrue( future.isCancelled() );
+        Assert.assertEquals( AnytimeClassification.StopReason.CANCELLED, anytime.getStopReason() );
+        Assert.assertNotNull( anytime.getTop() );
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.lucene.index.IndexReader;
+
+public class TestBatchActiveLearning 
+    extends TestCase
+{
+    public TestBatchActiveLearning( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TestBatchActiveLearning.class );
+    }
+
+    // the even documents of the random index are the positives
+    private static final BatchActiveLearning.Oracle EVEN = new BatchActiveLearning.Oracle() {
+        public boolean isPositive( int docid ) {
+            return docid % 2 == 0;
+        }
+    };
+
+    private static BatchActiveLearning learning( IndexReader reader, int batch ) throws java.io.IOException
+    {
+        List<Integer> pool = new ArrayList<Integer>();
+        for( int i = 0; i < 300; ++i ) {
+            pool.add( i );
+        }
+        List<Integer> test = new ArrayList<Integer>();
+        List<Integer> positives = new ArrayList<Integer>();
+        for( int i = 300; i < 400; ++i ) {
+            test.add( i );
+            if( EVEN.isPositive( i ) ) {
+                positives.add( i );
+            }
+        }
+        BatchActiveLearning learning = new BatchActiveLearning( reader, "lemmas", pool, EVEN )
+            .setBatchSize( batch ).setEvaluation( test, positives );
+        learning.label( 0, true );
+        learning.label( 1, false );
+        return learning;
+    }
+
+    public void testBatches() throws java.io.IOException
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 400, 1 );
+        BatchActiveLearning learning = learning( reader, 10 );
+
+        List<BatchActiveLearning.Round> rounds = learning.run( 5 );
+        Assert.assertEquals( 5, rounds.size() );
+        Assert.assertEquals( 52, learning.getLabelled() );
+        for( int i = 0; i < rounds.size(); ++i ) {
+            BatchActiveLearning.Round round = rounds.get( i );
+            Assert.assertEquals( 2 + 10 * i, round.getPositives() + round.getNegatives() );
+            Assert.assertEquals( 10, round.getSelected() );
+            Assert.assertEquals( 400 - 2 - 10 * i, round.getScored() );
+        }
+        BatchActiveLearning.Round last = rounds.get( rounds.size() - 1 );
+        Assert.assertTrue( last.getF1() > 0.5 );
+        Assert.assertTrue( last.getTotalNanos() >= rounds.get( 0 ).getTotalNanos() );
+    }
+
+    public void testParallel() throws java.io.IOException
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 400, 1 );
+        List<BatchActiveLearning.Round> serial = learning( reader, 5 ).run( 4 );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 3 );
+        try {
+            BatchActiveLearning learning = learning( reader, 5 ).setExecutor( executor, 3 );
+            List<BatchActiveLearning.Round> parallel = learning.run( 4 );
+            Assert.assertEquals( serial.size(), parallel.size() );
+            for( int i = 0; i < serial.size(); ++i ) {
+                Assert.assertEquals( serial.get( i ).getPositives(), parallel.get( i ).getPositives() );
+                Assert.assertEquals( serial.get( i ).getF1(), parallel.get( i ).getF1() );
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testDiversity() throws java.io.IOException
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 400, 1 );
+
+        // any similarity is at least 0.0, only the first document is taken
+        BatchActiveLearning learning = learning( reader, 10 ).setMaxSimilarity( 0.0 );
+        BatchActiveLearning.Round round = learning.round();
+        Assert.assertEquals( 1, round.getSelected() );
+        Assert.assertEquals( 298 - 1, round.getSkipped() );
+
+        Assert.assertEquals( 1.0, BatchActiveLearning.similarity( new int[] { 1, 2 }, new int[] { 1, 2 } ) );
+        Assert.assertEquals( 0.5, BatchActiveLearning.similarity( new int[] { 1, 2, 3 }, new int[] { 2, 3, 4 } ) );
+        Assert.assertEquals( 0.0, BatchActiveLearning.similarity( new int[] { 1 }, new int[] { 2 } ) );
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.lucene.index.IndexReader;
+
+public class TestCheckpoint 
+    extends TestCase
+{
+    public TestCheckpoint( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TestCheckpoint.class );
+    }
+
+    static byte[] write( LuceneClassification classification, LuceneClassification.Iteration iter ) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bytes );
+        classification.writeCheckpoint( iter, out );
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static LuceneClassification.Iteration read( LuceneClassification classification, byte[] bytes ) throws IOException
+    {
+        return classification.readCheckpoint( new DataInputStream( new ByteArrayInputStream( bytes ) ) );
+    }
+
+    public void testResume() throws IOException
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 500, 1 );
+        NaiveBayesClassifier nbc = LuceneClassification.learn( reader, TestLuceneClassification.randomTrainingSet( 100 ), "lemmas" );
+
+        for( ScoreAccumulator.Factory factory : new ScoreAccumulator.Factory[] { PersistentScoreAccumulator.FACTORY, MapScoreAccumulator.FACTORY } ) {
+            LuceneClassification classification = new LuceneClassification( reader, nbc, "lemmas", 0 );
+            classification.setAccumulatorFactory( factory );
+            classification.setAccumulatorBudget( 100, 10 );
+
+            LuceneClassification.Iteration half = classification.steps( null, 10 );
+            byte[] bytes = write( classification, half );
+            LuceneClassification.Iteration expected = classification.steps( half, 10 );
+
+            // a new process resumes from the bytes
+            LuceneClassification resumed = new LuceneClassification( reader, nbc, "lemmas", 0 );
+            resumed.setAccumulatorFactory( factory );
+            resumed.setAccumulatorBudget( 100, 10 );
+            LuceneClassification.Iteration iter = read( resumed, bytes );
+            Assert.assertEquals( 9, iter.getIteration() );
+            Assert.assertEquals( half.getTotalPrunedDocuments(), iter.getTotalPrunedDocuments() );
+
+            iter = resumed.steps( iter, 10 );
+            Assert.assertEquals( expected.getIteration(), iter.getIteration() );
+            Assert.assertEquals( expected.getTotalPrunedDocuments(), iter.getTotalPrunedDocuments() );
+            Assert.assertEquals( expected.getId2LogScore(), iter.getId2LogScore() );
+        }
+    }
+
+    public void testMismatch() throws IOException
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 200, 1 );
+        NaiveBayesClassifier nbc = LuceneClassification.learn( reader, TestLuceneClassification.randomTrainingSet( 60 ), "lemmas" );
+
+        LuceneClassification classification = new LuceneClassification( reader, nbc, "lemmas", 0 );
+        byte[] bytes = write( classification, classification.steps( null, 3 ) );
+
+        try {
+            read( new LuceneClassification( reader, nbc, "lemmas", 1 ), bytes );
+            fail( "Resumed the checkpoint of another class" );
+        }
+        catch( IOException e ) {
+        }
+
+        IndexReader other = TestLuceneClassification.openRandomIndex( 201, 1 );
+        try {
+            read( new LuceneClassification( other, nbc, "lemmas", 0 ), bytes );
+            fail( "Resumed the checkpoint of another index" );
+        }
+        catch( IOException e ) {
+        }
+
+        LuceneClassification budgeted = new LuceneClassification( reader, nbc, "lemmas", 0 );
+        budgeted.setAccumulatorBudget( 50, 5 );
+        try {
+            read( budgeted, bytes );
+            fail( "Resumed the checkpoint of another budget" );
+        }
+        catch( IOException e ) {
+        }
+    }
+
+    public void testCheckpointer() throws Exception
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 300, 1 );
+        NaiveBayesClassifier nbc = LuceneClassification.learn( reader, TestLuceneClassification.randomTrainingSet( 60 ), "lemmas" );
+        LuceneClassification classification = new LuceneClassification( reader, nbc, "lemmas", 0 );
+
+        File file = File.createTempFile( "checkpoint", ".bin" );
+        file.delete();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        Checkpointer checkpointer = new Checkpointer( classification, file, writer ).setInterval( 0, TimeUnit.MILLISECONDS );
+        Assert.assertNull( checkpointer.resume() );
+
+        AnytimeClassification anytime = new AnytimeClassification( classification ).setMaxSteps( 8 ).setCheckpointer( checkpointer );
+        LuceneClassification.Iteration iter = anytime.start( executor ).get();
+        checkpointer.close();
+        Assert.assertTrue( checkpointer.getCheckpoints() > 0 );
+        Assert.assertEquals( 7, checkpointer.getLastIteration() );
+
+        // the next run resumes after the 8 steps and continues up to 12
+        Checkpointer next = new Checkpointer( classification, file, writer );
+        LuceneClassification.Iteration resumed = next.resume();
+        Assert.assertEquals( iter.getId2LogScore(), resumed.getId2LogScore() );
+
+        anytime = new AnytimeClassification( classification ).setMaxSteps( 12 ).setCheckpointer( next );
+        LuceneClassification.Iteration last = anytime.start( executor, resumed ).get();
+        next.close();
+        Assert.assertEquals( 11, last.getIteration() );
+        Assert.assertEquals( classification.steps( null, 12 ).getId2LogScore(), last.getId2LogScore() );
+
+        next.delete();
+        Assert.assertFalse( file.exists() );
+        executor.shutdown();
+        writer.shutdown();
+    }
+}
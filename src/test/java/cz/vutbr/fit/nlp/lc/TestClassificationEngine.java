@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.lucene.index.IndexReader;
+
+public class TestClassificationEngine 
+    extends TestCase
+{
+    public TestClassificationEngine( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TestClassificationEngine.class );
+    }
+
+    static String scores( List<ScoredDocument> top )
+    {
+        StringBuilder sb = new StringBuilder();
+        for( ScoredDocument document : top ) {
+            sb.append( (float) document.getScore() ).append( " " );
+        }
+        return sb.toString();
+    }
+
+    public void testSession() throws Exception
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 3000, 1 );
+        NaiveBayesClassifier nbc = LuceneClassification.learn( reader, TestLuceneClassification.randomTrainingSet( 100 ), "lemmas" );
+
+        LuceneClassification.Iteration iter = new LuceneClassification( reader, nbc, "lemmas", 1 ).steps( null, 10 );
+        ClassificationEngine engine = new ClassificationEngine( reader, nbc, "lemmas", 1, 2 );
+
+        for( int round = 0; round < 3; ++round ) {
+            ClassificationSession session = engine.openSession();
+            Assert.assertEquals( 10, session.steps( 10 ) );
+            Assert.assertEquals( iter.getScores().size(), session.size() );
+            for( int doc = 0; doc < reader.maxDoc(); ++doc ) {
+                double score = iter.getLogScore( doc );
+                if( Double.isNaN( score ) ) {
+                    Assert.assertTrue( Double.isNaN( session.getLogScore( doc ) ) );
+                }
+                else {
+                    Assert.assertEquals( score, session.getLogScore( doc ), 1e-9 );
+                }
+            }
+
+            List<ScoredDocument> expected = iter.top( 30 );
+            List<ScoredDocument> top = session.top( 30 );
+            Assert.assertEquals( expected.size(), top.size() );
+            for( int i = 0; i < top.size(); ++i ) {
+                Assert.assertEquals( expected.get( i ).getScore(), top.get( i ).getScore(), 1e-9 );
+            }
+            session.close();
+        }
+
+        // the closed session was reused
+        Assert.assertEquals( 1, engine.getCreatedSessions() );
+        Assert.assertEquals( 1, engine.getPooledSessions() );
+    }
+
+    public void testConcurrent() throws Exception
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 1000, 1 );
+        NaiveBayesClassifier nbc = LuceneClassification.learn( reader, TestLuceneClassification.randomTrainingSet( 100 ), "lemmas" );
+        final ClassificationEngine engine = new ClassificationEngine( reader, nbc, "lemmas", 1, 4 );
+
+        // the ties may be in any order, compare the scores
+        final String expected = scores( new LuceneClassification( reader, nbc, "lemmas", 1 ).steps( null, 5 ).top( 10 ) );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        List<Future<String>> futures = new ArrayList<Future<String>>();
+        for( int i = 0; i < 40; ++i ) {
+            futures.add( executor.submit( new Callable<String>() {
+                public String call() throws Exception {
+                    ClassificationSession session = engine.openSession();
+                    try {
+                        session.steps( 5 );
+                        return scores( session.top( 10 ) );
+                    }
+                    finally {
+                        session.close();
+                    }
+                }
+            } ) );
+        }
+        for( Future<String> future : futures ) {
+            Assert.assertEquals( expected, future.get() );
+        }
+        executor.shutdown();
+
+        Assert.assertTrue( engine.getCreatedSessions() <= 4 );
+    }
+}
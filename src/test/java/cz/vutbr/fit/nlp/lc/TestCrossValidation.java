@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.lucene.index.IndexReader;
+
+public class TestCrossValidation 
+    extends TestCase
+{
+    public TestCrossValidation( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TestCrossValidation.class );
+    }
+
+    public void testCounts() throws java.io.IOException
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 200, 1 );
+        Map<Integer, Set<Integer>> class2ids = TestLuceneClassification.randomTrainingSet( 100 );
+
+        CrossValidation cv = new CrossValidation( reader, class2ids, "lemmas", 4, new Random( 1 ) );
+        TermCounts counts = TermCounts.count( reader, class2ids, "lemmas" );
+
+        for( int klass = 0; klass < 2; ++klass ) {
+            Assert.assertEquals( counts.getClassCounts( klass ), cv.getCounts().getClassCounts( klass ) );
+            Assert.assertEquals( counts.getClassSize( klass ), cv.getCounts().getClassSize( klass ) );
+        }
+
+        int sizes = 0;
+        for( int fold = 0; fold < cv.getFolds(); ++fold ) {
+            TermCounts training = cv.getTrainingCounts( fold );
+            // stratified, each fold holds out a quarter of each class
+            Assert.assertEquals( 50 - 50 / 4, training.getClassSize( 0 ), 1 );
+            sizes += training.getTotalSize();
+        }
+        Assert.assertEquals( 3 * 100, sizes );
+
+        reader.close();
+    }
+
+    public void testEvaluate() throws Exception
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 200, 1 );
+        Map<Integer, Set<Integer>> class2ids = TestLuceneClassification.randomTrainingSet( 100 );
+
+        CrossValidation cv = new CrossValidation( reader, class2ids, "lemmas", 4, new Random( 1 ) );
+
+        List<TrainingOptions> configurations = new ArrayList<TrainingOptions>();
+        configurations.add( new TrainingOptions() );
+        configurations.add( new TrainingOptions().setFeatureScorer( FeatureScorers.MUTUAL_INFORMATION ) );
+
+        List<CrossValidation.Evaluation> evaluations = cv.evaluate( 1, configurations, new int[] { 5, -1 }, null );
+        Assert.assertEquals( 4, evaluations.size() );
+
+        for( CrossValidation.Evaluation e : evaluations ) {
+            Assert.assertEquals( 100, e.tp + e.fp + e.fn + e.tn );
+            Assert.assertTrue( e.toString(), e.getF1() > 0.6 );
+        }
+
+        reader.close();
+    }
+}
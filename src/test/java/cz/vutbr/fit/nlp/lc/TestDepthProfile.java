@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.lucene.index.IndexReader;
+
+public class TestDepthProfile 
+    extends TestCase
+{
+    public TestDepthProfile( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TestDepthProfile.class );
+    }
+
+    public void testProfile() throws java.io.IOException
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 300, 1 );
+        NaiveBayesClassifier nbc = LuceneClassification.learn( reader, TestLuceneClassification.randomTrainingSet( 60 ), "lemmas" );
+        LuceneClassification classification = new LuceneClassification( reader, nbc, "lemmas", 0 );
+
+        int k = 20;
+        List<Integer> reference = DepthProfile.reference( reader, nbc, "lemmas", 0, null, k );
+        Assert.assertEquals( k, reference.size() );
+
+        Set<Integer> positives = new HashSet<Integer>( reference.subList( 0, 10 ) );
+        int depth = classification.getFeatures().size();
+        List<DepthProfile.Point> curve = DepthProfile.profile( classification, depth, k, null, positives, reference, 2 );
+        Assert.assertEquals( depth, curve.size() );
+
+        long postings = 0;
+        for( DepthProfile.Point point : curve ) {
+            Assert.assertTrue( point.getPostings() >= postings );
+            postings = point.getPostings();
+            Assert.assertTrue( point.getMemory() > 0 );
+        }
+
+        // classify counts the repeated words, the steps only the documents,
+        // so the rankings get closer but need not be the same
+        DepthProfile.Point last = curve.get( curve.size() - 1 );
+        Assert.assertTrue( last.getOverlap() > curve.get( 0 ).getOverlap() );
+        Assert.assertTrue( last.getRecall() > curve.get( 0 ).getRecall() );
+    }
+
+    static DepthProfile.Point point( int depth, long millis, double overlap )
+    {
+        DepthProfile.Point point = new DepthProfile.Point();
+        point.depth = depth;
+        point.elapsedNanos = millis * 1000000;
+        point.memory = depth * 100;
+        point.overlap = overlap;
+        return point;
+    }
+
+    public void testRecommend()
+    {
+        List<DepthProfile.Point> curve = new ArrayList<DepthProfile.Point>();
+        curve.add( point( 1, 1, 0.5 ) );
+        curve.add( point( 2, 2, 0.8 ) );
+        curve.add( point( 3, 3, 0.81 ) );
+        curve.add( point( 4, 10, 1.0 ) );
+
+        Assert.assertEquals( 4, DepthProfile.recommend( curve, -1, -1, 0.01 ).getDepth() );
+        Assert.assertEquals( 2, DepthProfile.recommend( curve, 5, -1, 0.01 ).getDepth() );
+        Assert.assertEquals( 1, DepthProfile.recommend( curve, -1, 150, 0.01 ).getDepth() );
+        Assert.assertNull( DepthProfile.recommend( curve, 0.5, -1, 0.01 ) );
+    }
+
+    public void testClassifyStored() throws java.io.IOException
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 50, 1 );
+        NaiveBayesClassifier nbc = LuceneClassification.learn( reader, TestLuceneClassification.randomTrainingSet( 20 ), "lemmas" );
+
+        Assert.assertEquals( LuceneClassification.classify( nbc, reader, 3, "lemmas", 0, -1 ), LuceneClassification.classify( nbc, reader, 3, "lemmas", 0 ), 0.0 );
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+    Compares the classifiers trained over {@link FeatureColumns} with the
+    ones of the map based training it replaced, kept below as the reference.
+*/
+public class TestFeatureColumns 
+    extends TestCase
+{
+    public TestFeatureColumns( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TestFeatureColumns.class );
+    }
+
+    private static class Candidate {
+        String term;
+        double score;
+        double loglikelihood;
+        int index;
+    }
+
+    private static final Comparator<Candidate> BEST_FIRST = new Comparator<Candidate>() {
+        public int compare( Candidate o1, Candidate o2 ) {
+            int c = - Double.compare( o1.score, o2.score );
+            return c != 0 ? c : ( o1.index < o2.index ? -1 : ( o1.index == o2.index ? 0 : 1 ) );
+        }
+    };
+
+    /**
+        The training before the columns, one candidate object per term and
+        the smoothing applied while iterating the class counts.
+    */
+    private static NaiveBayesClassifier reference( TermCounts counts, TrainingOptions options )
+    {
+        NaiveBayesClassifier ret = new NaiveBayesClassifier();
+        FeatureScorer scorer = options.getFeatureScorer();
+        int total = counts.getTotalSize();
+
+        for( Integer klass : counts.getClasses() ) {
+            ret.logpriors.put( klass, Math.log( counts.getClassSize( klass ) ) - Math.log( total - counts.getClassSize( klass ) ) );
+
+            List<Candidate> candidates = new ArrayList<Candidate>();
+            for( Map.Entry<String, Integer> pose : counts.getClassCounts( klass ).entrySet() ) {
+                String term = pose.getKey();
+                if( term.length() < 3 ) {
+                    continue;
+                }
+
+                double posValue = pose.getValue();
+                double negValue = counts.getNegativeCount( klass, term );
+                double Nc = counts.getClassSize( klass );
+
+                if( negValue == 0 ) {
+                    negValue = 1.0;
+                    total += 1;
+                    Nc += 1;
+                }
+
+                Candidate candidate = new Candidate();
+                candidate.term = term;
+                candidate.index = candidates.size();
+                candidate.loglikelihood = Math.log( posValue ) - Math.log( Nc ) - Math.log( negValue ) + Math.log( 0.0 + total - Nc );
+                candidate.score = scorer.score( posValue, negValue, Nc, total );
+                candidates.add( candidate );
+            }
+
+            Collections.sort( candidates, BEST_FIRST );
+            int n = options.getMaxFeatures() < 0 ? candidates.size() : Math.min( options.getMaxFeatures(), candidates.size() );
+
+            Map<String, Double> klassloglikelihoods = new HashMap<String, Double>();
+            List<String> features = new ArrayList<String>();
+            for( Candidate candidate : candidates.subList( 0, n ) ) {
+                features.add( candidate.term );
+                klassloglikelihoods.put( candidate.term, candidate.loglikelihood );
+            }
+
+            ret.loglikelihoods.put( klass, klassloglikelihoods );
+            ret.features.put( klass, features );
+        }
+
+        return ret;
+    }
+
+    /**
+        Three classes over a shared vocabulary, each with terms of its own,
+        which are smoothed, and some terms too short to be features.
+    */
+    private static TermCounts counts( Random random )
+    {
+        TermCounts counts = new TermCounts();
+        for( int klass = 0; klass < 3; ++klass ) {
+            counts.addClass( klass );
+            int documents = 20 + 10 * klass;
+            for( int d = 0; d < documents; ++d ) {
+                String[] tokens = new String[10 + random.nextInt( 20 )];
+                for( int i = 0; i < tokens.length; ++i ) {
+                    int r = random.nextInt( 10 );
+                    if( r == 0 ) {
+                        tokens[i] = "c" + klass + "own" + random.nextInt( 15 );
+                    }
+                    else if( r == 1 ) {
+                        tokens[i] = "s" + random.nextInt( 5 );
+                    }
+                    else {
+                        tokens[i] = "word" + random.nextInt( 60 );
+                    }
+                }
+                counts.add( klass, tokens );
+            }
+        }
+        return counts;
+    }
+
+    public void testSameAsReference()
+    {
+        TermCounts counts = counts( new Random( 1 ) );
+        FeatureScorer[] scorers = { FeatureScorers.INFORMATION_GAIN, FeatureScorers.MUTUAL_INFORMATION, FeatureScorers.LIKELIHOOD_RATIO, FeatureScorers.TERM_FREQUENCY };
+        int[] maxFeatures = { -1, 0, 7, 40 };
+
+        for( FeatureScorer scorer : scorers ) {
+            for( int max : maxFeatures ) {
+                TrainingOptions options = new TrainingOptions().setFeatureScorer( scorer ).setMaxFeatures( max );
+                NaiveBayesClassifier expected = reference( counts, options );
+                NaiveBayesClassifier actual = LuceneClassification.learn( counts, options );
+                String message = scorer + " " + max;
+
+                Assert.assertEquals( message, expected.logpriors, actual.logpriors );
+                Assert.assertEquals( message, expected.features, actual.features );
+                Assert.assertEquals( message, expected.loglikelihoods, actual.loglikelihoods );
+            }
+        }
+    }
+
+    /**
+        The terms smoothed in a class add to the total of the classes
+        trained after it, the later priors and weights must see it.
+    */
+    public void testSmoothingCarriesOver()
+    {
+        TermCounts counts = counts( new Random( 2 ) );
+        TrainingOptions options = new TrainingOptions().setMaxFeatures( -1 );
+        NaiveBayesClassifier expected = reference( counts, options );
+        NaiveBayesClassifier actual = LuceneClassification.learn( counts, options );
+
+        int total = counts.getTotalSize();
+        boolean carried = false;
+        for( Integer klass : counts.getClasses() ) {
+            double unsmoothed = Math.log( counts.getClassSize( klass ) ) - Math.log( total - counts.getClassSize( klass ) );
+            if( expected.logpriors.get( klass ) != unsmoothed ) {
+                carried = true;
+            }
+            Assert.assertEquals( expected.logpriors.get( klass ), actual.logpriors.get( klass ) );
+        }
+        Assert.assertTrue( carried );
+        Assert.assertEquals( expected.loglikelihoods, actual.loglikelihoods );
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.Random;
+
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class TestFeatureScorers 
+    extends TestCase
+{
+    public TestFeatureScorers( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TestFeatureScorers.class );
+    }
+
+    public void testColumnar()
+    {
+        Random random = new Random( 1 );
+        int n = 1000;
+        double[] pos = new double[n];
+        double[] neg = new double[n];
+        double[] nc = new double[n];
+        double[] total = new double[n];
+        for( int i = 0; i < n; ++i ) {
+            pos[i] = 1 + random.nextInt( 50 );
+            neg[i] = 1 + random.nextInt( 50 );
+            nc[i] = 100 + random.nextInt( 2 );
+            total[i] = 300 + i / 10;
+        }
+
+        FeatureScorer[] scorers = { FeatureScorers.INFORMATION_GAIN, FeatureScorers.MUTUAL_INFORMATION, FeatureScorers.LIKELIHOOD_RATIO, FeatureScorers.TERM_FREQUENCY };
+        for( FeatureScorer scorer : scorers ) {
+            double[] out = new double[n];
+            ( (ColumnarFeatureScorer) scorer ).score( pos, neg, nc, total, out, n );
+            for( int i = 0; i < n; ++i ) {
+                Assert.assertEquals( scorer.toString(), scorer.score( pos[i], neg[i], nc[i], total[i] ), out[i], 0.0 );
+            }
+        }
+    }
+
+    public void testBest()
+    {
+        double[] scores = { 1.0, 3.0, 2.0, 3.0, 0.5, 2.0 };
+        int[] all = FeatureColumns.best( scores, scores.length, -1 );
+        Assert.assertEquals( "[1, 3, 2, 5, 0, 4]", java.util.Arrays.toString( all ) );
+        Assert.assertEquals( "[1, 3, 2]", java.util.Arrays.toString( FeatureColumns.best( scores, scores.length, 3 ) ) );
+        Assert.assertEquals( 0, FeatureColumns.best( scores, scores.length, 0 ).length );
+    }
+}
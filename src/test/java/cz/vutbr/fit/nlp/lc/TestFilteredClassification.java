@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.QueryWrapperFilter;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.OpenBitSet;
+
+public class TestFilteredClassification 
+    extends TestCase
+{
+    public TestFilteredClassification( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TestFilteredClassification.class );
+    }
+
+    private static class PostingsCounter implements ClassificationListener
+    {
+        long postingsRead;
+        long docFreq;
+
+        public void stepFinished( StepStatistics statistics ) {
+            postingsRead += statistics.postingsRead;
+            docFreq += statistics.docFreq;
+        }
+
+        public void learnFinished( LearnStatistics statistics ) {
+        }
+    }
+
+    private IndexReader reader;
+    private NaiveBayesClassifier nbc;
+    private Map<Integer, Double> all;
+
+    protected void setUp() throws Exception
+    {
+        reader = TestLuceneClassification.openRandomIndex( 1000, 3 );
+        nbc = LuceneClassification.learnBinary( reader, TestLuceneClassification.randomTrainingSet( 100 ), "lemmas", 0, new TrainingOptions() );
+        all = new LuceneClassification( reader, nbc, "lemmas", 0 ).steps( null, 10 ).getId2LogScore();
+    }
+
+    /**
+        Steps with the bits as the filter, checks only the documents of the bits are scored the same.
+        @return the postings read.
+    */
+    private long assertFiltered( OpenBitSet bits ) throws java.io.IOException
+    {
+        LuceneClassification classification = new LuceneClassification( reader, nbc, "lemmas", 0 );
+        PostingsCounter counter = new PostingsCounter();
+        classification.addListener( counter );
+        classification.setFilter( bits );
+        Map<Integer, Double> filtered = classification.steps( null, 10 ).getId2LogScore();
+
+        int expected = 0;
+        for( Map.Entry<Integer, Double> entry : all.entrySet() ) {
+            if( bits.get( entry.getKey() ) ) {
+                Assert.assertEquals( entry.getValue(), filtered.get( entry.getKey() ) );
+                ++expected;
+            }
+        }
+        Assert.assertEquals( expected, filtered.size() );
+        return counter.postingsRead;
+    }
+
+    public void testSparse() throws java.io.IOException
+    {
+        OpenBitSet bits = new OpenBitSet( reader.maxDoc() );
+        for( int i = 0; i < reader.maxDoc(); i += 25 ) {
+            bits.set( i );
+        }
+        LuceneClassification classification = new LuceneClassification( reader, nbc, "lemmas", 0 );
+        PostingsCounter counter = new PostingsCounter();
+        classification.addListener( counter );
+        classification.steps( null, 10 );
+
+        // the postings of the other documents are skipped
+        Assert.assertTrue( assertFiltered( bits ) < counter.docFreq / 10 );
+    }
+
+    public void testDense() throws java.io.IOException
+    {
+        OpenBitSet bits = new OpenBitSet( reader.maxDoc() );
+        for( int i = 0; i < reader.maxDoc(); i += 2 ) {
+            bits.set( i );
+        }
+        assertFiltered( bits );
+    }
+
+    public void testQueryFilter() throws java.io.IOException
+    {
+        LuceneClassification classification = new LuceneClassification( reader, nbc, "lemmas", 0 );
+        classification.setFilter( new QueryWrapperFilter( new TermQuery( new Term( "lemmas", "word7" ) ) ) );
+        Map<Integer, Double> filtered = classification.steps( null, 10 ).getId2LogScore();
+
+        Assert.assertFalse( filtered.isEmpty() );
+        for( Map.Entry<Integer, Double> entry : filtered.entrySet() ) {
+            Assert.assertTrue( Arrays.asList( reader.document( entry.getKey() ).get( "lemmas" ).split( " " ) ).contains( "word7" ) );
+            Assert.assertEquals( all.get( entry.getKey() ), entry.getValue() );
+        }
+
+        classification.setFilter( new QueryWrapperFilter( new TermQuery( new Term( "lemmas", "nonexistent" ) ) ) );
+        Assert.assertTrue( classification.steps( null, 10 ).getId2LogScore().isEmpty() );
+    }
+
+    public void testExcluded() throws java.io.IOException
+    {
+        LuceneClassification classification = new LuceneClassification( reader, nbc, "lemmas", 0 );
+        classification.setExcluded( TestLuceneClassification.randomTrainingSet( 100 ).get( 0 ) );
+        Map<Integer, Double> scores = classification.steps( null, 10 ).getId2LogScore();
+
+        for( Map.Entry<Integer, Double> entry : all.entrySet() ) {
+            int docid = entry.getKey();
+            if( docid < 100 && docid % 2 == 0 ) {
+                Assert.assertFalse( scores.containsKey( docid ) );
+            }
+            else {
+                Assert.assertEquals( entry.getValue(), scores.get( docid ) );
+            }
+        }
+    }
+}
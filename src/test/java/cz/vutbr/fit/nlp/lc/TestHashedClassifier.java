@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.lucene.index.IndexReader;
+
+public class TestHashedClassifier 
+    extends TestCase
+{
+    public TestHashedClassifier( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TestHashedClassifier.class );
+    }
+
+    /**
+        @return the number of the features with a weight, the buckets used without collisions.
+    */
+    private static int weighted( NaiveBayesClassifier nbc )
+    {
+        int n = 0;
+        for( String feature : nbc.features.get( 0 ) ) {
+            if( (float) nbc.loglikelihoods.get( 0 ).get( feature ).doubleValue() != 0.0f ) {
+                ++n;
+            }
+        }
+        return n;
+    }
+
+    public void testHash() throws Exception
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 300, 1 );
+        NaiveBayesClassifier nbc = LuceneClassification.learnBinary( reader, TestLuceneClassification.randomTrainingSet( 60 ), "lemmas", 0, new TrainingOptions() );
+
+        HashedClassifier hc = HashedClassifier.hash( nbc, 0, 20 );
+        Assert.assertEquals( 0, hc.getCollisions() );
+        Assert.assertEquals( weighted( nbc ), hc.getUsedBuckets() );
+        Assert.assertEquals( nbc.logpriors.get( 0 ), hc.getLogPrior() );
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream( bytes );
+        out.writeObject( hc );
+        out.close();
+        HashedClassifier read = (HashedClassifier) new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ).readObject();
+
+        for( int docid = 0; docid < 100; ++docid ) {
+            String text = reader.document( docid ).get( "lemmas" );
+            double expected = LuceneClassification.classify( nbc, text, 0, -1 );
+            // the weights are floats
+            Assert.assertEquals( expected, hc.classify( text ), 1e-4 );
+            Assert.assertEquals( hc.classify( text ), hc.classify( Arrays.asList( text.split( " " ) ) ) );
+            Assert.assertEquals( hc.classify( text ), read.classify( text ) );
+        }
+
+        // 4 buckets for the 20 words
+        HashedClassifier small = HashedClassifier.hash( nbc, 0, 2 );
+        Assert.assertTrue( small.getCollisions() > 0 );
+        Assert.assertTrue( small.getUsedBuckets() <= 4 );
+    }
+
+    public void testLearn() throws Exception
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 300, 1 );
+        NaiveBayesClassifier nbc = LuceneClassification.learnBinary( reader, TestLuceneClassification.randomTrainingSet( 60 ), "lemmas", 0, new TrainingOptions() );
+        HashedClassifier hc = HashedClassifier.learn( reader, TestLuceneClassification.randomTrainingSet( 60 ), "lemmas", 0, 20, new TrainingOptions() );
+
+        Assert.assertFalse( hc.isSigned() );
+        Assert.assertEquals( nbc.logpriors.get( 0 ), hc.getLogPrior(), 1e-12 );
+        Assert.assertEquals( weighted( nbc ), hc.getUsedBuckets() );
+
+        // the same terms counted, only the smoothing may add up in another order
+        int agree = 0;
+        for( int docid = 100; docid < 300; ++docid ) {
+            String text = reader.document( docid ).get( "lemmas" );
+            if( ( LuceneClassification.classify( nbc, text, 0, -1 ) > 0 ) == ( hc.classify( text ) > 0 ) ) {
+                ++agree;
+            }
+        }
+        Assert.assertTrue( "" + agree, agree > 190 );
+
+        try {
+            HashedClassifier.hash( nbc, 0, 31 );
+            fail( "Hashed to 2^31 buckets" );
+        }
+        catch( IllegalArgumentException e ) {
+        }
+
+        // only the documents of the class, the prior would be infinite
+        Map<Integer, Set<Integer>> positives = TestLuceneClassification.randomTrainingSet( 60 );
+        positives.get( 1 ).clear();
+        try {
+            HashedClassifier.learn( reader, positives, "lemmas", 0, 20, new TrainingOptions() );
+            fail( "Learned without negatives" );
+        }
+        catch( IllegalArgumentException e ) {
+        }
+    }
+}
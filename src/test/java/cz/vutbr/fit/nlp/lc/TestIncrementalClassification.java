@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.List;
+
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.RAMDirectory;
+
+public class TestIncrementalClassification 
+    extends TestCase
+{
+    public TestIncrementalClassification( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TestIncrementalClassification.class );
+    }
+
+    static void add( IndexWriter writer, int from, int to )
+        throws java.io.IOException
+    {
+        for( int i = from; i < to; ++i ) {
+            String text = TestLuceneClassification.testDocuments[i % TestLuceneClassification.testDocuments.length];
+            Document doc = new Document();
+            doc.add( new Field( "id", "" + i, Field.Store.YES, Field.Index.NOT_ANALYZED ) );
+            doc.add( new Field( "lemmas", text, Field.Store.YES, Field.Index.ANALYZED ) );
+            writer.addDocument( doc );
+        }
+        writer.commit();
+    }
+
+    static void assertSameTop( IndexReader reader, NaiveBayesClassifier nbc, List<ScoredDocument> top )
+        throws java.io.IOException
+    {
+        LuceneClassification classification = new LuceneClassification( reader, nbc, "lemmas", 1 );
+        LuceneClassification.Iteration iter = classification.steps( null, 100 );
+        for( ScoredDocument doc : top ) {
+            Assert.assertFalse( reader.isDeleted( doc.getDoc() ) );
+            Assert.assertEquals( iter.getLogScore( doc.getDoc() ), doc.getScore(), 1e-9 );
+        }
+    }
+
+    public void testReopen() throws java.io.IOException
+    {
+        IndexReader training = TestLuceneClassification.openTestIndex();
+        NaiveBayesClassifier nbc = LuceneClassification.learn( training, TestLuceneClassification.trainingSet( training ), "lemmas" );
+
+        RAMDirectory dir = new RAMDirectory();
+        IndexWriter writer = new IndexWriter( dir, new WhitespaceAnalyzer(), true, IndexWriter.MaxFieldLength.LIMITED );
+        add( writer, 0, 16 );
+
+        IndexReader reader = IndexReader.open( dir, true );
+        IncrementalClassification classification = new IncrementalClassification( nbc, "lemmas", 1, 100 );
+        Assert.assertEquals( 1, classification.update( reader ) );
+        assertSameTop( reader, nbc, classification.top( 5 ) );
+
+        // a new segment
+        add( writer, 16, 24 );
+        IndexReader reopened = reader.reopen();
+        Assert.assertEquals( 1, classification.update( reopened ) );
+        Assert.assertEquals( 2, classification.getSegmentCount() );
+        Assert.assertEquals( 0, classification.getDroppedSegments() );
+        assertSameTop( reopened, nbc, classification.top( 30 ) );
+        reader.close();
+        reader = reopened;
+
+        // deletions only, nothing to score, the deleted documents are gone
+        int best = classification.top( 1 ).get( 0 ).getDoc();
+        String bestId = reader.document( best ).get( "id" );
+        writer.deleteDocuments( new Term( "id", bestId ) );
+        writer.commit();
+        reopened = reader.reopen();
+        Assert.assertEquals( 0, classification.update( reopened ) );
+        Assert.assertTrue( Double.isNaN( classification.score( best ) ) );
+        assertSameTop( reopened, nbc, classification.top( 30 ) );
+        reader.close();
+        reader = reopened;
+
+        // a merge replaces the segments
+        writer.optimize();
+        writer.close();
+        reopened = reader.reopen();
+        Assert.assertEquals( 1, classification.update( reopened ) );
+        Assert.assertEquals( 2, classification.getDroppedSegments() );
+        assertSameTop( reopened, nbc, classification.top( 30 ) );
+
+        classification.release();
+        reopened.close();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+
+public class TestIndexWarmer 
+    extends TestCase
+{
+    public TestIndexWarmer( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TestIndexWarmer.class );
+    }
+
+    public void testWarm() throws java.io.IOException
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 300, 1 );
+        NaiveBayesClassifier nbc = LuceneClassification.learn( reader, TestLuceneClassification.randomTrainingSet( 60 ), "lemmas" );
+
+        IndexWarmer warmer = new IndexWarmer( "lemmas" ).addFeatures( nbc, 0, 10 ).setStoredDocuments( 7 );
+        warmer.warm( reader );
+
+        int postings = 0;
+        List<String> features = nbc.features.get( 0 );
+        for( String feature : features.subList( 0, 10 ) ) {
+            postings += reader.docFreq( new Term( "lemmas", feature ) );
+        }
+        Assert.assertEquals( postings, warmer.getPostingsRead() );
+        Assert.assertEquals( 7, warmer.getDocumentsLoaded() );
+    }
+
+    public void testFrequentTerms() throws java.io.IOException
+    {
+        IndexReader reader = TestLuceneClassification.openTestIndex();
+
+        IndexWarmer warmer = new IndexWarmer( "lemmas" ).setFrequentTerms( 1 );
+        warmer.warm( reader );
+
+        // the postings of the one most frequent term
+        int max = 0;
+        TermEnum terms = reader.terms( new Term( "lemmas", "" ) );
+        do {
+            if( terms.term() == null || !"lemmas".equals( terms.term().field() ) ) break;
+            max = Math.max( max, terms.docFreq() );
+        } while( terms.next() );
+        terms.close();
+
+        Assert.assertTrue( max > 0 );
+        Assert.assertEquals( max, warmer.getPostingsRead() );
+
+        warmer.addTerms( Arrays.asList( "nonexistent" ) );
+        warmer.warm( reader );
+        Assert.assertEquals( max, warmer.getPostingsRead() );
+    }
+
+    public void testDirectoryType()
+    {
+        Assert.assertEquals( DirectoryType.MMAP, DirectoryType.parse( "mmap" ) );
+        Assert.assertEquals( DirectoryType.RAM, DirectoryType.parse( "RAM" ) );
+        try {
+            DirectoryType.parse( "tape" );
+            fail( "Parsed an unknown directory" );
+        }
+        catch( IllegalArgumentException e ) {
+        }
+    }
+}
@@ -32,7 +32,10 @@
 
 package cz.vutbr.fit.nlp.lc;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -68,7 +71,10 @@ public class TestLuceneClassification
     static final String[] testDocuments = {"aaa bbb", "aaa ccc", "ccc ddd", "aaa eee", "ccc eee", "ddd eee", "fff ggg", "ddd aaa"};
     static final int[] testDocumentClasses = {1, 1, 0, 1, 0, 0, 0, 1};
 
-    public void testSearch() throws java.io.IOException
+    /**
+        Indexes the test documents into a RAM directory.
+    */
+    static IndexReader openTestIndex() throws java.io.IOException
     {
         // Open the writer
         IndexWriter writer;
@@ -88,9 +94,60 @@ public class TestLuceneClassification
         writer.close();
 
         // open the reader
-        IndexReader reader;        
-        reader = IndexReader.open( dir );
+        return IndexReader.open( dir );
+    }
+
+    /**
+        Indexes n random documents, the even ones belong to class 0 and tend
+        to contain the words from the first half of the vocabulary, the odd
+        ones to class 1 with the words from the second half.
+    */
+    static IndexReader openRandomIndex( int n, long seed ) throws java.io.IOException
+    {
+        Random random = new Random( seed );
+        RAMDirectory dir = new RAMDirectory();
+        IndexWriter writer = new IndexWriter( dir, new WhitespaceAnalyzer(), true, IndexWriter.MaxFieldLength.LIMITED );
+
+        for( int i = 0; i < n; ++i ) {
+            StringBuilder sb = new StringBuilder();
+            int length = 5 + random.nextInt( 10 );
+            for( int j = 0; j < length; ++j ) {
+                int word = random.nextInt( 20 );
+                if( random.nextInt( 3 ) == 0 ) {
+                    word = word / 2 + ( i % 2 == 0 ? 0 : 10 );
+                }
+                sb.append( "word" + word + " " );
+            }
+
+            Document doc = new Document();
+            doc.add( new Field( "id", "" + i, Field.Store.YES, Field.Index.NOT_ANALYZED ) );
+            doc.add( new Field( "lemmas", sb.toString().trim(), Field.Store.YES, Field.Index.ANALYZED ) );
+            writer.addDocument( doc );
+        }
 
+        writer.close();
+        return IndexReader.open( dir );
+    }
+
+    /**
+        Labels the first m random documents for training.
+    */
+    static Map<Integer, Set<Integer>> randomTrainingSet( int m )
+    {
+        Map<Integer, Set<Integer>> class2ids = new HashMap<Integer, Set<Integer>>();
+        class2ids.put( 0, new HashSet<Integer> () );
+        class2ids.put( 1, new HashSet<Integer> () );
+        for( int i = 0; i < m; ++i ) {
+            class2ids.get( i % 2 ).add( i );
+        }
+        return class2ids;
+    }
+
+    /**
+        Labels the first n / 2 test documents for training.
+    */
+    static Map<Integer, Set<Integer>> trainingSet( IndexReader reader ) throws java.io.IOException
+    {
         // we use the first n / 2 documents for training
         Map<Integer, Set<Integer>> class2ids = new HashMap<Integer, Set<Integer>>();
         class2ids.put( 0, new HashSet<Integer> () );
@@ -109,6 +166,14 @@ public class TestLuceneClassification
             class2ids.get( testDocumentClasses[i] ).add( docid );
         }
 
+        return class2ids;
+    }
+
+    public void testSearch() throws java.io.IOException
+    {
+        IndexReader reader = openTestIndex();
+        Map<Integer, Set<Integer>> class2ids = trainingSet( reader );
+
         NaiveBayesClassifier nbc;
         nbc = LuceneClassification.learn( reader, class2ids, "lemmas" );
 
@@ -135,6 +200,169 @@ public class TestLuceneClassification
             System.err.println( "" + id + ": " + score );    
             Assert.assertTrue( (score > 0.0) == (testDocumentClasses[id] == 1) );
         }
-    } 
-}
+    }
 
+    public void testListener() throws java.io.IOException
+    {
+        IndexReader reader = openTestIndex();
+
+        final List<StepStatistics> steps = new ArrayList<StepStatistics>();
+        final List<LearnStatistics> learns = new ArrayList<LearnStatistics>();
+        ClassificationListener listener = new ClassificationListener() {
+            public void stepFinished( StepStatistics statistics ) {
+                steps.add( statistics );
+            }
+
+            public void learnFinished( LearnStatistics statistics ) {
+                learns.add( statistics );
+            }
+        };
+
+        NaiveBayesClassifier nbc = LuceneClassification.learn( reader, trainingSet( reader ), "lemmas", listener );
+        Assert.assertEquals( 1, learns.size() );
+        Assert.assertEquals( testDocumentClasses.length / 2, learns.get( 0 ).getDocuments() );
+
+        LuceneClassification classification = new LuceneClassification( reader, nbc, "lemmas", 1 );
+        classification.addListener( listener );
+        LuceneClassification.Iteration iter = classification.steps( null, classification.getFeatures().size() );
+
+        Assert.assertEquals( classification.getFeatures().size(), steps.size() );
+
+        int newDocuments = 0;
+        for( StepStatistics s : steps ) {
+            Assert.assertEquals( s.getDocFreq(), s.getPostingsRead() );
+            newDocuments += s.getNewDocuments();
+        }
+        Assert.assertEquals( iter.getId2LogScore().size(), newDocuments );
+        Assert.assertEquals( iter.getId2LogScore().size(), steps.get( steps.size() - 1 ).getAccumulatorSize() );
+    }
+
+    public void testMaxFeatures() throws java.io.IOException
+    {
+        IndexReader reader = openRandomIndex( 200, 1 );
+        Map<Integer, Set<Integer>> class2ids = randomTrainingSet( 100 );
+
+        NaiveBayesClassifier all = LuceneClassification.learn( reader, class2ids, "lemmas" );
+        NaiveBayesClassifier best = LuceneClassification.learn( reader, class2ids, "lemmas", new TrainingOptions().setMaxFeatures( 5 ) );
+
+        for( int klass = 0; klass < 2; ++klass ) {
+            List<String> features = best.features.get( klass );
+            Assert.assertEquals( all.features.get( klass ).subList( 0, 5 ), features );
+            Assert.assertEquals( 5, best.loglikelihoods.get( klass ).size() );
+            for( String feature : features ) {
+                Assert.assertEquals( all.loglikelihoods.get( klass ).get( feature ), best.loglikelihoods.get( klass ).get( feature ) );
+            }
+        }
+
+        LuceneClassification classification = new LuceneClassification( reader, best, "lemmas", 1 );
+        Assert.assertEquals( 5, classification.steps( null, 100 ).getIteration() + 1 );
+    }
+
+    public void testNegativeEstimate() throws java.io.IOException
+    {
+        IndexReader reader = openRandomIndex( 400, 1 );
+        Map<Integer, Set<Integer>> class2ids = randomTrainingSet( 200 );
+        TermCounts exact = TermCounts.count( reader, class2ids, "lemmas" );
+
+        TrainingOptions.NegativeEstimate[] estimates = { TrainingOptions.NegativeEstimate.COLLECTION_STATISTICS, TrainingOptions.NegativeEstimate.RESERVOIR_SAMPLE };
+        for( TrainingOptions.NegativeEstimate estimate : estimates ) {
+            TrainingOptions options = new TrainingOptions().setNegativeEstimate( estimate, 1 ).setSampleSize( 100 );
+            TermCounts counts = TermCounts.count( reader, class2ids, "lemmas", options );
+
+            Assert.assertEquals( exact.getClassCounts( 0 ), counts.getClassCounts( 0 ) );
+            Assert.assertEquals( exact.getClassSize( 1 ), counts.getClassSize( 1 ) );
+
+            // the unlabelled documents are drawn from both classes, so only
+            // the order of the counts can be checked
+            for( String term : exact.getClassCounts( 0 ).keySet() ) {
+                int truth = exact.getNegativeCount( 0, term );
+                int estimated = counts.getNegativeCount( 0, term );
+                Assert.assertTrue( estimate + " " + term + " " + truth + " " + estimated, estimated > truth / 4 && estimated < truth * 4 );
+            }
+
+            NaiveBayesClassifier nbc = LuceneClassification.learn( counts, options );
+            Assert.assertFalse( nbc.features.get( 0 ).isEmpty() );
+        }
+    }
+
+    /**
+        With all the unlabelled documents negative, the collection statistics
+        are exact, counting the occurrences, also of the terms repeated in a
+        document, and not the deleted documents.
+    */
+    public void testCollectionStatisticsOccurrences() throws java.io.IOException
+    {
+        IndexReader reader = openRandomIndex( 400, 3 );
+        reader.deleteDocument( 399 );
+        Map<Integer, Set<Integer>> class2ids = new HashMap<Integer, Set<Integer>>();
+        class2ids.put( 0, new HashSet<Integer>() );
+        class2ids.put( 1, new HashSet<Integer>() );
+        for( int i = 0; i < 399; ++i ) {
+            class2ids.get( i % 2 == 0 && i < 200 ? 0 : 1 ).add( i );
+        }
+
+        TermCounts exact = TermCounts.count( reader, class2ids, "lemmas" );
+        TrainingOptions options = new TrainingOptions().setNegativeEstimate( TrainingOptions.NegativeEstimate.COLLECTION_STATISTICS, 1 );
+        TermCounts counts = TermCounts.count( reader, class2ids, "lemmas", options );
+
+        boolean repeated = false;
+        for( String term : exact.getClassCounts( 0 ).keySet() ) {
+            Assert.assertEquals( term, exact.getNegativeCount( 0, term ), counts.getNegativeCount( 0, term ) );
+            repeated |= TermCounts.occurrences( reader, new Term( "lemmas", term ) ) > reader.docFreq( new Term( "lemmas", term ) );
+        }
+        Assert.assertTrue( repeated );
+        Assert.assertEquals( exact.getClassSize( 1 ), counts.getClassSize( 1 ) );
+    }
+
+    public void testFrozen() throws java.io.IOException
+    {
+        IndexReader reader = openRandomIndex( 100, 1 );
+        NaiveBayesClassifier nbc = LuceneClassification.learn( reader, randomTrainingSet( 40 ), "lemmas" );
+        Assert.assertTrue( nbc.isFrozen() );
+        try {
+            nbc.loglikelihoods.get( 0 ).put( "word1", 1.0 );
+            Assert.fail();
+        }
+        catch( UnsupportedOperationException e ) {
+        }
+
+        // the changes of a classifier not frozen are seen by the next classify
+        NaiveBayesClassifier manual = new NaiveBayesClassifier();
+        Map<String, Double> loglikelihoods = new HashMap<String, Double>();
+        loglikelihoods.put( "a", 1.0 );
+        loglikelihoods.put( "b", 2.0 );
+        List<String> features = new ArrayList<String>();
+        features.add( "a" );
+        features.add( "b" );
+        manual.logpriors.put( 0, 0.0 );
+        manual.loglikelihoods.put( 0, loglikelihoods );
+        manual.features.put( 0, features );
+
+        Assert.assertEquals( 4.0, LuceneClassification.classify( manual, "a b a", 0, -1 ), 0.0 );
+        loglikelihoods.put( "a", 5.0 );
+        Assert.assertEquals( 12.0, LuceneClassification.classify( manual, "a b a", 0, -1 ), 0.0 );
+
+        manual.freeze();
+        Assert.assertEquals( 12.0, LuceneClassification.classify( manual, "a b a", 0, -1 ), 0.0 );
+        Assert.assertEquals( 10.0, LuceneClassification.classify( manual, "a b a", 0, 1 ), 0.0 );
+    }
+
+    public void testBinary() throws java.io.IOException
+    {
+        IndexReader reader = openRandomIndex( 200, 1 );
+        Map<Integer, Set<Integer>> class2ids = randomTrainingSet( 100 );
+
+        NaiveBayesClassifier full = LuceneClassification.learn( reader, class2ids, "lemmas" );
+        BinaryNaiveBayesClassifier binary = LuceneClassification.learnBinary( reader, class2ids, "lemmas", 0, new TrainingOptions() );
+
+        Assert.assertEquals( 0, binary.getKlass() );
+        Assert.assertFalse( binary.features.containsKey( 1 ) );
+        Assert.assertEquals( full.features.get( 0 ), binary.features.get( 0 ) );
+        Assert.assertEquals( full.loglikelihoods.get( 0 ), binary.loglikelihoods.get( 0 ) );
+        Assert.assertEquals( full.logpriors.get( 0 ), binary.getLogPrior(), 0.0 );
+
+        LuceneClassification a = new LuceneClassification( reader, full, "lemmas", 0 );
+        LuceneClassification b = new LuceneClassification( reader, binary, "lemmas", 0 );
+        Assert.assertEquals( a.steps( null, 10 ).getId2LogScore(), b.steps( null, 10 ).getId2LogScore() );
+    }
+}
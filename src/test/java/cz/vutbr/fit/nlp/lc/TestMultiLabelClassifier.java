@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.lucene.index.IndexReader;
+
+public class TestMultiLabelClassifier 
+    extends TestCase
+{
+    public TestMultiLabelClassifier( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TestMultiLabelClassifier.class );
+    }
+
+    public void testClassify() throws java.io.IOException
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 300, 1 );
+
+        // three classes by the docid modulo 3
+        Map<Integer, Set<Integer>> class2ids = new HashMap<Integer, Set<Integer>>();
+        for( int i = 0; i < 150; ++i ) {
+            if( !class2ids.containsKey( i % 3 ) ) {
+                class2ids.put( i % 3, new HashSet<Integer>() );
+            }
+            class2ids.get( i % 3 ).add( i );
+        }
+
+        NaiveBayesClassifier nbc = LuceneClassification.learn( reader, class2ids, "lemmas" );
+        MultiLabelClassifier classifier = new MultiLabelClassifier();
+        classifier.add( nbc, 20 );
+        Assert.assertEquals( 3, classifier.getClassCount() );
+
+        for( int doc = 150; doc < 200; ++doc ) {
+            List<String> tokens = Arrays.asList( reader.document( doc ).get( "lemmas" ).split( " " ) );
+            List<ScoredClass> top = classifier.classify( tokens, 3 );
+
+            for( int i = 0; i < top.size(); ++i ) {
+                ScoredClass c = top.get( i );
+                Assert.assertEquals( LuceneClassification.classify( nbc, tokens, c.getKlass(), 20 ), c.getScore(), 1e-9 );
+                if( i > 0 ) {
+                    Assert.assertTrue( top.get( i - 1 ).getScore() >= c.getScore() );
+                }
+            }
+
+            for( ScoredClass c : classifier.classify( tokens ) ) {
+                Assert.assertTrue( c.getScore() > 0.0 );
+            }
+        }
+    }
+}
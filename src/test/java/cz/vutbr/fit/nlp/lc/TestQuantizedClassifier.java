@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.lucene.index.IndexReader;
+
+public class TestQuantizedClassifier 
+    extends TestCase
+{
+    public TestQuantizedClassifier( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TestQuantizedClassifier.class );
+    }
+
+    public void testQuantize() throws Exception
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 200, 1 );
+        Map<Integer, Set<Integer>> class2ids = TestLuceneClassification.randomTrainingSet( 100 );
+        NaiveBayesClassifier nbc = LuceneClassification.learnBinary( reader, class2ids, "lemmas", 0, new TrainingOptions() );
+        QuantizedClassifier qc = QuantizedClassifier.quantize( nbc, 0 );
+
+        Assert.assertEquals( nbc.features.get( 0 ).size(), qc.size() );
+        for( int i = 0; i < qc.size(); ++i ) {
+            String feature = qc.getFeature( i );
+            Assert.assertEquals( nbc.features.get( 0 ).get( i ), feature );
+            Assert.assertEquals( nbc.loglikelihoods.get( 0 ).get( feature ), qc.getWeight( i ) * qc.getScale(), qc.getScale() / 2 );
+        }
+
+        // survives the serialization
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream( bytes );
+        out.writeObject( qc );
+        out.close();
+        QuantizedClassifier read = (QuantizedClassifier) new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ).readObject();
+
+        List<String> document = Arrays.asList( "word1", "word2", "word15", "word1" );
+        Assert.assertEquals( LuceneClassification.classify( nbc, document, 0, -1 ), read.classify( document, -1 ), 4 * qc.getScale() );
+        Assert.assertEquals( qc.classifyQuantized( document, 5 ), read.classifyQuantized( document, 5 ) );
+    }
+
+    public void testSteps() throws Exception
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 200, 1 );
+        Map<Integer, Set<Integer>> class2ids = TestLuceneClassification.randomTrainingSet( 100 );
+        NaiveBayesClassifier nbc = LuceneClassification.learnBinary( reader, class2ids, "lemmas", 0, new TrainingOptions() );
+        QuantizedClassifier qc = QuantizedClassifier.quantize( nbc, 0 );
+
+        LuceneClassification.Iteration iter = new LuceneClassification( reader, nbc, "lemmas", 0 ).steps( null, 10 );
+        QuantizedClassification quantized = new QuantizedClassification( reader, qc, "lemmas" );
+        quantized.steps( 10 );
+
+        Assert.assertEquals( 10, quantized.getIteration() );
+        Assert.assertEquals( iter.getScores().size(), quantized.size() );
+        for( int doc = 0; doc < reader.maxDoc(); ++doc ) {
+            double score = iter.getLogScore( doc );
+            if( Double.isNaN( score ) ) {
+                Assert.assertTrue( Double.isNaN( quantized.getLogScore( doc ) ) );
+            }
+            else {
+                Assert.assertEquals( score, quantized.getLogScore( doc ), 10 * qc.getScale() );
+            }
+        }
+
+        List<ScoredDocument> top = quantized.top( 20 );
+        Assert.assertEquals( 20, top.size() );
+        for( int i = 1; i < top.size(); ++i ) {
+            Assert.assertTrue( top.get( i - 1 ).getScore() >= top.get( i ).getScore() );
+        }
+    }
+}
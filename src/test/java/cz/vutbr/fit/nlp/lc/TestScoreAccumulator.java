@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.lucene.index.IndexReader;
+
+public class TestScoreAccumulator 
+    extends TestCase
+{
+    public TestScoreAccumulator( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TestScoreAccumulator.class );
+    }
+
+    void checkAccumulator( ScoreAccumulator.Factory factory ) throws java.io.IOException
+    {
+        int maxDoc = 3 * DirectScoreAccumulator.PAGE_SIZE + 5;
+        ScoreAccumulator acc = factory.create( maxDoc );
+        int[] docs = { 0, 63, 64, DirectScoreAccumulator.PAGE_SIZE - 1, 2 * DirectScoreAccumulator.PAGE_SIZE + 3, maxDoc - 1 };
+
+        for( int doc : docs ) {
+            Assert.assertTrue( acc.add( doc, 1.5 ) );
+            Assert.assertFalse( acc.add( doc, -0.5 ) );
+        }
+        Assert.assertEquals( docs.length, acc.size() );
+        Assert.assertFalse( acc.contains( 1 ) );
+        Assert.assertTrue( Double.isNaN( acc.score( 1 ) ) );
+
+        Map<Integer, Double> map = acc.asMap();
+        Assert.assertEquals( docs.length, map.size() );
+        for( int doc : docs ) {
+            Assert.assertEquals( 1.0, map.get( doc ), 1e-6 );
+        }
+
+        ScoreAccumulator.Cursor cursor = acc.cursor();
+        int n = 0;
+        while( cursor.next() ) {
+            if( cursor.doc() == 64 ) {
+                cursor.remove();
+            }
+            n++;
+        }
+        Assert.assertEquals( docs.length, n );
+        Assert.assertEquals( docs.length - 1, acc.size() );
+        Assert.assertFalse( acc.contains( 64 ) );
+
+        acc.release();
+    }
+
+    public void testMap() throws java.io.IOException
+    {
+        checkAccumulator( MapScoreAccumulator.FACTORY );
+    }
+
+    public void testDirect() throws java.io.IOException
+    {
+        checkAccumulator( DirectScoreAccumulator.direct() );
+    }
+
+    public void testMapped() throws java.io.IOException
+    {
+        checkAccumulator( DirectScoreAccumulator.mapped( null ) );
+    }
+
+    public void testPersistent() throws java.io.IOException
+    {
+        checkAccumulator( PersistentScoreAccumulator.FACTORY );
+    }
+
+    public void testSuccessor() throws java.io.IOException
+    {
+        int maxDoc = 100000;
+        ScoreAccumulator first = PersistentScoreAccumulator.FACTORY.create( maxDoc );
+        first.add( 1, 1.0 );
+        first.add( 70000, 2.0 );
+
+        ScoreAccumulator second = first.successor();
+        second.add( 1, 1.0 );
+        second.add( 5, 3.0 );
+        second.remove( 70000 );
+
+        // the changes on either side are not seen by the other
+        first.add( 99999, 4.0 );
+
+        Assert.assertEquals( 3, first.size() );
+        Assert.assertEquals( 1.0, first.score( 1 ), 0.0 );
+        Assert.assertFalse( first.contains( 5 ) );
+        Assert.assertEquals( 2.0, first.score( 70000 ), 0.0 );
+
+        Assert.assertEquals( 2, second.size() );
+        Assert.assertEquals( 2.0, second.score( 1 ), 0.0 );
+        Assert.assertEquals( 3.0, second.score( 5 ), 0.0 );
+        Assert.assertFalse( second.contains( 70000 ) );
+        Assert.assertFalse( second.contains( 99999 ) );
+
+        Assert.assertSame( MapScoreAccumulator.FACTORY.create( maxDoc ).successor().getClass(), MapScoreAccumulator.class );
+    }
+
+    public void testIterationSnapshots() throws java.io.IOException
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 300, 2 );
+        NaiveBayesClassifier nbc = LuceneClassification.learn( reader, TestLuceneClassification.randomTrainingSet( 60 ), "lemmas" );
+
+        LuceneClassification classification = new LuceneClassification( reader, nbc, "lemmas", 0 );
+        classification.setAccumulatorFactory( PersistentScoreAccumulator.FACTORY );
+        LuceneClassification.Iteration early = classification.steps( null, 3 );
+        Map<Integer, Double> before = new HashMap<Integer, Double>( early.getId2LogScore() );
+
+        // two branches from the same iteration
+        LuceneClassification.Iteration late = classification.steps( early, 7 );
+        LuceneClassification.Iteration other = classification.steps( early, 7 );
+
+        Assert.assertEquals( before, new HashMap<Integer, Double>( early.getId2LogScore() ) );
+        Assert.assertEquals( late.getId2LogScore(), other.getId2LogScore() );
+
+        classification.setAccumulatorFactory( MapScoreAccumulator.FACTORY );
+        Map<Integer, Double> expected = classification.steps( null, 10 ).getId2LogScore();
+        Assert.assertEquals( expected.size(), late.getScores().size() );
+        for( Map.Entry<Integer, Double> entry : expected.entrySet() ) {
+            Assert.assertEquals( entry.getValue(), late.getLogScore( entry.getKey() ), 0.0 );
+        }
+    }
+
+    public void testClassification() throws java.io.IOException
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 300, 2 );
+        NaiveBayesClassifier nbc = LuceneClassification.learn( reader, TestLuceneClassification.randomTrainingSet( 60 ), "lemmas" );
+
+        LuceneClassification classification = new LuceneClassification( reader, nbc, "lemmas", 0 );
+        Map<Integer, Double> expected = new HashMap<Integer, Double>( classification.steps( null, 10 ).getId2LogScore() );
+
+        classification.setAccumulatorFactory( DirectScoreAccumulator.direct() );
+        LuceneClassification.Iteration iter = classification.steps( null, 10 );
+
+        Assert.assertEquals( expected.size(), iter.getScores().size() );
+        for( Map.Entry<Integer, Double> entry : expected.entrySet() ) {
+            Assert.assertEquals( entry.getValue(), iter.getLogScore( entry.getKey() ), 1e-4 );
+        }
+        iter.release();
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.RAMDirectory;
+
+public class TestShardedClassification 
+    extends TestCase
+{
+    public TestShardedClassification( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TestShardedClassification.class );
+    }
+
+    /**
+        Splits the documents of the reader to the shards of the given sizes, in order.
+    */
+    private static List<ShardedClassification.Shard> split( IndexReader reader, int[] sizes ) throws IOException
+    {
+        List<ShardedClassification.Shard> shards = new ArrayList<ShardedClassification.Shard>();
+        int docid = 0;
+        for( int size : sizes ) {
+            RAMDirectory dir = new RAMDirectory();
+            IndexWriter writer = new IndexWriter( dir, new WhitespaceAnalyzer(), true, IndexWriter.MaxFieldLength.LIMITED );
+            for( int i = 0; i < size; ++i ) {
+                Document doc = reader.document( docid++ );
+                writer.addDocument( doc );
+            }
+            writer.close();
+            shards.add( new ShardedClassification.LocalShard( IndexReader.open( dir, true ), true ) );
+        }
+        return shards;
+    }
+
+    private static void assertSameTop( List<ScoredDocument> expected, List<ShardedClassification.Hit> hits )
+    {
+        Assert.assertEquals( expected.size(), hits.size() );
+        for( int i = 0; i < hits.size(); ++i ) {
+            Assert.assertEquals( expected.get( i ).getDoc(), hits.get( i ).getGlobalDoc() );
+            Assert.assertEquals( expected.get( i ).getScore(), hits.get( i ).getScore(), 1e-9 );
+        }
+    }
+
+    public void testMerge() throws IOException
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 300, 1 );
+        NaiveBayesClassifier nbc = LuceneClassification.learnBinary( reader, TestLuceneClassification.randomTrainingSet( 60 ), "lemmas", 0, new TrainingOptions() );
+
+        ClassificationSession session = new ClassificationEngine( reader, nbc, "lemmas", 0, 1 ).openSession();
+        session.steps( 10 );
+        List<ScoredDocument> expected = session.top( 25 );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 3 );
+        ShardedClassification sharded = new ShardedClassification( split( reader, new int[] { 120, 80, 100 } ), executor );
+        try {
+            Assert.assertEquals( 300, sharded.maxDoc() );
+            List<ShardedClassification.Hit> hits = sharded.top( nbc, "lemmas", 0, 10, 25, "id" );
+            assertSameTop( expected, hits );
+            for( ShardedClassification.Hit hit : hits ) {
+                // the global docids are the ones of the index split
+                Assert.assertEquals( reader.document( hit.getGlobalDoc() ).get( "id" ), hit.getId() );
+                Assert.assertEquals( hit.getGlobalDoc(), hit.getDoc() + ( hit.getShard() == 0 ? 0 : hit.getShard() == 1 ? 120 : 200 ) );
+                Assert.assertEquals( session.getLogScore( hit.getGlobalDoc() ), hit.getScore(), 1e-9 );
+            }
+        }
+        finally {
+            session.close();
+            executor.shutdown();
+            sharded.close();
+        }
+    }
+
+    public void testRemote() throws Exception
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 200, 2 );
+        NaiveBayesClassifier nbc = LuceneClassification.learnBinary( reader, TestLuceneClassification.randomTrainingSet( 40 ), "lemmas", 0, new TrainingOptions() );
+
+        final ShardedClassification.LocalShard local = new ShardedClassification.LocalShard( reader );
+        final ServerSocket serverSocket = new ServerSocket( 0, 50, InetAddress.getByName( "127.0.0.1" ) );
+        Thread worker = new Thread() {
+            public void run() {
+                try {
+                    Socket socket = serverSocket.accept();
+                    ShardedClassification.serve( local, socket );
+                    socket.close();
+                }
+                catch( IOException e ) {
+                }
+            }
+        };
+        worker.start();
+
+        ShardedClassification.RemoteShard remote = new ShardedClassification.RemoteShard( "127.0.0.1", serverSocket.getLocalPort() );
+        try {
+            Assert.assertEquals( 200, remote.maxDoc() );
+            List<ShardedClassification.Hit> expected = local.top( nbc, "lemmas", 0, 8, 15, "id" );
+            // the first request sends the classifier, the second one reuses it
+            for( int i = 0; i < 2; ++i ) {
+                List<ShardedClassification.Hit> hits = remote.top( nbc, "lemmas", 0, 8, 15, "id" );
+                Assert.assertEquals( expected.size(), hits.size() );
+                for( int j = 0; j < hits.size(); ++j ) {
+                    Assert.assertEquals( expected.get( j ).getDoc(), hits.get( j ).getDoc() );
+                    Assert.assertEquals( expected.get( j ).getScore(), hits.get( j ).getScore() );
+                    Assert.assertEquals( expected.get( j ).getId(), hits.get( j ).getId() );
+                }
+            }
+        }
+        finally {
+            remote.close();
+            worker.join( 5000 );
+            serverSocket.close();
+            local.close();
+        }
+    }
+
+    public void testClassifierData() throws IOException
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 200, 3 );
+        NaiveBayesClassifier nbc = LuceneClassification.learn( reader, TestLuceneClassification.randomTrainingSet( 40 ), "lemmas", new TrainingOptions().setMaxFeatures( 30 ) );
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bytes );
+        ShardedClassification.writeClassifier( nbc, out );
+        out.flush();
+        NaiveBayesClassifier read = ShardedClassification.readClassifier( new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) );
+
+        Assert.assertEquals( nbc.logpriors, read.logpriors );
+        Assert.assertEquals( nbc.features, read.features );
+        Assert.assertEquals( nbc.loglikelihoods, read.loglikelihoods );
+    }
+
+    public void testInvalidClassifier() throws Exception
+    {
+        int[] lengths = { -1, Integer.MAX_VALUE, ShardedClassification.MAX_CLASSES + 1 };
+        for( int length : lengths ) {
+            try {
+                ShardedClassification.readClassifier( new DataInputStream( new ByteArrayInputStream( new byte[] { (byte) ( length >>> 24 ), (byte) ( length >>> 16 ), (byte) ( length >>> 8 ), (byte) length } ) ) );
+                Assert.fail( "" + length );
+            }
+            catch( StreamCorruptedException e ) {
+            }
+        }
+
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 50, 2 );
+        final ShardedClassification.LocalShard local = new ShardedClassification.LocalShard( reader );
+        final ServerSocket serverSocket = new ServerSocket( 0, 50, InetAddress.getByName( "127.0.0.1" ) );
+        Thread worker = new Thread() {
+            public void run() {
+                try {
+                    Socket socket = serverSocket.accept();
+                    ShardedClassification.serve( local, socket );
+                    socket.close();
+                }
+                catch( IOException e ) {
+                }
+            }
+        };
+        worker.start();
+
+        Socket socket = new Socket( "127.0.0.1", serverSocket.getLocalPort() );
+        try {
+            DataOutputStream out = new DataOutputStream( socket.getOutputStream() );
+            out.writeByte( ShardedClassification.CLASSIFIER );
+            out.writeUTF( "key" );
+            // one class with a negative number of features
+            out.writeInt( 1 );
+            out.writeInt( 0 );
+            out.writeDouble( 0.0 );
+            out.writeInt( -5 );
+            out.flush();
+
+            DataInputStream in = new DataInputStream( socket.getInputStream() );
+            Assert.assertEquals( ShardedClassification.ERROR, in.readByte() );
+            Assert.assertTrue( in.readUTF().indexOf( "-5" ) >= 0 );
+            // the worker closed the connection
+            Assert.assertEquals( -1, in.read() );
+        }
+        finally {
+            socket.close();
+            worker.join( 5000 );
+            serverSocket.close();
+            local.close();
+        }
+    }
+}
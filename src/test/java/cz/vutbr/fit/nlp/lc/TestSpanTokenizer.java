@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.lucene.index.IndexReader;
+
+public class TestSpanTokenizer 
+    extends TestCase
+{
+    public TestSpanTokenizer( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TestSpanTokenizer.class );
+    }
+
+    private static List<String> tokens( String text )
+    {
+        List<String> tokens = new ArrayList<String>();
+        SpanTokenizer tokenizer = new SpanTokenizer().reset( text );
+        while( tokenizer.next() ) {
+            String token = text.substring( tokenizer.start(), tokenizer.end() );
+            Assert.assertEquals( token.hashCode(), tokenizer.hash() );
+            tokens.add( token );
+        }
+        return tokens;
+    }
+
+    public void testSplit()
+    {
+        String[] texts = { "", "   ", "a", " a", "a  b", "a b  ", "  ab cd  ef " };
+        for( String text : texts ) {
+            Assert.assertEquals( text, Arrays.asList( text.split( " " ) ), tokens( text ) );
+        }
+    }
+
+    public void testTermTable()
+    {
+        TermTable table = new TermTable( 1 );
+        String text = "x alpha beta alpha gamma";
+        SpanTokenizer tokenizer = new SpanTokenizer().reset( text );
+        List<Integer> ids = new ArrayList<Integer>();
+        while( tokenizer.next() ) {
+            ids.add( table.add( text, tokenizer.start(), tokenizer.end(), tokenizer.hash() ) );
+        }
+        Assert.assertEquals( Arrays.asList( 0, 1, 2, 1, 3 ), ids );
+        Assert.assertEquals( 4, table.size() );
+        Assert.assertEquals( "gamma", table.term( 3 ) );
+        Assert.assertEquals( 2, table.get( "beta" ) );
+        Assert.assertEquals( -1, table.get( "delta" ) );
+        Assert.assertEquals( 1, table.get( "betalpha", 3, 8, TermTable.hash( "betalpha", 3, 8 ) ) );
+    }
+
+    public void testCounts()
+    {
+        String[] texts = { "a b a c", "c d", "", "e a e" };
+        TermCounts split = new TermCounts();
+        TermCounts spans = new TermCounts();
+        for( int i = 0; i < texts.length; ++i ) {
+            split.add( i % 2, texts[i].split( " " ) );
+            spans.add( i % 2, texts[i] );
+            split.addToTotal( 2, texts[i].split( " " ) );
+            spans.addToTotal( 2, texts[i] );
+        }
+        for( int klass = 0; klass < 2; ++klass ) {
+            Assert.assertEquals( split.getClassSize( klass ), spans.getClassSize( klass ) );
+            Assert.assertEquals( new ArrayList<String>( split.getClassCounts( klass ).keySet() ),
+                                 new ArrayList<String>( spans.getClassCounts( klass ).keySet() ) );
+            Assert.assertEquals( split.getClassCounts( klass ), spans.getClassCounts( klass ) );
+            Assert.assertEquals( split.getNegativeCount( klass, "a" ), spans.getNegativeCount( klass, "a" ) );
+        }
+    }
+
+    public void testClassify() throws java.io.IOException
+    {
+        IndexReader reader = TestLuceneClassification.openRandomIndex( 200, 1 );
+        NaiveBayesClassifier nbc = LuceneClassification.learn( reader, TestLuceneClassification.randomTrainingSet( 60 ), "lemmas" );
+
+        for( int docid = 0; docid < 50; ++docid ) {
+            String text = reader.document( docid ).get( "lemmas" );
+            List<String> features = Arrays.asList( text.split( " " ) );
+            for( int selected : new int[] { -1, 0, 5, 1000 } ) {
+                Assert.assertEquals( LuceneClassification.classify( nbc, features, 0, selected ),
+                                     LuceneClassification.classify( nbc, reader, docid, "lemmas", 0, selected ) );
+            }
+        }
+    }
+}
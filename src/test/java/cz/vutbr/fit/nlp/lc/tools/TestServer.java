@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2010, Marek Schmidt
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, 
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Brno University of Technology nor the names of its
+ *   contributors may be used to endorse or promote products derived from this 
+ *   software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * Contributor(s):
+ *     Marek Schmidt <fregaham@gmail.com>
+ * 
+ */
+
+
+package cz.vutbr.fit.nlp.lc.tools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.Assert;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.RAMDirectory;
+
+import cz.vutbr.fit.nlp.lc.ReaderManager;
+
+public class TestServer 
+    extends TestCase
+{
+    public TestServer( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( TestServer.class );
+    }
+
+    /**
+        Indexes random documents, the even ones tend to contain the first half of the words.
+    */
+    private static RAMDirectory randomIndex( int n ) throws IOException
+    {
+        Random random = new Random( 1 );
+        RAMDirectory dir = new RAMDirectory();
+        IndexWriter writer = new IndexWriter( dir, new WhitespaceAnalyzer(), true, IndexWriter.MaxFieldLength.LIMITED );
+        for( int i = 0; i < n; ++i ) {
+            StringBuilder sb = new StringBuilder();
+            for( int j = 0; j < 10; ++j ) {
+                int word = random.nextInt( 20 );
+                if( random.nextInt( 3 ) == 0 ) {
+                    word = word / 2 + ( i % 2 == 0 ? 0 : 10 );
+                }
+                sb.append( "word" + word + " " );
+            }
+            Document doc = new Document();
+            doc.add( new Field( "id", "" + i, Field.Store.YES, Field.Index.NOT_ANALYZED ) );
+            doc.add( new Field( "lemmas", sb.toString().trim(), Field.Store.YES, Field.Index.ANALYZED ) );
+            writer.addDocument( doc );
+        }
+        writer.close();
+        return dir;
+    }
+
+    private static void addDocument( RAMDirectory dir, int id, String lemmas ) throws IOException
+    {
+        IndexWriter writer = new IndexWriter( dir, new WhitespaceAnalyzer(), false, IndexWriter.MaxFieldLength.LIMITED );
+        Document doc = new Document();
+        doc.add( new Field( "id", "" + id, Field.Store.YES, Field.Index.NOT_ANALYZED ) );
+        doc.add( new Field( "lemmas", lemmas, Field.Store.YES, Field.Index.ANALYZED ) );
+        writer.addDocument( doc );
+        writer.close();
+    }
+
+    private static List<String> response( BufferedReader in ) throws IOException
+    {
+        List<String> lines = new ArrayList<String>();
+        String line;
+        while( ( line = in.readLine() ) != null && line.length() > 0 ) {
+            lines.add( line );
+        }
+        return lines;
+    }
+
+    public void testRequests() throws Exception
+    {
+        ReaderManager readers = new ReaderManager( randomIndex( 100 ), 0 );
+        final Server server = new Server( readers, 10, 2, 5 );
+        final ExecutorService pool = Executors.newFixedThreadPool( 2 );
+        final ServerSocket serverSocket = new ServerSocket( 0, 50, InetAddress.getByName( "127.0.0.1" ) );
+        Thread connection = new Thread() {
+            public void run() {
+                try {
+                    Socket socket = serverSocket.accept();
+                    server.serve( socket, pool, 5000 );
+                    socket.close();
+                }
+                catch( IOException e ) {
+                }
+            }
+        };
+        connection.start();
+
+        Socket socket = new Socket( "127.0.0.1", serverSocket.getLocalPort() );
+        try {
+            BufferedReader in = new BufferedReader( new InputStreamReader( socket.getInputStream(), "UTF-8" ) );
+            PrintWriter out = new PrintWriter( new OutputStreamWriter( socket.getOutputStream(), "UTF-8" ) );
+
+            // the same training set twice on one connection
+            List<List<String>> responses = new ArrayList<List<String>>();
+            for( int i = 0; i < 2; ++i ) {
+                out.print( "+0\n+2\n+4\n-1\n-3\n\n" );
+                out.flush();
+                responses.add( response( in ) );
+            }
+
+            Assert.assertEquals( 20, responses.get( 0 ).size() );
+            for( String line : responses.get( 0 ) ) {
+                String[] fields = line.split( "\t" );
+                Assert.assertEquals( line, 4, fields.length );
+                Double.parseDouble( fields[0] );
+                Assert.assertFalse( fields[1].equals( "0" ) || fields[1].equals( "1" ) );
+            }
+            Assert.assertEquals( responses.get( 0 ), responses.get( 1 ) );
+            Assert.assertEquals( 1, server.getTrained() );
+
+            out.print( "-1\n\n" );
+            out.flush();
+            List<String> error = response( in );
+            Assert.assertEquals( 1, error.size() );
+            Assert.assertTrue( error.get( 0 ).startsWith( "error\t" ) );
+        }
+        finally {
+            socket.close();
+            connection.join( 5000 );
+            serverSocket.close();
+            pool.shutdown();
+            readers.close();
+        }
+    }
+
+    public void testReopen() throws Exception
+    {
+        RAMDirectory dir = randomIndex( 100 );
+        ReaderManager readers = new ReaderManager( dir, 0 );
+        Server server = new Server( readers, 10, 2, 5 );
+        try {
+            String request = "+0\n+2\n+4\n-1\n-3\n\n";
+            server.handle( request );
+            server.handle( request );
+            Assert.assertEquals( 1, server.getTrained() );
+
+            // the classifier is trained again from the reopened index
+            addDocument( dir, 100, "word0 word0 word0 newword" );
+            List<String> lines = response( new BufferedReader( new StringReader( server.handle( request ) ) ) );
+            Assert.assertEquals( 2, server.getTrained() );
+            Assert.assertEquals( 20, lines.size() );
+        }
+        finally {
+            readers.close();
+        }
+    }
+}